@@ -1,72 +1,136 @@
 package com.revolut;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.revolut.audit.AuditLog;
+import com.revolut.audit.AuditOverflowPolicy;
+import com.revolut.config.Config;
+import com.revolut.config.ServerOptions;
+import com.revolut.config.ServerPreset;
 import com.revolut.exceptions.*;
+import com.revolut.fx.FileFxRateProvider;
+import com.revolut.fx.FxRateCache;
 import com.revolut.handlers.AccountHandler;
+import com.revolut.handlers.IdempotencyCache;
+import com.revolut.handlers.MetricsHandler;
 import com.revolut.handlers.TransactionHandler;
+import com.revolut.metrics.LockContentionMetrics;
+import com.revolut.metrics.RequestMetrics;
+import com.revolut.metrics.TransferMetrics;
 import com.revolut.persistence.AccountRepository;
 import com.revolut.persistence.InMemoryAccountRepository;
 import com.revolut.persistence.InMemoryTransactionRepository;
 import com.revolut.persistence.TransactionRepository;
-import com.revolut.serializers.MoneyDeSerializer;
+import com.revolut.persistence.journal.FsyncPolicy;
+import com.revolut.persistence.journal.JournalOptions;
+import com.revolut.persistence.journal.JournaledStore;
 import com.revolut.serializers.MoneySerializer;
+import com.revolut.serializers.SerializersModule;
 import com.revolut.service.AccountingService;
 import com.revolut.service.AccountingServiceImpl;
+import com.revolut.service.AuditedTransactionService;
+import com.revolut.service.CreditMode;
+import com.revolut.service.DeferredCreditApplier;
+import com.revolut.service.HotAccountConsolidator;
+import com.revolut.service.LockAcquisitionPolicy;
+import com.revolut.service.MeteredTransactionService;
+import com.revolut.service.ShardedTransactionService;
 import com.revolut.service.TransactionService;
 import com.revolut.service.TransactionServiceImpl;
 import io.javalin.Javalin;
 import io.javalin.core.validation.JavalinValidation;
 import io.javalin.plugin.json.JavalinJackson;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
-import org.joda.money.Money;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 
 public class App {
     private static final int DEFAULT_PORT = 7000;
+    private static final int DEFAULT_TRANSFER_WORKERS = 64;
+    private static final String LOCKING_ENGINE = "locking";
+    private static final String SHARDED_ENGINE = "sharded";
     private static final Logger LOG = LoggerFactory.getLogger(App.class);
 
     public static void main(String[] args) {
-        final DependencyInjection dependencyInjection = new DependencyInjection().invoke();
+        final Config config = loadConfig();
+        final Javalin restApp = start(config, config.getInt("server.port", DEFAULT_PORT),
+                ExecutionMode.of(config.get("server.execution", ExecutionMode.SYNC.name())));
+        Runtime.getRuntime().addShutdownHook(new Thread(restApp::stop));
+    }
+
+    public static Javalin start(final int port, final ExecutionMode executionMode) {
+        return start(loadConfig(), port, executionMode);
+    }
+
+    /**
+     * Starts the service on {@code port} with fresh state, or the state recovered from {@code journal.dir}, on a
+     * Jetty server set up by {@link #serverOptions}. Stopping the returned server also closes the journal and the
+     * transfer executor.
+     */
+    public static Javalin start(final Config config, final int port, final ExecutionMode executionMode) {
+        final ServerOptions serverOptions = serverOptions(config);
+        final DependencyInjection dependencyInjection = new DependencyInjection(config, executionMode).invoke();
         final AccountHandler accountHandler = dependencyInjection.getAccountHandler();
         final TransactionHandler transactionHandler = dependencyInjection.getTransactionHandler();
+        final MetricsHandler metricsHandler = dependencyInjection.getMetricsHandler();
+        final RequestMetrics requestMetrics = dependencyInjection.getRequestMetrics();
+        final AuditLog auditLog = dependencyInjection.getAuditLog();
 
         JavalinValidation.register(UUID.class, UUID::fromString);
+        JavalinValidation.register(Instant.class, Instant::parse);
 
         configureJackson();
 
         final Javalin restApp = Javalin
-                .create(config -> config.requestLogger((context, executionTimeMs) ->
-                        LOG.info("{} ms\t {}\t {} {}",
-                                executionTimeMs,
-                                context.req.getMethod(),
-                                context.req.getRequestURI(),
-                                context.req.getParameterMap().toString().replaceAll("^.|.$", "")
-                        ))
-                )
+                .create(javalinConfig -> {
+                    serverOptions.applyTo(javalinConfig, port);
+                    javalinConfig.requestLogger((context, executionTimeMs) -> {
+                        if (auditLog != null) {
+                            auditLog.requested(context.method(), context.path(), context.status(), executionTimeMs);
+                        }
+                        if (LOG.isDebugEnabled()) {
+                            final String parameters = context.req.getParameterMap().toString();
+                            LOG.debug("{} ms\t {}\t {} {}",
+                                    executionTimeMs,
+                                    context.req.getMethod(),
+                                    context.req.getRequestURI(),
+                                    parameters.substring(1, parameters.length() - 1));
+                        }
+                    });
+                })
                 .events(event -> {
-                    event.serverStarted(() -> LOG.info("server has started"));
+                    event.serverStarted(() -> LOG.info("server has started in {} mode with {}", executionMode, serverOptions));
                     event.serverStartFailed(() -> LOG.error("server start has failed"));
+                    event.serverStopped(dependencyInjection::close);
                 })
-                .start(DEFAULT_PORT);
-
-        Runtime.getRuntime().addShutdownHook(new Thread(restApp::stop));
+                .start(port);
 
 
-        restApp.get("/accounts", ctx -> {
+        restApp.get("/accounts", requestMetrics.timed("GET", "/accounts", ctx -> {
             ctx.use(MoneySerializer.class);
             accountHandler.getAll(ctx);
-        });
-        restApp.get("/accounts/:accountNumber", accountHandler::getAccount);
-        restApp.get("/transactions", transactionHandler::getAllTransactions);
-        restApp.get("/transactions/:id", transactionHandler::getTransaction);
+        }));
+        restApp.get("/accounts/:accountNumber", requestMetrics.timed("GET", "/accounts/:accountNumber", accountHandler::getAccount));
+        restApp.get("/accounts/:accountNumber/transactions", requestMetrics.timed("GET", "/accounts/:accountNumber/transactions", transactionHandler::getAccountTransactions));
+        restApp.get("/transactions", requestMetrics.timed("GET", "/transactions", transactionHandler::getAllTransactions));
+        restApp.get("/transactions/:id", requestMetrics.timed("GET", "/transactions/:id", transactionHandler::getTransaction));
+        restApp.get("/metrics", requestMetrics.timed("GET", "/metrics", metricsHandler::getPrometheus));
+        restApp.get("/metrics/locks", requestMetrics.timed("GET", "/metrics/locks", metricsHandler::getLockContention));
+        restApp.get("/metrics/recovery", requestMetrics.timed("GET", "/metrics/recovery", metricsHandler::getRecovery));
 
-        restApp.post("/accounts", accountHandler::create);
-        restApp.post("/transactions", transactionHandler::transferAmount);
+        restApp.post("/accounts", requestMetrics.timed("POST", "/accounts", accountHandler::create));
+        restApp.post("/transactions", requestMetrics.timed("POST", "/transactions", transactionHandler::transferAmount));
+        restApp.post("/transactions/batch", requestMetrics.timed("POST", "/transactions/batch", transactionHandler::transferBatch));
 
         restApp.exception(AccountNotFoundException.class, (exception, context) -> {
             context.result(exception.getMessage());
@@ -104,6 +168,26 @@ public class App {
         });
 
 
+        restApp.exception(ExchangeRateNotFoundException.class, (exception, context) -> {
+            context.result(exception.getMessage());
+            context.status(HttpStatus.UNPROCESSABLE_ENTITY_422);
+            LOG.error("error occurred", exception);
+        });
+
+        restApp.exception(TransferTimeoutException.class, (exception, context) -> {
+            context.result(exception.getMessage());
+            context.header(HttpHeader.RETRY_AFTER.asString(), "1");
+            context.status(HttpStatus.SERVICE_UNAVAILABLE_503);
+            LOG.warn("transfer timed out: {}", exception.getMessage());
+        });
+
+        restApp.exception(RejectedExecutionException.class, (exception, context) -> {
+            context.result("too many transfers in progress");
+            context.header(HttpHeader.RETRY_AFTER.asString(), "1");
+            context.status(HttpStatus.SERVICE_UNAVAILABLE_503);
+            LOG.warn("transfer rejected: {}", exception.getMessage());
+        });
+
         restApp.exception(UnsupportedOperationException.class, (exception, context) -> {
             if (exception.getMessage() != null) {
                 context.result(exception.getMessage());
@@ -122,14 +206,40 @@ public class App {
             event.serverStopping(() -> LOG.info("Stopping server"));
             event.serverStopped(() -> LOG.info("Stopped server"));
         });
+        return restApp;
+    }
+
+    private static Config loadConfig() {
+        try {
+            return Config.load();
+        } catch (final IOException exception) {
+            throw new UncheckedIOException("cannot read the configuration file", exception);
+        }
+    }
+
+    /**
+     * The {@code server.preset}, see {@link ServerPreset}, with any of its options overridden by their own keys.
+     */
+    private static ServerOptions serverOptions(final Config config) {
+        final ServerOptions preset = ServerPreset.of(config.get("server.preset", ServerPreset.DEFAULT.name())).getOptions();
+        return preset.toBuilder()
+                .acceptors(config.getInt("server.acceptors", preset.getAcceptors()))
+                .selectors(config.getInt("server.selectors", preset.getSelectors()))
+                .maxThreads(config.getInt("server.threads.max", preset.getMaxThreads()))
+                .minThreads(config.getInt("server.threads.min", preset.getMinThreads()))
+                .idleTimeoutMillis(config.getLong("server.idle.timeout.ms", preset.getIdleTimeoutMillis()))
+                .acceptQueueSize(config.getInt("server.accept.queue", preset.getAcceptQueueSize()))
+                .persistentConnections(config.getBoolean("server.persistent.connections", preset.isPersistentConnections()))
+                .outputBufferBytes(config.getInt("server.output.buffer.bytes", preset.getOutputBufferBytes()))
+                .gzip(config.getBoolean("server.gzip", preset.isGzip()))
+                .gzipMinBytes(config.getInt("server.gzip.min.bytes", preset.getGzipMinBytes()))
+                .gzipLevel(config.getInt("server.gzip.level", preset.getGzipLevel()))
+                .build();
     }
 
     private static void configureJackson() {
         final ObjectMapper objectMapper = new ObjectMapper();
-        final SimpleModule module = new SimpleModule();
-        module.addSerializer(Money.class, new MoneySerializer());
-        module.addDeserializer(Money.class, new MoneyDeSerializer());
-        objectMapper.registerModule(module);
+        objectMapper.registerModule(new SerializersModule());
 
         JavalinJackson.configure(objectMapper);
     }
@@ -137,6 +247,22 @@ public class App {
     private static class DependencyInjection {
         private AccountHandler accountHandler;
         private TransactionHandler transactionHandler;
+        private MetricsHandler metricsHandler;
+        private final RequestMetrics requestMetrics = new RequestMetrics();
+        private final Config config;
+        private final ExecutionMode executionMode;
+        private JournaledStore journaledStore;
+        private ShardedTransactionService shardedTransactionService;
+        private HotAccountConsolidator hotAccountConsolidator;
+        private DeferredCreditApplier deferredCreditApplier;
+        private FxRateCache fxRateCache;
+        private AuditLog auditLog;
+        private ExecutorService transferExecutor;
+
+        DependencyInjection(final Config config, final ExecutionMode executionMode) {
+            this.config = config;
+            this.executionMode = executionMode;
+        }
 
         AccountHandler getAccountHandler() {
             return accountHandler;
@@ -146,14 +272,169 @@ public class App {
             return transactionHandler;
         }
 
+        MetricsHandler getMetricsHandler() {
+            return metricsHandler;
+        }
+
+        RequestMetrics getRequestMetrics() {
+            return requestMetrics;
+        }
+
+        /**
+         * @return {@code null} unless {@code audit.file} is set
+         */
+        AuditLog getAuditLog() {
+            return auditLog;
+        }
+
+        /**
+         * State is kept in memory only, unless {@code journal.dir} names a directory to journal it to and recover
+         * it from, see {@link JournaledStore}. Transfers go through account locks, unless {@code transfer.engine} is
+         * {@code sharded}, see {@link ShardedTransactionService}, which cannot be combined with the journal.
+         * Accounts numbered in {@code hot.accounts} are split into {@code hot.slots} sub-ledgers, see
+         * {@link com.revolut.domain.Account#isHot()}; that needs the in-memory, lock based setup, as their credits
+         * neither take locks the journal could read balances under nor run on the shard owning the account. The same
+         * holds for {@code transfer.credits=deferred}, see {@link CreditMode}. Transfers between currencies are
+         * converted at the rates in {@code fx.rates.file}, re-read every {@code fx.refresh.ms}, and rejected without it.
+         */
         DependencyInjection invoke() {
-            final AccountRepository accountRepository = new InMemoryAccountRepository();
-            final TransactionRepository transactionRepository = new InMemoryTransactionRepository();
-            final TransactionService transactionService = new TransactionServiceImpl(accountRepository, transactionRepository);
+            final AccountRepository accountRepository;
+            final TransactionRepository transactionRepository;
+            final String journalDirectory = config.get("journal.dir");
+            final boolean sharded = isShardedEngine(config.get("transfer.engine", LOCKING_ENGINE));
+            if (sharded && journalDirectory != null) {
+                throw new IllegalStateException("transfer.engine=sharded cannot be combined with journal.dir");
+            }
+            final long[] hotAccounts = parseAccountNumbers(config.get("hot.accounts", ""));
+            if (hotAccounts.length > 0 && (sharded || journalDirectory != null)) {
+                throw new IllegalStateException("hot.accounts cannot be combined with transfer.engine=sharded or journal.dir");
+            }
+            final CreditMode creditMode = CreditMode.of(config.get("transfer.credits", CreditMode.IMMEDIATE.name()));
+            if (creditMode == CreditMode.DEFERRED && (sharded || journalDirectory != null)) {
+                throw new IllegalStateException("transfer.credits=deferred cannot be combined with transfer.engine=sharded or journal.dir");
+            }
+            if (hotAccounts.length > 0) {
+                accountRepository = new InMemoryAccountRepository(hotAccounts,
+                        config.getInt("hot.slots", Runtime.getRuntime().availableProcessors()));
+                transactionRepository = new InMemoryTransactionRepository();
+                hotAccountConsolidator = new HotAccountConsolidator(accountRepository, hotAccounts,
+                        config.getLong("hot.consolidate.ms", HotAccountConsolidator.DEFAULT_INTERVAL_MILLIS));
+            } else if (journalDirectory == null) {
+                accountRepository = new InMemoryAccountRepository();
+                transactionRepository = new InMemoryTransactionRepository();
+            } else {
+                try {
+                    journaledStore = JournaledStore.open(JournalOptions.builder()
+                            .directory(Paths.get(journalDirectory))
+                            .fsyncPolicy(FsyncPolicy.valueOf(config.get("journal.fsync", FsyncPolicy.GROUP.name()).toUpperCase(Locale.ROOT)))
+                            .fsyncIntervalMillis(config.getLong("journal.fsync.interval.ms", JournalOptions.DEFAULT_FSYNC_INTERVAL_MILLIS))
+                            .segmentBytes(config.getLong("journal.segment.bytes", JournalOptions.DEFAULT_SEGMENT_BYTES))
+                            .snapshotIntervalMillis(config.getLong("journal.snapshot.interval.ms", JournalOptions.DEFAULT_SNAPSHOT_INTERVAL_MILLIS))
+                            .build());
+                } catch (final IOException exception) {
+                    throw new UncheckedIOException(String.format("cannot open journal in %s", journalDirectory), exception);
+                }
+                accountRepository = journaledStore.getAccountRepository();
+                transactionRepository = journaledStore.getTransactionRepository();
+            }
+            final LockContentionMetrics lockContentionMetrics = new LockContentionMetrics();
+            final long deadlineMillis = config.getLong("transfer.lock.deadline.ms", LockAcquisitionPolicy.DEFAULT_DEADLINE_MILLIS);
+            final String fxRatesFile = config.get("fx.rates.file");
+            if (fxRatesFile != null) {
+                try {
+                    fxRateCache = new FxRateCache(new FileFxRateProvider(Paths.get(fxRatesFile)),
+                            config.getLong("fx.refresh.ms", FxRateCache.DEFAULT_REFRESH_MILLIS));
+                } catch (final IOException exception) {
+                    throw new UncheckedIOException(String.format("cannot load exchange rates from %s", fxRatesFile), exception);
+                }
+            }
+            final TransactionService engine;
+            if (sharded) {
+                shardedTransactionService = new ShardedTransactionService(accountRepository, transactionRepository,
+                        config.getInt("transfer.shards", Runtime.getRuntime().availableProcessors()),
+                        config.getInt("transfer.shard.queue", ShardedTransactionService.DEFAULT_QUEUE_CAPACITY),
+                        deadlineMillis, fxRateCache);
+                engine = shardedTransactionService;
+            } else {
+                if (creditMode == CreditMode.DEFERRED) {
+                    deferredCreditApplier = new DeferredCreditApplier(
+                            config.getInt("transfer.credit.threads", DeferredCreditApplier.DEFAULT_THREADS));
+                }
+                engine = new TransactionServiceImpl(accountRepository, transactionRepository,
+                        LockAcquisitionPolicy.withDeadline(deadlineMillis), lockContentionMetrics, deferredCreditApplier, fxRateCache);
+            }
+            final String auditFile = config.get("audit.file");
+            if (auditFile != null) {
+                try {
+                    auditLog = AuditLog.open(Paths.get(auditFile),
+                            config.getInt("audit.queue", AuditLog.DEFAULT_QUEUE_CAPACITY),
+                            AuditOverflowPolicy.of(config.get("audit.overflow", AuditOverflowPolicy.DROP.name())));
+                } catch (final IOException exception) {
+                    throw new UncheckedIOException(String.format("cannot open audit log %s", auditFile), exception);
+                }
+            }
+            final TransferMetrics transferMetrics = new TransferMetrics();
+            final TransactionService transactionService = new MeteredTransactionService(
+                    auditLog == null ? engine : new AuditedTransactionService(engine, auditLog), transferMetrics);
             final AccountingService accountingService = new AccountingServiceImpl(accountRepository);
             accountHandler = new AccountHandler(accountingService);
-            transactionHandler = new TransactionHandler(transactionService);
+            transferExecutor = executionMode.newExecutor(config.getInt("server.transfer.workers", DEFAULT_TRANSFER_WORKERS));
+            transactionHandler = new TransactionHandler(transactionService, new IdempotencyCache(
+                    config.getInt("idempotency.max.keys", IdempotencyCache.DEFAULT_MAX_KEYS),
+                    config.getLong("idempotency.ttl.ms", IdempotencyCache.DEFAULT_TTL_MILLIS)), transferExecutor);
+            metricsHandler = new MetricsHandler(lockContentionMetrics, journaledStore == null ? null : journaledStore.getRecoveryMetrics(),
+                    requestMetrics, transferMetrics, accountingService, transactionService);
             return this;
         }
+
+        private static long[] parseAccountNumbers(final String accountNumbers) {
+            final String[] parts = accountNumbers.trim().isEmpty() ? new String[0] : accountNumbers.split(",");
+            final long[] parsed = new long[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                parsed[i] = Long.parseLong(parts[i].trim());
+            }
+            return parsed;
+        }
+
+        private static boolean isShardedEngine(final String engine) {
+            if (SHARDED_ENGINE.equalsIgnoreCase(engine)) {
+                return true;
+            } else if (LOCKING_ENGINE.equalsIgnoreCase(engine)) {
+                return false;
+            }
+            throw new IllegalArgumentException(String.format("unknown transfer engine '%s', expected %s or %s", engine, LOCKING_ENGINE, SHARDED_ENGINE));
+        }
+
+        void close() {
+            if (transferExecutor != null) {
+                transferExecutor.shutdown();
+            }
+            if (shardedTransactionService != null) {
+                shardedTransactionService.close();
+            }
+            if (deferredCreditApplier != null) {
+                deferredCreditApplier.close();
+            }
+            if (hotAccountConsolidator != null) {
+                hotAccountConsolidator.close();
+            }
+            if (fxRateCache != null) {
+                fxRateCache.close();
+            }
+            if (auditLog != null) {
+                try {
+                    auditLog.close();
+                } catch (final IOException exception) {
+                    LOG.error("failed to close the audit log", exception);
+                }
+            }
+            if (journaledStore != null) {
+                try {
+                    journaledStore.close();
+                } catch (final IOException exception) {
+                    LOG.error("failed to close the journal", exception);
+                }
+            }
+        }
     }
 }
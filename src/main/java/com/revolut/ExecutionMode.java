@@ -0,0 +1,79 @@
+package com.revolut;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Where transfer requests execute. A transfer can wait on account locks for up to the lock deadline, and in
+ * {@link #SYNC} mode it holds a Jetty thread while it does, so a burst of contended transfers can take the whole
+ * pool and queue every other request behind them. The other modes hand transfers to an executor of their own and
+ * complete the response asynchronously, leaving Jetty's threads to the rest of the API.
+ */
+public enum ExecutionMode {
+    /**
+     * Transfers execute on the Jetty thread that read the request.
+     */
+    SYNC,
+    /**
+     * Transfers execute on a fixed pool of worker threads with a bounded queue; when it is full the request is
+     * rejected with 503.
+     */
+    ASYNC,
+    /**
+     * Each transfer executes on a virtual thread of its own, so waiting for locks costs no platform thread.
+     * Needs JDK 21 or newer at runtime.
+     */
+    VIRTUAL;
+
+    static final int QUEUED_TRANSFERS_PER_WORKER = 64;
+
+    public static ExecutionMode of(final String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the executor for transfers, or {@code null} in {@link #SYNC} mode
+     */
+    ExecutorService newExecutor(final int workers) {
+        switch (this) {
+            case ASYNC:
+                return new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(workers * QUEUED_TRANSFERS_PER_WORKER), new WorkerThreadFactory());
+            case VIRTUAL:
+                return newVirtualThreadPerTaskExecutor();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Looked up reflectively, the build targets Java 8.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final NoSuchMethodException exception) {
+            throw new IllegalStateException(String.format("virtual threads need JDK 21 or newer, running on %s", System.getProperty("java.version")));
+        } catch (final IllegalAccessException | InvocationTargetException exception) {
+            throw new IllegalStateException("cannot create a virtual thread executor", exception);
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "transfer-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
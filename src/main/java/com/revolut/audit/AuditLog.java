@@ -0,0 +1,175 @@
+package com.revolut.audit;
+
+import com.revolut.domain.Amount;
+import com.revolut.domain.Transaction;
+import com.revolut.service.RingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Audit trail of committed transfers and served requests, one line per event appended to a file:
+ * <pre>
+ * transfer 2020-01-01T10:00:00.123456Z 5b0f0e9a-... 1 2 EUR 1000
+ * request 2020-01-01T10:00:00.124Z POST /transactions 201 0.85
+ * </pre>
+ * with the transfer amount in minor units and the request time in milliseconds.
+ * <p>
+ * Recording only puts the event on a bounded {@link RingBuffer}: a transfer is queued as the {@link Transaction}
+ * itself, a request as one small object, and nothing is formatted. A single background thread formats the events
+ * and writes them, flushing whenever it has caught up. When the queue is full the {@link AuditOverflowPolicy}
+ * decides between dropping the event and waiting.
+ */
+public class AuditLog implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Logger log = LoggerFactory.getLogger(AuditLog.class);
+    private final RingBuffer<Object> events;
+    private final AuditOverflowPolicy overflowPolicy;
+    private final Writer out;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+
+    AuditLog(final Writer out, final int queueCapacity, final AuditOverflowPolicy overflowPolicy) {
+        this.events = new RingBuffer<>(queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.out = out;
+        this.writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends to {@code file}, creating it if needed.
+     */
+    public static AuditLog open(final Path file, final int queueCapacity, final AuditOverflowPolicy overflowPolicy) throws IOException {
+        final Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE), StandardCharsets.UTF_8), 1 << 16);
+        return new AuditLog(out, queueCapacity, overflowPolicy);
+    }
+
+    public void transferred(final Transaction transaction) {
+        record(transaction);
+    }
+
+    public void requested(final String method, final String path, final int status, final float millis) {
+        record(new Request(System.currentTimeMillis(), method, path, status, millis));
+    }
+
+    /**
+     * @return events discarded because the queue was full, or because the file could not be written
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void record(final Object event) {
+        if (overflowPolicy == AuditOverflowPolicy.BLOCK) {
+            events.put(event);
+        } else if (!events.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void drain() {
+        final StringBuilder line = new StringBuilder(128);
+        boolean unflushed = false;
+        while (running || !events.isEmpty()) {
+            final Object event = events.poll();
+            if (event != null) {
+                line.setLength(0);
+                format(event, line);
+                unflushed = write(line) || unflushed;
+            } else if (unflushed) {
+                flush();
+                unflushed = false;
+            } else {
+                events.await(IDLE_PARK_NANOS);
+            }
+        }
+        flush();
+    }
+
+    private static void format(final Object event, final StringBuilder line) {
+        if (event instanceof Transaction) {
+            final Transaction transaction = (Transaction) event;
+            final Amount amount = transaction.getAmount();
+            line.append("transfer ").append(transaction.getCreated())
+                    .append(' ').append(transaction.getId())
+                    .append(' ').append(transaction.getFromAccountNumber())
+                    .append(' ').append(transaction.getToAccountNumber())
+                    .append(' ').append(amount.getCurrency().getCode())
+                    .append(' ').append(amount.getMinorUnits());
+        } else {
+            final Request request = (Request) event;
+            line.append("request ").append(Instant.ofEpochMilli(request.epochMillis))
+                    .append(' ').append(request.method)
+                    .append(' ').append(request.path)
+                    .append(' ').append(request.status)
+                    .append(' ').append(request.millis);
+        }
+        line.append('\n');
+    }
+
+    private boolean write(final CharSequence line) {
+        try {
+            out.append(line);
+            return true;
+        } catch (final IOException exception) {
+            dropped.increment();
+            log.error("cannot write audit log", exception);
+            return false;
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (final IOException exception) {
+            log.error("cannot flush audit log", exception);
+        }
+    }
+
+    /**
+     * Writes every event already recorded, then closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+
+    private static final class Request {
+        private final long epochMillis;
+        private final String method;
+        private final String path;
+        private final int status;
+        private final float millis;
+
+        private Request(final long epochMillis, final String method, final String path, final int status, final float millis) {
+            this.epochMillis = epochMillis;
+            this.method = method;
+            this.path = path;
+            this.status = status;
+            this.millis = millis;
+        }
+    }
+}
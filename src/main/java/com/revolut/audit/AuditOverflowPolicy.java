@@ -0,0 +1,21 @@
+package com.revolut.audit;
+
+import java.util.Locale;
+
+/**
+ * What recording an audit event does when the queue to the audit file is full.
+ */
+public enum AuditOverflowPolicy {
+    /**
+     * Discard the event and count it, see {@link AuditLog#getDropped()}. Requests never wait on the audit file.
+     */
+    DROP,
+    /**
+     * Wait until the writer has made room. No event is lost, and requests slow down to what the disk sustains.
+     */
+    BLOCK;
+
+    public static AuditOverflowPolicy of(final String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
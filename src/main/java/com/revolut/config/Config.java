@@ -0,0 +1,103 @@
+package com.revolut.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings by dotted key, such as {@code server.threads.max}. A key is looked up in the system properties first,
+ * then in the environment under its upper case name with dots as underscores, {@code SERVER_THREADS_MAX}, and last in
+ * the properties file named by {@value #FILE_KEY}, itself a system property or environment variable.
+ * <p>
+ * A value that does not parse as the type asked for is an error rather than a reason to fall back on the default.
+ */
+public final class Config {
+    public static final String FILE_KEY = "config.file";
+
+    private final Properties systemProperties;
+    private final Map<String, String> environment;
+    private final Properties file;
+
+    Config(final Properties systemProperties, final Map<String, String> environment, final Properties file) {
+        this.systemProperties = systemProperties;
+        this.environment = environment;
+        this.file = file;
+    }
+
+    /**
+     * @throws IOException if {@value #FILE_KEY} is set and cannot be read
+     */
+    public static Config load() throws IOException {
+        final Config withoutFile = new Config(System.getProperties(), System.getenv(), new Properties());
+        final String path = withoutFile.get(FILE_KEY);
+        return path == null ? withoutFile : new Config(System.getProperties(), System.getenv(), read(Paths.get(path)));
+    }
+
+    static Properties read(final Path path) throws IOException {
+        final Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * @return the value of {@code key}, or {@code null} if it is not set anywhere
+     */
+    public String get(final String key) {
+        final String property = systemProperties.getProperty(key);
+        if (property != null) {
+            return property;
+        }
+        final String variable = environment.get(environmentName(key));
+        if (variable != null) {
+            return variable;
+        }
+        return file.getProperty(key);
+    }
+
+    public String get(final String key, final String defaultValue) {
+        final String value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public int getInt(final String key, final int defaultValue) {
+        final String value = get(key);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        } catch (final NumberFormatException exception) {
+            throw new IllegalArgumentException(String.format("%s must be an integer, was '%s'", key, value), exception);
+        }
+    }
+
+    public long getLong(final String key, final long defaultValue) {
+        final String value = get(key);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value.trim());
+        } catch (final NumberFormatException exception) {
+            throw new IllegalArgumentException(String.format("%s must be an integer, was '%s'", key, value), exception);
+        }
+    }
+
+    public boolean getBoolean(final String key, final boolean defaultValue) {
+        final String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        } else if ("true".equalsIgnoreCase(value.trim())) {
+            return true;
+        } else if ("false".equalsIgnoreCase(value.trim())) {
+            return false;
+        }
+        throw new IllegalArgumentException(String.format("%s must be true or false, was '%s'", key, value));
+    }
+
+    static String environmentName(final String key) {
+        return key.toUpperCase(Locale.ROOT).replace('.', '_');
+    }
+}
@@ -0,0 +1,280 @@
+package com.revolut.config;
+
+import io.javalin.core.JavalinConfig;
+import io.javalin.core.compression.Gzip;
+import io.javalin.http.OutputStreamWrapper;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.LowResourceMonitor;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * How the embedded Jetty server accepts, reads and answers connections. The defaults are those of the server Javalin
+ * creates when given none; {@link ServerPreset} has sets tuned for throughput.
+ */
+public class ServerOptions {
+    /**
+     * Let Jetty size acceptors and selectors from the number of cores.
+     */
+    public static final int AUTO = -1;
+    public static final int DEFAULT_MAX_THREADS = 250;
+    public static final int DEFAULT_MIN_THREADS = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30_000;
+    public static final int DEFAULT_OUTPUT_BUFFER_BYTES = 32 * 1024;
+    public static final int DEFAULT_GZIP_MIN_BYTES = 1500;
+    public static final int DEFAULT_GZIP_LEVEL = 6;
+
+    private static final int THREAD_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    private final int acceptors;
+    private final int selectors;
+    private final int maxThreads;
+    private final int minThreads;
+    private final long idleTimeoutMillis;
+    private final int acceptQueueSize;
+    private final boolean persistentConnections;
+    private final int outputBufferBytes;
+    private final boolean gzip;
+    private final int gzipMinBytes;
+    private final int gzipLevel;
+
+    private ServerOptions(final Builder builder) {
+        if (builder.acceptors < AUTO || builder.acceptors == 0 || builder.selectors < AUTO || builder.selectors == 0) {
+            throw new IllegalArgumentException(String.format("acceptors %s and selectors %s must be positive or %s",
+                    builder.acceptors, builder.selectors, AUTO));
+        }
+        if (builder.minThreads <= 0 || builder.maxThreads < builder.minThreads) {
+            throw new IllegalArgumentException(String.format("invalid thread pool of %s to %s threads", builder.minThreads, builder.maxThreads));
+        }
+        if (builder.idleTimeoutMillis <= 0 || builder.acceptQueueSize < 0 || builder.outputBufferBytes <= 0) {
+            throw new IllegalArgumentException(String.format("invalid idle timeout %s ms, accept queue %s or output buffer %s bytes",
+                    builder.idleTimeoutMillis, builder.acceptQueueSize, builder.outputBufferBytes));
+        }
+        if (builder.gzipMinBytes < 0 || builder.gzipLevel < 1 || builder.gzipLevel > 9) {
+            throw new IllegalArgumentException(String.format("invalid gzip threshold %s bytes or level %s", builder.gzipMinBytes, builder.gzipLevel));
+        }
+        this.acceptors = builder.acceptors;
+        this.selectors = builder.selectors;
+        this.maxThreads = builder.maxThreads;
+        this.minThreads = builder.minThreads;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.acceptQueueSize = builder.acceptQueueSize;
+        this.persistentConnections = builder.persistentConnections;
+        this.outputBufferBytes = builder.outputBufferBytes;
+        this.gzip = builder.gzip;
+        this.gzipMinBytes = builder.gzipMinBytes;
+        this.gzipLevel = builder.gzipLevel;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Builder toBuilder() {
+        return new Builder()
+                .acceptors(acceptors)
+                .selectors(selectors)
+                .maxThreads(maxThreads)
+                .minThreads(minThreads)
+                .idleTimeoutMillis(idleTimeoutMillis)
+                .acceptQueueSize(acceptQueueSize)
+                .persistentConnections(persistentConnections)
+                .outputBufferBytes(outputBufferBytes)
+                .gzip(gzip)
+                .gzipMinBytes(gzipMinBytes)
+                .gzipLevel(gzipLevel);
+    }
+
+    /**
+     * @return threads accepting connections, or {@link #AUTO}
+     */
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    /**
+     * @return threads selecting connections ready to read or write, or {@link #AUTO}
+     */
+    public int getSelectors() {
+        return selectors;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    /**
+     * @return how long a connection may sit idle, between requests on a persistent connection or within one,
+     * before it is closed
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @return the backlog of connections the OS queues until they are accepted, {@code 0} for its default
+     */
+    public int getAcceptQueueSize() {
+        return acceptQueueSize;
+    }
+
+    /**
+     * @return whether connections are kept open, and pipelined requests read, after a response
+     */
+    public boolean isPersistentConnections() {
+        return persistentConnections;
+    }
+
+    /**
+     * @return how much of a response is buffered before it is written, or sent chunked if it does not fit
+     */
+    public int getOutputBufferBytes() {
+        return outputBufferBytes;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * @return the size from which a response is compressed for clients that accept gzip
+     */
+    public int getGzipMinBytes() {
+        return gzipMinBytes;
+    }
+
+    public int getGzipLevel() {
+        return gzipLevel;
+    }
+
+    /**
+     * @return a server listening on {@code port} that Javalin can be given through {@link JavalinConfig#server}
+     */
+    public Server newServer(final int port) {
+        final QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads, THREAD_IDLE_TIMEOUT_MILLIS);
+        threadPool.setName("JettyServerThreadPool");
+        final Server server = new Server(threadPool);
+        server.addBean(new LowResourceMonitor(server));
+        server.insertHandler(new StatisticsHandler());
+
+        final HttpConfiguration httpConfiguration = new HttpConfiguration();
+        httpConfiguration.setOutputBufferSize(outputBufferBytes);
+        httpConfiguration.setPersistentConnectionsEnabled(persistentConnections);
+        final ServerConnector connector = new ServerConnector(server, acceptors, selectors, new HttpConnectionFactory(httpConfiguration));
+        connector.setPort(port);
+        connector.setIdleTimeout(idleTimeoutMillis);
+        connector.setAcceptQueueSize(acceptQueueSize);
+        server.addConnector(connector);
+        return server;
+    }
+
+    /**
+     * Has Javalin start {@link #newServer} on {@code port} and compress responses as configured. The gzip threshold
+     * is Javalin's, and so the same for every server in the JVM.
+     */
+    public void applyTo(final JavalinConfig config, final int port) {
+        config.server(() -> newServer(port));
+        config.compressionStrategy(null, gzip ? new Gzip(gzipLevel) : null);
+        OutputStreamWrapper.Companion.setMinSizeForCompression(gzipMinBytes);
+    }
+
+    @Override
+    public String toString() {
+        return "ServerOptions{" +
+                "acceptors=" + acceptors +
+                ", selectors=" + selectors +
+                ", maxThreads=" + maxThreads +
+                ", minThreads=" + minThreads +
+                ", idleTimeoutMillis=" + idleTimeoutMillis +
+                ", acceptQueueSize=" + acceptQueueSize +
+                ", persistentConnections=" + persistentConnections +
+                ", outputBufferBytes=" + outputBufferBytes +
+                ", gzip=" + gzip +
+                ", gzipMinBytes=" + gzipMinBytes +
+                ", gzipLevel=" + gzipLevel +
+                '}';
+    }
+
+    public static class Builder {
+        private int acceptors = AUTO;
+        private int selectors = AUTO;
+        private int maxThreads = DEFAULT_MAX_THREADS;
+        private int minThreads = DEFAULT_MIN_THREADS;
+        private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+        private int acceptQueueSize;
+        private boolean persistentConnections = true;
+        private int outputBufferBytes = DEFAULT_OUTPUT_BUFFER_BYTES;
+        private boolean gzip = true;
+        private int gzipMinBytes = DEFAULT_GZIP_MIN_BYTES;
+        private int gzipLevel = DEFAULT_GZIP_LEVEL;
+
+        private Builder() {
+        }
+
+        public Builder acceptors(final int acceptors) {
+            this.acceptors = acceptors;
+            return this;
+        }
+
+        public Builder selectors(final int selectors) {
+            this.selectors = selectors;
+            return this;
+        }
+
+        public Builder maxThreads(final int maxThreads) {
+            this.maxThreads = maxThreads;
+            return this;
+        }
+
+        public Builder minThreads(final int minThreads) {
+            this.minThreads = minThreads;
+            return this;
+        }
+
+        public Builder idleTimeoutMillis(final long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        public Builder acceptQueueSize(final int acceptQueueSize) {
+            this.acceptQueueSize = acceptQueueSize;
+            return this;
+        }
+
+        public Builder persistentConnections(final boolean persistentConnections) {
+            this.persistentConnections = persistentConnections;
+            return this;
+        }
+
+        public Builder outputBufferBytes(final int outputBufferBytes) {
+            this.outputBufferBytes = outputBufferBytes;
+            return this;
+        }
+
+        public Builder gzip(final boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        public Builder gzipMinBytes(final int gzipMinBytes) {
+            this.gzipMinBytes = gzipMinBytes;
+            return this;
+        }
+
+        public Builder gzipLevel(final int gzipLevel) {
+            this.gzipLevel = gzipLevel;
+            return this;
+        }
+
+        public ServerOptions build() {
+            return new ServerOptions(this);
+        }
+    }
+}
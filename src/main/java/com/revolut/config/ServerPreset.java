@@ -0,0 +1,69 @@
+package com.revolut.config;
+
+import java.util.Locale;
+
+/**
+ * Starting points for {@link ServerOptions}, sized from the number of cores. Any option set explicitly overrides the
+ * preset's.
+ */
+public enum ServerPreset {
+    /**
+     * What Javalin runs with when given no server.
+     */
+    DEFAULT {
+        @Override
+        ServerOptions options(final int cores) {
+            return ServerOptions.builder().build();
+        }
+    },
+    /**
+     * A few busy, long-lived connections, such as a gateway's pool, sending requests back to back. One acceptor is
+     * plenty and a selector per core keeps every core reading; the pool is fixed so no request waits for a thread
+     * to start, connections idle for minutes are kept for reuse, and responses, small JSON on a fast network, are
+     * not worth the CPU to compress.
+     */
+    THROUGHPUT {
+        @Override
+        ServerOptions options(final int cores) {
+            final int threads = Math.max(64, cores * 16);
+            return ServerOptions.builder()
+                    .acceptors(1)
+                    .selectors(cores)
+                    .maxThreads(threads)
+                    .minThreads(threads)
+                    .idleTimeoutMillis(300_000)
+                    .acceptQueueSize(1024)
+                    .gzip(false)
+                    .build();
+        }
+    },
+    /**
+     * Many clients, each sending a few requests and going quiet. More acceptors and a deep accept queue absorb
+     * bursts of new connections, two selectors per core spread them, idle connections are closed after 10 seconds
+     * and a smaller output buffer keeps memory per connection down.
+     */
+    CONNECTIONS {
+        @Override
+        ServerOptions options(final int cores) {
+            return ServerOptions.builder()
+                    .acceptors(Math.max(1, Math.min(4, cores / 4)))
+                    .selectors(cores * 2)
+                    .maxThreads(Math.max(500, cores * 32))
+                    .minThreads(16)
+                    .idleTimeoutMillis(10_000)
+                    .acceptQueueSize(4096)
+                    .outputBufferBytes(16 * 1024)
+                    .build();
+        }
+    };
+
+    public static ServerPreset of(final String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    public ServerOptions getOptions() {
+        return options(Runtime.getRuntime().availableProcessors());
+    }
+
+    abstract ServerOptions options(int cores);
+}
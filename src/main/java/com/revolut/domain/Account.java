@@ -1,42 +1,78 @@
 package com.revolut.domain;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.revolut.exceptions.InsufficientFundsException;
 import com.revolut.exceptions.InvalidDepositException;
-import com.revolut.serializers.MoneyDeSerializer;
-import com.revolut.serializers.MoneySerializer;
+import com.revolut.serializers.AccountDeSerializer;
+import com.revolut.serializers.AccountSerializer;
+import org.joda.money.CurrencyMismatchException;
+import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-@JsonIgnoreProperties(value = {
-        "lock"
-})
+@JsonSerialize(using = AccountSerializer.class)
+@JsonDeserialize(using = AccountDeSerializer.class)
 public class Account {
-    private final transient Lock lock;
-    private String owner;
-    private long accountNumber;
-    @JsonSerialize(using = MoneySerializer.class)
-    @JsonDeserialize(using = MoneyDeSerializer.class)
-    private Money money;
+    /**
+     * Longs between two hot slots, so that each slot sits on its own cache line.
+     */
+    private static final int SLOT_STRIDE = 8;
 
-    private Account() {
-        this(builder());
-    }
+    private final transient Lock lock;
+    private final String owner;
+    private final long accountNumber;
+    private final CurrencyUnit currency;
+    private volatile long balance;
+    /**
+     * The balance of a hot account, split into {@link #hotSlots} sub-ledgers that credits add to without the lock,
+     * {@code null} for other accounts, whose balance is {@link #balance}.
+     */
+    private final AtomicLongArray slots;
+    private final int hotSlots;
+    /**
+     * The balance as of the last {@link #publish()}, read by API clients, and its seqlock: odd while a publish is
+     * writing it, otherwise twice the number of publishes that changed it.
+     */
+    private volatile long publishedBalance;
+    private volatile long publishSequence;
 
     private Account(final Builder builder) {
-        this(builder.owner, builder.accountNumber, builder.balance);
+        this(builder.owner, builder.accountNumber, builder.balance, builder.hotSlots);
     }
 
     public Account(final String accountHolder, final long accountNumber, final Money money) {
+        this(accountHolder, accountNumber, money == null ? null : Amount.of(money));
+    }
+
+    public Account(final String accountHolder, final long accountNumber, final Amount balance) {
+        this(accountHolder, accountNumber, balance, 0);
+    }
+
+    private Account(final String accountHolder, final long accountNumber, final Amount balance, final int hotSlots) {
+        if (balance == null) {
+            throw new IllegalArgumentException(String.format("account %s must have money", accountNumber));
+        }
+        if (hotSlots < 0) {
+            throw new IllegalArgumentException(String.format("account %s cannot have %s hot slots", accountNumber, hotSlots));
+        }
         this.lock = new ReentrantLock();
         this.owner = accountHolder;
         this.accountNumber = accountNumber;
-        this.money = money;
+        this.currency = balance.getCurrency();
+        this.hotSlots = hotSlots;
+        if (hotSlots == 0) {
+            this.slots = null;
+            this.balance = balance.getMinorUnits();
+        } else {
+            this.slots = new AtomicLongArray((hotSlots + 1) * SLOT_STRIDE);
+            this.slots.set(slotIndex(0), balance.getMinorUnits());
+        }
+        this.publishedBalance = getBalanceMinorUnits();
     }
 
     public long getAccountNumber() {
@@ -48,7 +84,88 @@ public class Account {
     }
 
     public Money getMoney() {
-        return money;
+        return Money.ofMinor(currency, getBalanceMinorUnits());
+    }
+
+    public Amount getBalance() {
+        return Amount.ofMinor(currency, getBalanceMinorUnits());
+    }
+
+    /**
+     * The working balance. For a hot account it is the sum of its slots, which credits running concurrently may
+     * only increase.
+     */
+    public long getBalanceMinorUnits() {
+        if (slots == null) {
+            return balance;
+        }
+        long sum = 0;
+        for (int slot = 0; slot < hotSlots; slot++) {
+            sum += slots.get(slotIndex(slot));
+        }
+        return sum;
+    }
+
+    /**
+     * An account is hot when its balance is split into sub-ledger slots: {@link #deposit(Amount)} then only needs
+     * its slot rather than {@link #getLock()}, so credits to the account do not queue behind each other, while
+     * withdrawals still take the lock.
+     */
+    public boolean isHot() {
+        return slots != null;
+    }
+
+    /**
+     * @return the number of sub-ledger slots of a hot account, 0 for any other
+     */
+    public int getHotSlots() {
+        return hotSlots;
+    }
+
+    public CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    /**
+     * The balance as of the last {@link #publish()}: never one a transfer still holding this account may yet change,
+     * such as the intermediate balances of an atomic batch that is rolled back.
+     */
+    public long getPublishedBalanceMinorUnits() {
+        return publishedBalance;
+    }
+
+    /**
+     * Makes the current balance the published one, bumping the version if it changed. Called by whoever changed the
+     * balance before giving up the account, so there is only ever one publisher at a time. For a hot account that
+     * means holding {@link #getLock()}: credits made without it only show once a lock holder, such as
+     * {@link com.revolut.service.HotAccountConsolidator}, publishes the sum of the slots.
+     */
+    public void publish() {
+        final long current = getBalanceMinorUnits();
+        if (current == publishedBalance) {
+            return;
+        }
+        final long sequence = publishSequence;
+        publishSequence = sequence + 1;
+        publishedBalance = current;
+        publishSequence = sequence + 2;
+    }
+
+    /**
+     * Reads the published balance and its version as a consistent pair, without locking: retries in the rare case
+     * that a publish ran in between.
+     */
+    public AccountSnapshot snapshot() {
+        for (int attempts = 0; ; attempts++) {
+            final long sequence = publishSequence;
+            final long minorUnits = publishedBalance;
+            if ((sequence & 1) == 0 && publishSequence == sequence) {
+                return new AccountSnapshot(owner, accountNumber, currency, minorUnits, sequence >>> 1);
+            }
+            if (attempts > 0) {
+                Thread.yield();
+            }
+        }
     }
 
 
@@ -56,33 +173,151 @@ public class Account {
         return new Builder();
     }
 
+    /**
+     * The lock guarding this account's balance. An account is never replaced once created, so the lock is the
+     * same object for the whole life of the account.
+     */
     public Lock getLock() {
         return lock;
     }
 
-    public Account deposit(final Money amount) throws InvalidDepositException {
-        if (amount.isNegative()) {
+    /**
+     * Adds {@code amount} to the balance in place. The caller must hold {@link #getLock()}, or be the shard thread
+     * owning the account in {@link com.revolut.service.ShardedTransactionService}, unless the account is hot.
+     */
+    public void deposit(final Amount amount) throws InvalidDepositException {
+        final long minorUnits = minorUnitsOf(amount);
+        if (minorUnits < 0) {
             throw new InvalidDepositException(String.format("money %s cannot be deposited", amount));
         }
+        if (slots == null) {
+            if (minorUnits > Long.MAX_VALUE - balance) {
+                throw overflow(amount);
+            }
+            balance += minorUnits;
+            return;
+        }
+        // starts at the thread's own slot and moves on whenever another credit got in first
+        for (int slot = homeSlot(); ; slot = (slot + 1) % hotSlots) {
+            final int index = slotIndex(slot);
+            final long current = slots.get(index);
+            if (minorUnits > Long.MAX_VALUE - current) {
+                throw overflow(amount);
+            }
+            if (slots.compareAndSet(index, current, current + minorUnits)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Subtracts {@code amount} from the balance in place. The caller must hold {@link #getLock()}, or be the shard
+     * thread owning the account in {@link com.revolut.service.ShardedTransactionService}.
+     * <p>
+     * A hot account takes from the thread's own slot when it covers the amount, and otherwise borrows across the
+     * other slots. Holding the lock makes this the only withdrawal, and credits only add, so once the sum of the
+     * slots covers the amount, draining them cannot run short.
+     */
+    public void withdraw(final Amount amount) throws InsufficientFundsException {
+        final long minorUnits = minorUnitsOf(amount);
+        if (slots == null) {
+            final long afterWithDraw = Math.subtractExact(balance, minorUnits);
+            if (afterWithDraw < 0) {
+                throw insufficientFunds();
+            }
+            balance = afterWithDraw;
+            return;
+        }
+        if (minorUnits < 0) {
+            throw new IllegalArgumentException(String.format("money %s cannot be withdrawn", amount));
+        }
+        final int home = homeSlot();
+        final int homeIndex = slotIndex(home);
+        for (long current; (current = slots.get(homeIndex)) >= minorUnits; ) {
+            if (slots.compareAndSet(homeIndex, current, current - minorUnits)) {
+                return;
+            }
+        }
+        if (getBalanceMinorUnits() < minorUnits) {
+            throw insufficientFunds();
+        }
+        long remaining = minorUnits;
+        for (int slot = home; remaining > 0; slot = (slot + 1) % hotSlots) {
+            remaining -= takeFromSlot(slot, remaining);
+        }
+    }
 
-        return Account.builder()
-                .money(this.getMoney().plus(amount))
-                .accountNumber(this.getAccountNumber())
-                .owner(this.getOwner())
-                .build();
+    /**
+     * Takes up to {@code wanted} from one slot, never leaving it negative.
+     *
+     * @return what was taken
+     */
+    private long takeFromSlot(final int slot, final long wanted) {
+        final int index = slotIndex(slot);
+        while (true) {
+            final long current = slots.get(index);
+            final long taken = Math.min(current, wanted);
+            if (taken <= 0 || slots.compareAndSet(index, current, current - taken)) {
+                return Math.max(taken, 0);
+            }
+        }
+    }
+
+    private int homeSlot() {
+        return (int) (Thread.currentThread().getId() % hotSlots);
+    }
+
+    /**
+     * Slot {@code slot} lives one stride in, so that no slot shares a cache line with the array header either.
+     */
+    private static int slotIndex(final int slot) {
+        return (slot + 1) * SLOT_STRIDE;
+    }
+
+    private InsufficientFundsException insufficientFunds() {
+        return new InsufficientFundsException(String.format("Account %s does not have sufficient funds", this.getAccountNumber()));
     }
 
-    public Account withdraw(final Money amount) throws InsufficientFundsException {
-        final Money afterWithDraw = this.getMoney().minus(amount);
-        if (afterWithDraw.isNegative()) {
-            throw new InsufficientFundsException(String.format("Account %s does not have sufficient funds", this.getAccountNumber()));
+    private InvalidDepositException overflow(final Amount amount) {
+        return new InvalidDepositException(String.format("money %s would overflow the balance of account %s", amount, accountNumber));
+    }
+
+    /**
+     * Fails the same way {@link #deposit(Amount)} would, without touching the balance, so a transfer can reject a
+     * deposit before it has withdrawn anything: for a negative amount, or one the balance cannot hold on top of what
+     * it has. The second only holds while the caller has the balance to itself; credits running alongside to a hot
+     * account can still take it over, and {@link #deposit(Amount)} then fails.
+     */
+    public void checkDeposit(final Amount amount) throws InvalidDepositException {
+        final long minorUnits = minorUnitsOf(amount);
+        if (minorUnits < 0) {
+            throw new InvalidDepositException(String.format("money %s cannot be deposited", amount));
         }
+        if (minorUnits > Long.MAX_VALUE - getBalanceMinorUnits()) {
+            throw overflow(amount);
+        }
+    }
 
-        return Account.builder()
-                .money(afterWithDraw)
-                .accountNumber(this.getAccountNumber())
-                .owner(this.getOwner())
-                .build();
+    /**
+     * Overwrites the balance with one recovered from durable storage. The caller must hold {@link #getLock()} or
+     * otherwise have the account to itself, as during recovery.
+     */
+    public void restoreBalance(final long minorUnits) {
+        if (slots == null) {
+            balance = minorUnits;
+        } else {
+            for (int slot = 0; slot < hotSlots; slot++) {
+                slots.set(slotIndex(slot), slot == 0 ? minorUnits : 0);
+            }
+        }
+        publish();
+    }
+
+    private long minorUnitsOf(final Amount amount) {
+        if (amount.getCurrency() != currency) {
+            throw new CurrencyMismatchException(currency, amount.getCurrency());
+        }
+        return amount.getMinorUnits();
     }
 
 
@@ -92,13 +327,14 @@ public class Account {
         if (o == null || getClass() != o.getClass()) return false;
         Account account = (Account) o;
         return accountNumber == account.accountNumber &&
+                getBalanceMinorUnits() == account.getBalanceMinorUnits() &&
                 Objects.equals(owner, account.owner) &&
-                Objects.equals(money, account.money);
+                Objects.equals(currency, account.currency);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(owner, accountNumber, money);
+        return Objects.hash(owner, accountNumber, currency, getBalanceMinorUnits());
     }
 
     @Override
@@ -106,14 +342,15 @@ public class Account {
         return "Account{" +
                 "'owner='" + owner + '\'' +
                 ", accountNumber=" + accountNumber +
-                ", money=" + money +
+                ", money=" + getMoney() +
                 '}';
     }
 
     public static class Builder {
         private String owner;
         private long accountNumber;
-        private Money balance;
+        private Amount balance;
+        private int hotSlots;
 
         private Builder() {
         }
@@ -129,10 +366,24 @@ public class Account {
         }
 
         public Builder money(final Money amount) {
+            this.balance = Amount.of(amount);
+            return this;
+        }
+
+        public Builder balance(final Amount amount) {
             this.balance = amount;
             return this;
         }
 
+        /**
+         * Makes the account hot with {@code slots} sub-ledger slots, see {@link Account#isHot()}; 0, the default,
+         * for an ordinary account.
+         */
+        public Builder hotSlots(final int slots) {
+            this.hotSlots = slots;
+            return this;
+        }
+
 
         public Account build() {
             return new Account(this);
@@ -142,7 +393,7 @@ public class Account {
 
     public static Account copy(Account acc) {
         return Account.builder()
-                .money(acc.getMoney())
+                .balance(Amount.ofMinor(acc.currency, acc.publishedBalance))
                 .accountNumber(acc.getAccountNumber())
                 .owner(acc.getOwner())
                 .build();
@@ -0,0 +1,51 @@
+package com.revolut.domain;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.revolut.serializers.AccountSerializer;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+
+/**
+ * An account's published balance together with its version, which changes whenever the published balance does.
+ * Serialized like an {@link Account}.
+ */
+@JsonSerialize(using = AccountSerializer.SnapshotSerializer.class)
+public final class AccountSnapshot {
+    private final String owner;
+    private final long accountNumber;
+    private final CurrencyUnit currency;
+    private final long balanceMinorUnits;
+    private final long version;
+
+    AccountSnapshot(final String owner, final long accountNumber, final CurrencyUnit currency, final long balanceMinorUnits, final long version) {
+        this.owner = owner;
+        this.accountNumber = accountNumber;
+        this.currency = currency;
+        this.balanceMinorUnits = balanceMinorUnits;
+        this.version = version;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getAccountNumber() {
+        return accountNumber;
+    }
+
+    public CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    public long getBalanceMinorUnits() {
+        return balanceMinorUnits;
+    }
+
+    public Money getMoney() {
+        return Money.ofMinor(currency, balanceMinorUnits);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
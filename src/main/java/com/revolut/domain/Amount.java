@@ -0,0 +1,99 @@
+package com.revolut.domain;
+
+import org.joda.money.CurrencyMismatchException;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point money used inside the service: a whole number of minor units (cents for EUR) and a currency.
+ * Arithmetic is plain {@code long} arithmetic with overflow checks, so it allocates nothing beyond the result and
+ * never goes through {@link BigDecimal}. Joda {@link Money} is only used at the API edge, see {@link #of(Money)}
+ * and {@link #toMoney()}.
+ * <p>
+ * {@link CurrencyUnit} instances are interned by joda-money, so currencies are compared by reference.
+ */
+public final class Amount {
+    private final long minorUnits;
+    private final CurrencyUnit currency;
+
+    private Amount(final CurrencyUnit currency, final long minorUnits) {
+        this.currency = currency;
+        this.minorUnits = minorUnits;
+    }
+
+    public static Amount ofMinor(final CurrencyUnit currency, final long minorUnits) {
+        if (currency == null) {
+            throw new NullPointerException("currency must not be null");
+        }
+        return new Amount(currency, minorUnits);
+    }
+
+    public static Amount of(final Money money) {
+        return new Amount(money.getCurrencyUnit(), money.getAmountMinorLong());
+    }
+
+    public Money toMoney() {
+        return Money.ofMinor(currency, minorUnits);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public boolean isSameCurrency(final Amount other) {
+        return currency == other.currency;
+    }
+
+    public Amount plus(final Amount other) {
+        return new Amount(currency, Math.addExact(minorUnits, minorUnitsOf(other)));
+    }
+
+    public Amount minus(final Amount other) {
+        return new Amount(currency, Math.subtractExact(minorUnits, minorUnitsOf(other)));
+    }
+
+    /**
+     * @return the minor units of {@code other}, which must be in this amount's currency
+     */
+    public long minorUnitsOf(final Amount other) {
+        if (other.currency != currency) {
+            throw new CurrencyMismatchException(currency, other.currency);
+        }
+        return other.minorUnits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Amount amount = (Amount) o;
+        return minorUnits == amount.minorUnits && currency == amount.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * currency.hashCode() + Long.hashCode(minorUnits);
+    }
+
+    /**
+     * Same format as {@link Money#toString()}, e.g. {@code EUR 12.50}.
+     */
+    @Override
+    public String toString() {
+        return currency.getCode() + ' ' + BigDecimal.valueOf(minorUnits, Math.max(0, currency.getDecimalPlaces())).toPlainString();
+    }
+}
@@ -0,0 +1,12 @@
+package com.revolut.domain;
+
+public enum BatchMode {
+    /**
+     * Every transfer in the batch is applied, or none is.
+     */
+    ATOMIC,
+    /**
+     * Each transfer is applied on its own; failures are reported per item and do not affect the others.
+     */
+    BEST_EFFORT
+}
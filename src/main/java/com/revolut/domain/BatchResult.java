@@ -0,0 +1,58 @@
+package com.revolut.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.UUID;
+
+public class BatchResult {
+    private final BatchMode mode;
+    private final boolean committed;
+    private final List<Item> results;
+
+    public BatchResult(final BatchMode mode, final boolean committed, final List<Item> results) {
+        this.mode = mode;
+        this.committed = committed;
+        this.results = results;
+    }
+
+    public BatchMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return whether at least one transfer of the batch was applied
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public List<Item> getResults() {
+        return results;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+        private final TransferStatus status;
+        private final UUID id;
+        private final String message;
+
+        public Item(final TransferStatus status, final UUID id, final String message) {
+            this.status = status;
+            this.id = id;
+            this.message = message;
+        }
+
+        public TransferStatus getStatus() {
+            return status;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
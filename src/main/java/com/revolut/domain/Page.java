@@ -0,0 +1,33 @@
+package com.revolut.domain;
+
+import java.util.List;
+
+/**
+ * A slice of an ordered listing. {@link #getCursor()} is passed back as {@code after} to read the next slice.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final long cursor;
+    private final boolean hasMore;
+
+    public Page(final List<T> items, final long cursor, final boolean hasMore) {
+        this.items = items;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the position of the last record this page covers
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
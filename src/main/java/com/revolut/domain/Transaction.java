@@ -1,43 +1,41 @@
 package com.revolut.domain;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import com.revolut.serializers.MoneyDeSerializer;
-import com.revolut.serializers.MoneySerializer;
+import com.revolut.serializers.TransactionDeSerializer;
+import com.revolut.serializers.TransactionSerializer;
 import org.joda.money.Money;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-@JsonIgnoreProperties(value = {"isExecuting"})
+@JsonSerialize(using = TransactionSerializer.class)
+@JsonDeserialize(using = TransactionDeSerializer.class)
 public class Transaction {
     private final transient AtomicBoolean isExecuting;
     private final UUID id;
     private final String created;
     private final long fromAccountNumber;
     private final long toAccountNumber;
-    @JsonSerialize(using = MoneySerializer.class)
-    @JsonDeserialize(using = MoneyDeSerializer.class)
-    private final Money money;
-
-    private Transaction() {
-        this(builder());
-    }
+    private final Amount amount;
 
     private Transaction(final Builder builder) {
-        this(builder.accountFrom, builder.accountTo, builder.created, builder.amount);
+        this(builder.id, builder.created, builder.accountFrom, builder.accountTo, builder.amount);
     }
 
-    private Transaction(final long accountFrom, final long accountTo, final String created, final Money money) {
+    private Transaction(final UUID id, final String created, final long accountFrom, final long accountTo, final Amount amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("transaction must have money");
+        }
         this.isExecuting = new AtomicBoolean(true);
-        this.id = UUID.randomUUID();
-        this.created = Instant.now().toString();
+        this.id = id == null ? UUID.randomUUID() : id;
+        this.created = created == null ? Instant.now().truncatedTo(ChronoUnit.MICROS).toString() : created;
         this.fromAccountNumber = accountFrom;
         this.toAccountNumber = accountTo;
-        this.money = money;
+        this.amount = amount;
     }
 
     public static Builder builder() {
@@ -54,7 +52,11 @@ public class Transaction {
     }
 
     public Money getMoney() {
-        return money;
+        return amount.toMoney();
+    }
+
+    public Amount getAmount() {
+        return amount;
     }
 
 
@@ -78,14 +80,14 @@ public class Transaction {
         Transaction that = (Transaction) o;
         return fromAccountNumber == that.fromAccountNumber &&
                 toAccountNumber == that.toAccountNumber &&
-                money == that.money &&
+                Objects.equals(amount, that.amount) &&
                 Objects.equals(id, that.id) &&
                 Objects.equals(created, that.created);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, created, fromAccountNumber, toAccountNumber, money);
+        return Objects.hash(id, created, fromAccountNumber, toAccountNumber, amount);
     }
 
 
@@ -97,20 +99,31 @@ public class Transaction {
                 ", created=" + created +
                 ", fromAccountNumber=" + fromAccountNumber +
                 ", toAccountNumber=" + toAccountNumber +
-                ", money=" + money +
+                ", money=" + amount +
                 '}';
     }
 
 
     public static class Builder {
-        private String created = Instant.now().toString();
+        private UUID id;
+        private String created;
         private long accountFrom;
         private long accountTo;
-        private Money amount;
+        private Amount amount;
 
         private Builder() {
         }
 
+        public Builder id(final UUID id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder created(final String created) {
+            this.created = created;
+            return this;
+        }
+
         public Builder accountFrom(final long accountFrom) {
             this.accountFrom = accountFrom;
             return this;
@@ -122,6 +135,11 @@ public class Transaction {
         }
 
         public Builder money(final Money amount) {
+            this.amount = Amount.of(amount);
+            return this;
+        }
+
+        public Builder amount(final Amount amount) {
             this.amount = amount;
             return this;
         }
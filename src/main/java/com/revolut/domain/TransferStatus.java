@@ -0,0 +1,23 @@
+package com.revolut.domain;
+
+public enum TransferStatus {
+    OK,
+    INVALID_AMOUNT,
+    ACCOUNT_NOT_FOUND,
+    SAME_ACCOUNT,
+    UNSUPPORTED_CURRENCY,
+    INSUFFICIENT_FUNDS,
+    TIMEOUT,
+    /**
+     * The transfer itself was valid but was rolled back or skipped because another item of an atomic batch failed.
+     */
+    ABORTED,
+    /**
+     * The transfer failed unexpectedly and was not applied.
+     */
+    FAILED,
+    /**
+     * The accounts are in currencies between which there is no exchange rate.
+     */
+    NO_EXCHANGE_RATE
+}
@@ -0,0 +1,7 @@
+package com.revolut.exceptions;
+
+public class ExchangeRateNotFoundException extends Exception {
+    public ExchangeRateNotFoundException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.revolut.exceptions;
+
+public class TransferTimeoutException extends Exception {
+    public TransferTimeoutException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,48 @@
+package com.revolut.fx;
+
+import org.joda.money.CurrencyUnit;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Reads rates from a properties file, re-read on every load, with one rate per ordered currency pair:
+ * <pre>
+ * EUR/USD=1.0842
+ * USD/EUR=0.9223
+ * </pre>
+ */
+public class FileFxRateProvider implements FxRateProvider {
+    private final Path file;
+
+    public FileFxRateProvider(final Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public FxRates load() throws IOException {
+        final Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        final FxRates.Builder rates = FxRates.builder();
+        for (final String pair : properties.stringPropertyNames()) {
+            final String[] currencies = pair.split("/");
+            if (currencies.length != 2) {
+                throw new IOException(String.format("%s: '%s' is not a currency pair like EUR/USD", file, pair));
+            }
+            try {
+                rates.rate(CurrencyUnit.of(currencies[0].trim()), CurrencyUnit.of(currencies[1].trim()),
+                        new BigDecimal(properties.getProperty(pair).trim()));
+            } catch (final IllegalArgumentException exception) {
+                throw new IOException(String.format("%s: invalid rate for %s: %s", file, pair, exception.getMessage()), exception);
+            }
+        }
+        return rates.build();
+    }
+}
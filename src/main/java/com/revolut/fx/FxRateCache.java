@@ -0,0 +1,72 @@
+package com.revolut.fx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The current {@link FxRates}, behind a single volatile reference. Transfers read it once and convert with that
+ * table, so a refresh never waits for them nor they for it: it loads the new table off to the side and swaps the
+ * reference, and a transfer sees either the old table or the new one, never a mix.
+ * <p>
+ * Every table loaded gets the next version. A failed refresh keeps the current table.
+ */
+public class FxRateCache implements AutoCloseable {
+    public static final long DEFAULT_REFRESH_MILLIS = 60_000;
+
+    private static final Logger log = LoggerFactory.getLogger(FxRateCache.class);
+    private final FxRateProvider provider;
+    private final ScheduledExecutorService scheduler;
+    private volatile FxRates rates;
+
+    /**
+     * Loads the first table, failing if it cannot, then refreshes every {@code refreshMillis}, or never if it is 0.
+     */
+    public FxRateCache(final FxRateProvider provider, final long refreshMillis) throws IOException {
+        this.provider = provider;
+        this.rates = provider.load().withVersion(1);
+        log.info("loaded {} exchange rates", rates.size());
+        if (refreshMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "fx-rate-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledRefresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    public FxRates getRates() {
+        return rates;
+    }
+
+    /**
+     * Loads the provider's current table and makes it the one transfers use.
+     */
+    public synchronized FxRates refresh() throws IOException {
+        final FxRates loaded = provider.load().withVersion(rates.getVersion() + 1);
+        rates = loaded;
+        return loaded;
+    }
+
+    private void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (final IOException | RuntimeException exception) {
+            log.error("exchange rate refresh failed, keeping version {}", rates.getVersion(), exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.revolut.fx;
+
+import java.io.IOException;
+
+/**
+ * Where {@link FxRateCache} gets its rates from. Each call returns the whole current table.
+ */
+public interface FxRateProvider {
+    FxRates load() throws IOException;
+}
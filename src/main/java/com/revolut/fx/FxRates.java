@@ -0,0 +1,118 @@
+package com.revolut.fx;
+
+import com.revolut.domain.Amount;
+import com.revolut.exceptions.ExchangeRateNotFoundException;
+import org.joda.money.CurrencyUnit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable table of exchange rates, one per ordered currency pair: {@code rate(EUR, USD)} is how many US dollars
+ * one euro buys. A pair without a rate is not converted, in either direction, even if the opposite pair has one.
+ * <p>
+ * The version tells tables apart: {@link FxRateCache} numbers each table it loads.
+ */
+public final class FxRates {
+    /**
+     * Converted amounts are rounded to the nearest minor unit of the target currency, ties to even.
+     */
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+
+    private final long version;
+    private final Map<CurrencyUnit, Map<CurrencyUnit, BigDecimal>> rates;
+
+    private FxRates(final long version, final Map<CurrencyUnit, Map<CurrencyUnit, BigDecimal>> rates) {
+        this.version = version;
+        this.rates = rates;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return how many units of {@code to} one unit of {@code from} buys, or {@code null} without a rate for the pair
+     */
+    public BigDecimal rate(final CurrencyUnit from, final CurrencyUnit to) {
+        final Map<CurrencyUnit, BigDecimal> targets = rates.get(from);
+        return targets == null ? null : targets.get(to);
+    }
+
+    /**
+     * @return {@code amount} in {@code currency}, rounded by {@link #ROUNDING}; {@code amount} itself if it already is
+     * @throws ExchangeRateNotFoundException if there is no rate for the pair
+     */
+    public Amount convert(final Amount amount, final CurrencyUnit currency) throws ExchangeRateNotFoundException {
+        if (amount.getCurrency() == currency) {
+            return amount;
+        }
+        final BigDecimal rate = rate(amount.getCurrency(), currency);
+        if (rate == null) {
+            throw new ExchangeRateNotFoundException(String.format("no exchange rate from %s to %s", amount.getCurrency(), currency));
+        }
+        return Amount.of(amount.toMoney().convertedTo(currency, rate, ROUNDING));
+    }
+
+    /**
+     * @return the number of currency pairs with a rate
+     */
+    public int size() {
+        int size = 0;
+        for (final Map<CurrencyUnit, BigDecimal> targets : rates.values()) {
+            size += targets.size();
+        }
+        return size;
+    }
+
+    FxRates withVersion(final long version) {
+        return new FxRates(version, rates);
+    }
+
+    @Override
+    public String toString() {
+        return "FxRates{" +
+                "version=" + version +
+                ", rates=" + rates +
+                '}';
+    }
+
+    public static class Builder {
+        private final Map<CurrencyUnit, Map<CurrencyUnit, BigDecimal>> rates = new HashMap<>();
+        private long version;
+
+        private Builder() {
+        }
+
+        public Builder version(final long version) {
+            this.version = version;
+            return this;
+        }
+
+        public Builder rate(final CurrencyUnit from, final CurrencyUnit to, final BigDecimal rate) {
+            if (from == to) {
+                throw new IllegalArgumentException(String.format("exchange rate from %s to itself", from));
+            }
+            if (rate.signum() <= 0) {
+                throw new IllegalArgumentException(String.format("exchange rate from %s to %s must be positive, was %s", from, to, rate));
+            }
+            rates.computeIfAbsent(from, currency -> new HashMap<>()).put(to, rate);
+            return this;
+        }
+
+        public FxRates build() {
+            final Map<CurrencyUnit, Map<CurrencyUnit, BigDecimal>> copy = new HashMap<>();
+            for (final Map.Entry<CurrencyUnit, Map<CurrencyUnit, BigDecimal>> entry : rates.entrySet()) {
+                copy.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+            }
+            return new FxRates(version, Collections.unmodifiableMap(copy));
+        }
+    }
+}
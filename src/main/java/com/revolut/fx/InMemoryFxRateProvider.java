@@ -0,0 +1,24 @@
+package com.revolut.fx;
+
+/**
+ * Serves whatever table it was last given, for tests and for rates pushed in from elsewhere.
+ */
+public class InMemoryFxRateProvider implements FxRateProvider {
+    private volatile FxRates rates;
+
+    public InMemoryFxRateProvider(final FxRates rates) {
+        this.rates = rates;
+    }
+
+    /**
+     * Replaces the table; {@link FxRateCache} picks it up on its next refresh.
+     */
+    public void setRates(final FxRates rates) {
+        this.rates = rates;
+    }
+
+    @Override
+    public FxRates load() {
+        return rates;
+    }
+}
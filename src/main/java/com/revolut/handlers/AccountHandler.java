@@ -1,20 +1,24 @@
 package com.revolut.handlers;
 
 import com.revolut.domain.Account;
+import com.revolut.domain.AccountSnapshot;
 import com.revolut.exceptions.AccountAlreadyExistsException;
 import com.revolut.exceptions.AccountNotFoundException;
 import com.revolut.service.AccountingService;
 import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
-
 public class AccountHandler {
 
     private static final Logger log = LoggerFactory.getLogger(AccountHandler.class);
+    /**
+     * Characters an owner may have, well within what a journal record holds.
+     */
+    static final int MAX_OWNER_LENGTH = 255;
 
     private AccountingService accountingService;
 
@@ -23,12 +27,7 @@ public class AccountHandler {
     }
 
     public void getAll(final Context context) {
-        final Collection<Account> allAccounts = accountingService.getAllAccounts();
-        if (allAccounts.isEmpty()) {
-            context.status(HttpStatus.NOT_FOUND_404);
-        } else {
-            context.json(allAccounts);
-        }
+        PagedResponse.respond(context, Account.class, accountingService::getAccounts);
     }
 
     public void create(final Context context) throws AccountAlreadyExistsException {
@@ -37,17 +36,28 @@ public class AccountHandler {
         context.json(created).status(HttpStatus.CREATED_201);
     }
 
+    /**
+     * Serves the account's published balance with an {@code ETag} of its version and balance, and answers 304 without
+     * a body when the client already has it. The balance is part of the tag so that versions, which start over when
+     * the service restarts, cannot make a stale balance look current.
+     */
     public void getAccount(final Context context) throws AccountNotFoundException {
         final long accountId = context.pathParam(":accountNumber", Long.class).check(accId -> accId > 0, "Account number cannot be negative number").get();
-        final Account account = accountingService.getAccount(accountId);
-        context.json(account);
+        final AccountSnapshot snapshot = accountingService.getAccountSnapshot(accountId);
+        final String etag = "\"" + snapshot.getVersion() + '-' + snapshot.getBalanceMinorUnits() + '"';
+        context.header(HttpHeader.ETAG.asString(), etag);
+        if (etag.equals(context.header(HttpHeader.IF_NONE_MATCH.asString()))) {
+            context.status(HttpStatus.NOT_MODIFIED_304);
+            return;
+        }
+        context.json(snapshot);
     }
 
 
     private Account validateParamsAndCreateAccount(final Context context) {
         try {
             return context.bodyValidator(Account.class)
-                    .check(t -> (t.getOwner() != null && !t.getOwner().isEmpty()) && (t.getMoney().isPositive()))
+                    .check(t -> (t.getOwner() != null && !t.getOwner().isEmpty() && t.getOwner().length() <= MAX_OWNER_LENGTH) && (t.getBalance().isPositive()))
                     .get();
         }
         catch(final BadRequestResponse exception){
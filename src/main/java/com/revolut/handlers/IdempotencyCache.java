@@ -0,0 +1,219 @@
+package com.revolut.handlers;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the response to each request made with an {@code Idempotency-Key}, so that a retried request is
+ * answered from here instead of being executed again. Bounded both in keys and in time: a key is forgotten once it
+ * is older than the time to live, or earlier when room is needed for a new key.
+ * <p>
+ * Keys are spread over shards, each a {@link ConcurrentHashMap} for lock-free lookups plus a ring of its entries
+ * that a CLOCK hand sweeps to pick the entry to evict: the first expired entry, or completed one not looked up since
+ * the hand last passed it. A hit therefore only sets a flag on the entry, it neither allocates nor
+ * reorders anything. Claiming and evicting lock the shard.
+ */
+public final class IdempotencyCache {
+    public static final int DEFAULT_MAX_KEYS = 100_000;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+    public static final int MAX_KEY_LENGTH = 255;
+    private static final int SHARD_COUNT = 16;
+
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    public IdempotencyCache(final int maxKeys, final long ttlMillis) {
+        this(maxKeys, ttlMillis, System::nanoTime);
+    }
+
+    IdempotencyCache(final int maxKeys, final long ttlMillis, final LongSupplier nanoClock) {
+        if (maxKeys <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException(String.format("invalid max keys %s or time to live %s ms", maxKeys, ttlMillis));
+        }
+        final int perShard = Math.max(1, (maxKeys + SHARD_COUNT - 1) / SHARD_COUNT);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard(perShard);
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Claims {@code key} for a request with body {@code request}, unless a live entry already holds it.
+     *
+     * @return {@code null} if the caller now owns the key and must {@link #complete} or {@link #release} it,
+     * otherwise the entry holding the key
+     */
+    Entry claim(final String key, final byte[] request) {
+        final Shard shard = shardFor(key);
+        final long now = nanoClock.getAsLong();
+        final Entry existing = shard.entries.get(key);
+        if (existing != null && !existing.isExpired(now)) {
+            existing.touch();
+            return existing;
+        }
+        synchronized (shard) {
+            final Entry current = shard.entries.get(key);
+            if (current != null && !current.isExpired(now)) {
+                current.touch();
+                return current;
+            }
+            final Entry claimed = new Entry(key, request, now + ttlNanos);
+            if (current != null) {
+                shard.replace(current, claimed);
+            } else {
+                shard.insert(claimed, now);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stores the response to the request that claimed {@code key}, its JSON {@code String} or binary {@code byte[]}
+     * body; a no-op if the claim has since been evicted.
+     */
+    void complete(final String key, final byte[] request, final int status, final Object response) {
+        final Entry entry = shardFor(key).entries.get(key);
+        if (entry != null && entry.request == request) {
+            entry.response = response;
+            entry.status = status;
+        }
+    }
+
+    /**
+     * Gives up a claim whose request failed, so that a retry executes it afresh.
+     */
+    void release(final String key, final byte[] request) {
+        final Shard shard = shardFor(key);
+        synchronized (shard) {
+            final Entry entry = shard.entries.get(key);
+            if (entry != null && entry.request == request) {
+                shard.remove(entry);
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (final Shard shard : shards) {
+            size += shard.entries.size();
+        }
+        return size;
+    }
+
+    private Shard shardFor(final String key) {
+        final int hash = key.hashCode() * 0x9E3779B9;
+        return shards[hash >>> (32 - Integer.numberOfTrailingZeros(SHARD_COUNT))];
+    }
+
+    static final class Entry {
+        private final String key;
+        private final byte[] request;
+        private final long expiresAtNanos;
+        private volatile int status;
+        private volatile Object response;
+        private volatile boolean referenced;
+        private int slot;
+
+        private Entry(final String key, final byte[] request, final long expiresAtNanos) {
+            this.key = key;
+            this.request = request;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        /**
+         * @return {@code true} while the request that claimed the key has not completed
+         */
+        boolean isInFlight() {
+            return status == 0;
+        }
+
+        boolean isSameRequest(final byte[] other) {
+            return Arrays.equals(request, other);
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the JSON {@code String} or binary {@code byte[]} the request was answered with
+         */
+        Object getResponse() {
+            return response;
+        }
+
+        private boolean isExpired(final long now) {
+            return now - expiresAtNanos >= 0;
+        }
+
+        private void touch() {
+            if (!referenced) {
+                referenced = true;
+            }
+        }
+    }
+
+    private static final class Shard {
+        private final ConcurrentHashMap<String, Entry> entries;
+        private final Entry[] ring;
+        private int count;
+        private int hand;
+
+        private Shard(final int capacity) {
+            entries = new ConcurrentHashMap<>(capacity * 2);
+            ring = new Entry[capacity];
+        }
+
+        private void insert(final Entry entry, final long now) {
+            if (count < ring.length) {
+                entry.slot = count;
+                ring[count++] = entry;
+            } else {
+                final Entry victim = victim(now);
+                entries.remove(victim.key, victim);
+                entry.slot = victim.slot;
+                ring[victim.slot] = entry;
+            }
+            entries.put(entry.key, entry);
+        }
+
+        private void replace(final Entry current, final Entry entry) {
+            entry.slot = current.slot;
+            ring[current.slot] = entry;
+            entries.put(entry.key, entry);
+        }
+
+        private void remove(final Entry entry) {
+            entries.remove(entry.key, entry);
+            final Entry last = ring[--count];
+            ring[count] = null;
+            if (last != entry) {
+                last.slot = entry.slot;
+                ring[entry.slot] = last;
+            }
+            if (hand >= count) {
+                hand = 0;
+            }
+        }
+
+        /**
+         * Entries still in flight are passed over like referenced ones, so that a retry does not execute alongside
+         * the request it retries. Two turns of the hand at most: the first clears every reference flag it passes.
+         */
+        private Entry victim(final long now) {
+            for (int step = 0; step < 2 * ring.length; step++) {
+                final Entry candidate = ring[hand];
+                hand = hand + 1 == ring.length ? 0 : hand + 1;
+                if (candidate.isExpired(now) || !candidate.referenced && !candidate.isInFlight()) {
+                    return candidate;
+                }
+                candidate.referenced = false;
+            }
+            return ring[hand];
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.revolut.handlers;
+
+import com.revolut.metrics.LockContentionMetrics;
+import com.revolut.metrics.PrometheusWriter;
+import com.revolut.metrics.RecoveryMetrics;
+import com.revolut.metrics.RequestMetrics;
+import com.revolut.metrics.TransferMetrics;
+import com.revolut.service.AccountingService;
+import com.revolut.service.TransactionService;
+import io.javalin.http.Context;
+import io.javalin.http.NotFoundResponse;
+
+public class MetricsHandler {
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final LockContentionMetrics lockContentionMetrics;
+    private final RecoveryMetrics recoveryMetrics;
+    private final RequestMetrics requestMetrics;
+    private final TransferMetrics transferMetrics;
+    private final AccountingService accountingService;
+    private final TransactionService transactionService;
+
+    /**
+     * @param recoveryMetrics {@code null} when state is not journaled
+     */
+    public MetricsHandler(final LockContentionMetrics lockContentionMetrics, final RecoveryMetrics recoveryMetrics,
+                          final RequestMetrics requestMetrics, final TransferMetrics transferMetrics,
+                          final AccountingService accountingService, final TransactionService transactionService) {
+        this.lockContentionMetrics = lockContentionMetrics;
+        this.recoveryMetrics = recoveryMetrics;
+        this.requestMetrics = requestMetrics;
+        this.transferMetrics = transferMetrics;
+        this.accountingService = accountingService;
+        this.transactionService = transactionService;
+    }
+
+    public void getPrometheus(final Context context) {
+        context.contentType(PrometheusWriter.CONTENT_TYPE);
+        context.result(new PrometheusWriter()
+                .requests(requestMetrics)
+                .transfers(transferMetrics)
+                .locks(lockContentionMetrics)
+                .gauge("accounts", "Accounts in the repository.", accountingService.getAccountCount())
+                .gauge("transactions", "Transactions in the repository.", transactionService.getAllTransactions().size())
+                .toString());
+    }
+
+    public void getLockContention(final Context context) {
+        final int limit = context.queryParam("limit", Integer.class, String.valueOf(DEFAULT_LIMIT))
+                .check(l -> l > 0, "limit must be positive").get();
+        context.json(lockContentionMetrics.hottest(limit));
+    }
+
+    public void getRecovery(final Context context) {
+        if (recoveryMetrics == null) {
+            throw new NotFoundResponse("journal is not enabled");
+        }
+        context.json(recoveryMetrics);
+    }
+}
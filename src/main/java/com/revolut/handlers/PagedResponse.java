@@ -0,0 +1,90 @@
+package com.revolut.handlers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.revolut.domain.Page;
+import io.javalin.http.Context;
+import io.javalin.plugin.json.JavalinJackson;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes cursor paginated listings, {@code ?after=<cursor>&limit=<n>}, either as one JSON array per page with a
+ * {@code Link: <...>; rel="next"} header, or, when the client accepts {@value #NDJSON}, as newline-delimited JSON
+ * streamed to the response page by page. Either way a request holds at most one page in memory.
+ */
+final class PagedResponse {
+    static final String NDJSON = "application/x-ndjson";
+    private static final String LINK = "Link";
+    static final int DEFAULT_LIMIT = 1000;
+    static final int MAX_LIMIT = 10_000;
+    private static final int STREAM_PAGE_SIZE = 512;
+
+    @FunctionalInterface
+    interface PageSource<T> {
+        Page<T> read(long after, int limit);
+    }
+
+    private PagedResponse() {
+    }
+
+    /**
+     * Responds 404 when there is nothing to list and no cursor was given, as the unpaginated listings did.
+     */
+    static <T> void respond(final Context context, final Class<T> type, final PageSource<T> source) {
+        final long after = context.queryParam("after", Long.class, "0")
+                .check(a -> a >= 0, "after must not be negative").get();
+        final boolean streaming = accepts(context, NDJSON);
+        final String limitParam = context.queryParam("limit");
+        final int limit = context.queryParam("limit", Integer.class, String.valueOf(streaming ? Integer.MAX_VALUE : DEFAULT_LIMIT))
+                .check(l -> l > 0 && (streaming || l <= MAX_LIMIT), String.format("limit must be between 1 and %s", MAX_LIMIT)).get();
+
+        if (streaming) {
+            stream(context, type, source, after, limit);
+            return;
+        }
+
+        final Page<T> page = source.read(after, limit);
+        if (page.getItems().isEmpty() && context.queryParam("after") == null) {
+            context.status(HttpStatus.NOT_FOUND_404);
+            return;
+        }
+        if (page.hasMore()) {
+            context.header(LINK, String.format("<%s?after=%s&limit=%s>; rel=\"next\"",
+                    context.path(), page.getCursor(), limitParam == null ? limit : limitParam));
+        }
+        context.json(page.getItems());
+    }
+
+    private static <T> void stream(final Context context, final Class<T> type, final PageSource<T> source,
+                                   final long after, final int limit) {
+        final ObjectWriter writer = JavalinJackson.getObjectMapper().writerFor(type)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        context.status(HttpStatus.OK_200).contentType(NDJSON);
+        try (JsonGenerator generator = writer.getFactory().createGenerator(context.res.getOutputStream())) {
+            long cursor = after;
+            int remaining = limit;
+            Page<T> page;
+            do {
+                page = source.read(cursor, Math.min(remaining, STREAM_PAGE_SIZE));
+                for (final T item : page.getItems()) {
+                    writer.writeValue(generator, item);
+                    generator.writeRaw('\n');
+                }
+                cursor = page.getCursor();
+                remaining -= page.getItems().size();
+            } while (page.hasMore() && remaining > 0 && !page.getItems().isEmpty());
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static boolean accepts(final Context context, final String contentType) {
+        final String accept = context.header(HttpHeader.ACCEPT.asString());
+        return accept != null && accept.contains(contentType);
+    }
+}
@@ -1,40 +1,157 @@
 package com.revolut.handlers;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.revolut.domain.BatchMode;
+import com.revolut.domain.BatchResult;
 import com.revolut.domain.Transaction;
 import com.revolut.exceptions.*;
+import com.revolut.serializers.BinaryTransferCodec;
 import com.revolut.service.TransactionService;
 import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ConflictResponse;
 import io.javalin.http.Context;
+import io.javalin.http.HttpResponseException;
+import io.javalin.plugin.json.JavalinJackson;
 import org.eclipse.jetty.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 public class TransactionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionHandler.class);
+    static final int MAX_BATCH_SIZE = 10_000;
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    private static final String JSON = "application/json";
 
     private final TransactionService transactionService;
+    private final IdempotencyCache idempotencyCache;
+    private final Executor transferExecutor;
 
     public TransactionHandler(final TransactionService transactionService) {
-        this.transactionService = transactionService;
+        this(transactionService, new IdempotencyCache(IdempotencyCache.DEFAULT_MAX_KEYS, IdempotencyCache.DEFAULT_TTL_MILLIS), null);
     }
 
-    public void transferAmount(Context context) throws SameAccountTransferException, InsufficientFundsException, AccountNotFoundException, InvalidDepositException, TransactionNotFoundException {
-        final Transaction transactionRequest = validateParamsAndCreateTransaction(context);
-        final Transaction response = transactionService.transfer(transactionRequest);
-        context.json(response).status(HttpStatus.CREATED_201);
+    /**
+     * @param transferExecutor where transfers execute, with the response completed asynchronously, or {@code null}
+     *                         to execute them on the request thread
+     */
+    public TransactionHandler(final TransactionService transactionService, final IdempotencyCache idempotencyCache, final Executor transferExecutor) {
+        this.transactionService = transactionService;
+        this.idempotencyCache = idempotencyCache;
+        this.transferExecutor = transferExecutor;
     }
 
-    public void getAllTransactions(final Context context) {
-        final Collection<Transaction> allTransactions = transactionService.getAllTransactions();
-        if (allTransactions.isEmpty()) {
-            context.status(HttpStatus.NOT_FOUND_404);
+    /**
+     * With an {@code Idempotency-Key} header the transfer is executed once per key: a retry gets the stored response
+     * without the accounts being locked again, 409 while the first request is still executing and 422 if its body
+     * differs from the first request's. A transfer that fails is not remembered, so a retry executes it afresh.
+     * <p>
+     * A {@value BinaryTransferCodec#CONTENT_TYPE} request is one {@link BinaryTransferCodec} record and gets a binary
+     * response; the key in the record, if it has one, takes the place of the header.
+     */
+    public void transferAmount(Context context) throws Exception {
+        final boolean binary = BinaryTransferCodec.isBinary(context.contentType());
+        final String key;
+        final Transaction transactionRequest;
+        if (binary) {
+            final byte[] body = context.bodyAsBytes();
+            transactionRequest = decode(() -> BinaryTransferCodec.decodeTransfer(body));
+            final UUID recordKey = BinaryTransferCodec.idempotencyKeyOf(body);
+            key = recordKey != null ? recordKey.toString() : idempotencyKeyOf(context);
         } else {
-            context.json(allTransactions);
+            key = idempotencyKeyOf(context);
+            transactionRequest = validateParamsAndCreateTransaction(context);
+        }
+        final String contentType = binary ? BinaryTransferCodec.CONTENT_TYPE : JSON;
+        if (key == null) {
+            respond(context, contentType, () -> {
+                final Transaction response = transactionService.transfer(transactionRequest);
+                context.status(HttpStatus.CREATED_201);
+                return encode(binary, response);
+            });
+            return;
+        }
+
+        final byte[] request = context.bodyAsBytes();
+        final IdempotencyCache.Entry existing = idempotencyCache.claim(key, request);
+        if (existing != null) {
+            replay(context, key, existing, request);
+            return;
         }
+        try {
+            respond(context, contentType, () -> {
+                boolean completed = false;
+                try {
+                    final Object response = encode(binary, transactionService.transfer(transactionRequest));
+                    idempotencyCache.complete(key, request, HttpStatus.CREATED_201, response);
+                    completed = true;
+                    context.status(HttpStatus.CREATED_201);
+                    return response;
+                } finally {
+                    if (!completed) {
+                        idempotencyCache.release(key, request);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException exception) {
+            idempotencyCache.release(key, request);
+            throw exception;
+        }
+    }
+
+    /**
+     * Accepts either a JSON array of transfers, newline-delimited JSON objects or back to back
+     * {@link BinaryTransferCodec} records. Responds 201 when an atomic batch is applied, 409 when it is rolled back,
+     * and 200 with a status per transfer for a best-effort batch.
+     */
+    public void transferBatch(final Context context) throws Exception {
+        final BatchMode mode = batchModeOf(context);
+        final boolean binary = BinaryTransferCodec.isBinary(context.contentType());
+        final List<Transaction> transactions = binary
+                ? decode(() -> BinaryTransferCodec.decodeBatch(context.bodyAsBytes(), MAX_BATCH_SIZE))
+                : readBatch(context);
+        if (transactions.isEmpty()) {
+            throw new BadRequestResponse("batch is empty");
+        }
+        respond(context, binary ? BinaryTransferCodec.CONTENT_TYPE : JSON, () -> {
+            final BatchResult result = transactionService.transferBatch(transactions, mode);
+            if (mode == BatchMode.BEST_EFFORT) {
+                context.status(HttpStatus.OK_200);
+            } else {
+                context.status(result.isCommitted() ? HttpStatus.CREATED_201 : HttpStatus.CONFLICT_409);
+            }
+            return binary ? BinaryTransferCodec.encodeBatchResult(result) : JavalinJackson.INSTANCE.toJson(result);
+        });
+    }
+
+    public void getAllTransactions(final Context context) {
+        PagedResponse.respond(context, Transaction.class, transactionService::getTransactions);
+    }
+
+    /**
+     * Transactions from or to an account created in {@code [from, to)}, ISO-8601 instants, oldest first.
+     */
+    public void getAccountTransactions(final Context context) throws AccountNotFoundException {
+        final long accountNumber = context.pathParam(":accountNumber", Long.class).check(accId -> accId > 0, "Account number cannot be negative number").get();
+        final Instant from = context.queryParam("from", Instant.class, Instant.MIN.toString()).get();
+        final Instant to = context.queryParam("to", Instant.class, Instant.MAX.toString()).get();
+        final int limit = context.queryParam("limit", Integer.class, String.valueOf(PagedResponse.DEFAULT_LIMIT))
+                .check(l -> l > 0 && l <= PagedResponse.MAX_LIMIT, String.format("limit must be between 1 and %s", PagedResponse.MAX_LIMIT)).get();
+        context.json(transactionService.getAccountTransactions(accountNumber, from, to, limit));
     }
 
     public void getTransaction(Context context) throws TransactionNotFoundException {
@@ -43,15 +160,128 @@ public class TransactionHandler {
         context.json(transaction);
     }
 
+    /**
+     * Responds with the body that {@code transfer} returns, executing it on the transfer executor if there is one.
+     * The request has been read by then, so only the transfer itself and writing the response are left to it.
+     */
+    private void respond(final Context context, final String contentType, final Transfer transfer) throws Exception {
+        context.contentType(contentType);
+        if (transferExecutor == null) {
+            result(context, transfer.execute());
+            return;
+        }
+        final CompletableFuture<Object> response = new CompletableFuture<>();
+        transferExecutor.execute(() -> {
+            try {
+                final Object body = transfer.execute();
+                response.complete(body instanceof byte[] ? new ByteArrayInputStream((byte[]) body) : body);
+            } catch (final Exception exception) {
+                response.completeExceptionally(exception);
+            }
+        });
+        context.result(response);
+    }
+
+    private static void replay(final Context context, final String key, final IdempotencyCache.Entry entry, final byte[] request) {
+        if (!entry.isSameRequest(request)) {
+            throw new HttpResponseException(HttpStatus.UNPROCESSABLE_ENTITY_422,
+                    String.format("%s %s was used with a different request", IDEMPOTENCY_KEY, key), Collections.emptyMap());
+        }
+        if (entry.isInFlight()) {
+            throw new ConflictResponse(String.format("request with %s %s is still executing", IDEMPOTENCY_KEY, key));
+        }
+        context.header(IDEMPOTENT_REPLAYED, "true");
+        final Object response = entry.getResponse();
+        context.contentType(response instanceof byte[] ? BinaryTransferCodec.CONTENT_TYPE : JSON).status(entry.getStatus());
+        result(context, response);
+    }
+
+    private static void result(final Context context, final Object body) {
+        if (body instanceof byte[]) {
+            context.result(new ByteArrayInputStream((byte[]) body));
+        } else {
+            context.result((String) body);
+        }
+    }
+
+    private static Object encode(final boolean binary, final Transaction transaction) {
+        return binary ? BinaryTransferCodec.encodeTransfer(transaction) : JavalinJackson.INSTANCE.toJson(transaction);
+    }
+
+    private static <T> T decode(final Supplier<T> decoder) {
+        try {
+            return decoder.get();
+        } catch (final IllegalArgumentException exception) {
+            logger.error("bad binary request, reason: {}", exception.getMessage());
+            throw new BadRequestResponse(String.format("bad request: %s", exception.getMessage()));
+        }
+    }
+
+    private static String idempotencyKeyOf(final Context context) {
+        final String key = context.header(IDEMPOTENCY_KEY);
+        if (key != null && (key.isEmpty() || key.length() > IdempotencyCache.MAX_KEY_LENGTH)) {
+            throw new BadRequestResponse(String.format("%s must be 1 to %s characters", IDEMPOTENCY_KEY, IdempotencyCache.MAX_KEY_LENGTH));
+        }
+        return key;
+    }
+
+    private static BatchMode batchModeOf(final Context context) {
+        final String mode = context.queryParam("mode", "atomic");
+        try {
+            return BatchMode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException exception) {
+            throw new BadRequestResponse(String.format("unknown batch mode %s", mode));
+        }
+    }
+
+    private static List<Transaction> readBatch(final Context context) {
+        final List<Transaction> transactions = new ArrayList<>();
+        try (MappingIterator<Transaction> iterator = JavalinJackson.getObjectMapper()
+                .readerFor(Transaction.class)
+                .readValues(context.bodyAsBytes())) {
+            while (iterator.hasNextValue()) {
+                if (transactions.size() == MAX_BATCH_SIZE) {
+                    throw new BadRequestResponse(String.format("batch exceeds %s transfers", MAX_BATCH_SIZE));
+                }
+                transactions.add(request(iterator.nextValue()));
+            }
+        } catch (final BadRequestResponse exception) {
+            throw exception;
+        } catch (final IOException | RuntimeException exception) {
+            logger.error("bad batch request, reason: {}", exception.getMessage());
+            throw new BadRequestResponse("bad batch request");
+        }
+        return transactions;
+    }
+
     private Transaction validateParamsAndCreateTransaction(final Context context) {
         try {
-            return context.bodyValidator(Transaction.class)
-                    .check(t -> (t.getFromAccountNumber() > 0) && (t.getToAccountNumber() > 0) && t.getMoney().isPositive())
-                    .get();
+            return request(context.bodyValidator(Transaction.class)
+                    .check(t -> (t.getFromAccountNumber() > 0) && (t.getToAccountNumber() > 0) && t.getAmount().isPositive())
+                    .get());
         } catch (final BadRequestResponse exception) {
             logger.error("bad request: {}, reason: {}", context.body(), exception.getMessage());
             throw new BadRequestResponse(String.format("bad request %s", context.body()));
         }
     }
 
+    /**
+     * The transfer a client asked for. Its id and creation time are always the server's: an {@code id} or
+     * {@code created} in the body is ignored.
+     */
+    private static Transaction request(final Transaction body) {
+        return Transaction.builder()
+                .accountFrom(body.getFromAccountNumber())
+                .accountTo(body.getToAccountNumber())
+                .amount(body.getAmount())
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface Transfer {
+        /**
+         * @return the response body, a JSON {@code String} or binary {@code byte[]}
+         */
+        Object execute() throws Exception;
+    }
 }
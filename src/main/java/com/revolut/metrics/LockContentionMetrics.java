@@ -0,0 +1,96 @@
+package com.revolut.metrics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Per-account lock contention counters. Only accounts that have actually been contended get an entry, so the
+ * uncontended transfer path never touches this class.
+ */
+public class LockContentionMetrics {
+    private final ConcurrentMap<Long, Counters> byAccount = new ConcurrentHashMap<>();
+    private final LongAdder totalRetries = new LongAdder();
+    private final LongAdder totalTimeouts = new LongAdder();
+
+    public void waited(final long accountNumber, final long nanos) {
+        counters(accountNumber).waitNanos.add(nanos);
+    }
+
+    public void retried(final long accountNumber) {
+        counters(accountNumber).retries.increment();
+        totalRetries.increment();
+    }
+
+    public void timedOut(final long accountNumber) {
+        counters(accountNumber).timeouts.increment();
+        totalTimeouts.increment();
+    }
+
+    public long getTotalRetries() {
+        return totalRetries.sum();
+    }
+
+    public long getTotalTimeouts() {
+        return totalTimeouts.sum();
+    }
+
+    /**
+     * @return the {@code limit} accounts with the highest accumulated lock wait time, hottest first
+     */
+    public List<AccountContention> hottest(final int limit) {
+        return byAccount.entrySet().stream()
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .sorted(Comparator.comparingLong(AccountContention::getWaitMicros).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private Counters counters(final long accountNumber) {
+        return byAccount.computeIfAbsent(accountNumber, number -> new Counters());
+    }
+
+    private static class Counters {
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        private AccountContention snapshot(final long accountNumber) {
+            return new AccountContention(accountNumber, retries.sum(), TimeUnit.NANOSECONDS.toMicros(waitNanos.sum()), timeouts.sum());
+        }
+    }
+
+    public static class AccountContention {
+        private final long accountNumber;
+        private final long retries;
+        private final long waitMicros;
+        private final long timeouts;
+
+        AccountContention(final long accountNumber, final long retries, final long waitMicros, final long timeouts) {
+            this.accountNumber = accountNumber;
+            this.retries = retries;
+            this.waitMicros = waitMicros;
+            this.timeouts = timeouts;
+        }
+
+        public long getAccountNumber() {
+            return accountNumber;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public long getWaitMicros() {
+            return waitMicros;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+    }
+}
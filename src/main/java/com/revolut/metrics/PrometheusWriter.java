@@ -0,0 +1,84 @@
+package com.revolut.metrics;
+
+import com.revolut.domain.TransferStatus;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes metrics in the Prometheus text exposition format, version 0.0.4.
+ */
+public class PrometheusWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    public PrometheusWriter requests(final RequestMetrics metrics) {
+        header("http_request_duration_seconds", "histogram", "Request latency per route.");
+        for (final RequestMetrics.Route route : metrics.getRoutes()) {
+            final String labels = "method=\"" + route.method + "\",route=\"" + escape(route.path) + '"';
+            final long[] counts = route.histogram.cumulativeCounts();
+            for (int i = 0; i < LatencyHistogram.BOUNDS_SECONDS.length; i++) {
+                sample("http_request_duration_seconds_bucket", labels + ",le=\"" + LatencyHistogram.BOUNDS_SECONDS[i] + '"', counts[i]);
+            }
+            final long count = counts[counts.length - 1];
+            sample("http_request_duration_seconds_bucket", labels + ",le=\"+Inf\"", count);
+            sample("http_request_duration_seconds_sum", labels, route.histogram.getSumNanos() / NANOS_PER_SECOND);
+            sample("http_request_duration_seconds_count", labels, count);
+        }
+        return this;
+    }
+
+    public PrometheusWriter transfers(final TransferMetrics metrics) {
+        header("transfers_total", "counter", "Transfers by outcome, batch items included.");
+        for (final TransferStatus status : TransferStatus.values()) {
+            sample("transfers_total", "outcome=\"" + status.name().toLowerCase(Locale.ROOT) + '"', metrics.get(status));
+        }
+        return this;
+    }
+
+    public PrometheusWriter locks(final LockContentionMetrics metrics) {
+        header("transfer_lock_retries_total", "counter", "Account lock acquisitions retried after backing off.");
+        sample("transfer_lock_retries_total", null, metrics.getTotalRetries());
+        header("transfer_lock_timeouts_total", "counter", "Transfers that could not lock their accounts in time.");
+        sample("transfer_lock_timeouts_total", null, metrics.getTotalTimeouts());
+        return this;
+    }
+
+    public PrometheusWriter gauge(final String name, final String help, final long value) {
+        header(name, "gauge", help);
+        sample(name, null, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void header(final String name, final String type, final String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(final String name, final String labels, final long value) {
+        sampleName(name, labels).append(value).append('\n');
+    }
+
+    private void sample(final String name, final String labels, final double value) {
+        sampleName(name, labels).append(value).append('\n');
+    }
+
+    private StringBuilder sampleName(final String name, final String labels) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        return out.append(' ');
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
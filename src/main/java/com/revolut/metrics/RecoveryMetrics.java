@@ -0,0 +1,90 @@
+package com.revolut.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the journaled state was recovered at startup, and how snapshotting has gone since.
+ */
+public class RecoveryMetrics {
+    private volatile long snapshotPosition;
+    private volatile long snapshotLoadMillis;
+    private volatile long replayMillis;
+    private volatile long replayedBytes;
+    private volatile long recoveredAccounts;
+    private volatile long recoveredTransactions;
+
+    private volatile long snapshotsTaken;
+    private volatile long lastSnapshotPosition;
+    private volatile long lastSnapshotMillis;
+    private volatile long lastSnapshotAccounts;
+    private volatile long segmentsDeleted;
+
+    public void recovered(final long snapshotPosition, final long snapshotLoadNanos, final long replayNanos, final long replayedBytes,
+                          final long accounts, final long transactions) {
+        this.snapshotPosition = snapshotPosition;
+        this.snapshotLoadMillis = TimeUnit.NANOSECONDS.toMillis(snapshotLoadNanos);
+        this.replayMillis = TimeUnit.NANOSECONDS.toMillis(replayNanos);
+        this.replayedBytes = replayedBytes;
+        this.recoveredAccounts = accounts;
+        this.recoveredTransactions = transactions;
+    }
+
+    /**
+     * Called from the single snapshot thread only.
+     */
+    public void snapshotTaken(final long position, final long nanos, final long accounts, final int deletedSegments) {
+        this.lastSnapshotPosition = position;
+        this.lastSnapshotMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        this.lastSnapshotAccounts = accounts;
+        this.segmentsDeleted = segmentsDeleted + deletedSegments;
+        this.snapshotsTaken = snapshotsTaken + 1;
+    }
+
+    public long getStartupMillis() {
+        return snapshotLoadMillis + replayMillis;
+    }
+
+    public long getSnapshotPosition() {
+        return snapshotPosition;
+    }
+
+    public long getSnapshotLoadMillis() {
+        return snapshotLoadMillis;
+    }
+
+    public long getReplayMillis() {
+        return replayMillis;
+    }
+
+    public long getReplayedBytes() {
+        return replayedBytes;
+    }
+
+    public long getRecoveredAccounts() {
+        return recoveredAccounts;
+    }
+
+    public long getRecoveredTransactions() {
+        return recoveredTransactions;
+    }
+
+    public long getSnapshotsTaken() {
+        return snapshotsTaken;
+    }
+
+    public long getLastSnapshotPosition() {
+        return lastSnapshotPosition;
+    }
+
+    public long getLastSnapshotMillis() {
+        return lastSnapshotMillis;
+    }
+
+    public long getLastSnapshotAccounts() {
+        return lastSnapshotAccounts;
+    }
+
+    public long getSegmentsDeleted() {
+        return segmentsDeleted;
+    }
+}
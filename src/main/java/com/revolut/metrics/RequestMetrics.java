@@ -0,0 +1,57 @@
+package com.revolut.metrics;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Request latency per route. Each route gets its histogram when it is registered, so timing a request looks nothing
+ * up and allocates nothing; a request answered asynchronously is timed when its result completes.
+ */
+public class RequestMetrics {
+    private final List<Route> routes = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return {@code handler}, timing every request into the histogram of {@code method} and {@code path}
+     */
+    public Handler timed(final String method, final String path, final Handler handler) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        routes.add(new Route(method, path, histogram));
+        return context -> {
+            final long start = System.nanoTime();
+            try {
+                handler.handle(context);
+            } finally {
+                record(context, histogram, start);
+            }
+        };
+    }
+
+    List<Route> getRoutes() {
+        return routes;
+    }
+
+    private static void record(final Context context, final LatencyHistogram histogram, final long start) {
+        final CompletableFuture<?> result = context.resultFuture();
+        if (result == null) {
+            histogram.record(System.nanoTime() - start);
+        } else {
+            result.whenComplete((value, failure) -> histogram.record(System.nanoTime() - start));
+        }
+    }
+
+    static final class Route {
+        final String method;
+        final String path;
+        final LatencyHistogram histogram;
+
+        private Route(final String method, final String path, final LatencyHistogram histogram) {
+            this.method = method;
+            this.path = path;
+            this.histogram = histogram;
+        }
+    }
+}
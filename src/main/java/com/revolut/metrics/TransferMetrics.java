@@ -0,0 +1,26 @@
+package com.revolut.metrics;
+
+import com.revolut.domain.TransferStatus;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transfers by outcome, batch items included.
+ */
+public class TransferMetrics {
+    private final LongAdder[] byStatus = new LongAdder[TransferStatus.values().length];
+
+    public TransferMetrics() {
+        for (int i = 0; i < byStatus.length; i++) {
+            byStatus[i] = new LongAdder();
+        }
+    }
+
+    public void record(final TransferStatus status) {
+        byStatus[status.ordinal()].increment();
+    }
+
+    public long get(final TransferStatus status) {
+        return byStatus[status.ordinal()].sum();
+    }
+}
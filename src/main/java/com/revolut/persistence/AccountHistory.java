@@ -0,0 +1,58 @@
+package com.revolut.persistence;
+
+import java.util.Arrays;
+
+/**
+ * The transactions of one account as a primitive array of ledger sequence numbers, sorted by the creation time
+ * the {@link ColumnarLedger} holds for them.
+ * <p>
+ * Transfers persist under the locks of their accounts, so they arrive here in commit order, which is almost
+ * creation order: an out of order entry only moves back past the few transfers that committed while it was in
+ * flight. Appending is therefore amortised constant time, and a range query is a binary search plus a copy of
+ * the result. The monitor is uncontended in practice for writers, which already hold the account lock.
+ */
+final class AccountHistory {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final ColumnarLedger ledger;
+    private int[] sequences = new int[INITIAL_CAPACITY];
+    private int size;
+
+    AccountHistory(final ColumnarLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    synchronized void add(final int sequence) {
+        if (size == sequences.length) {
+            sequences = Arrays.copyOf(sequences, size * 2);
+        }
+        final long created = ledger.getCreatedMicros(sequence);
+        int i = size++;
+        while (i > 0 && ledger.getCreatedMicros(sequences[i - 1]) > created) {
+            sequences[i] = sequences[i - 1];
+            i--;
+        }
+        sequences[i] = sequence;
+    }
+
+    /**
+     * @return the sequence numbers of up to {@code limit} transactions created in {@code [from, to)}, oldest first
+     */
+    synchronized int[] range(final long from, final long to, final int limit) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (ledger.getCreatedMicros(sequences[middle]) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int end = low;
+        while (end < size && end - low < limit && ledger.getCreatedMicros(sequences[end]) < to) {
+            end++;
+        }
+        return Arrays.copyOfRange(sequences, low, end);
+    }
+}
@@ -1,6 +1,7 @@
 package com.revolut.persistence;
 
 import com.revolut.domain.Account;
+import com.revolut.domain.Page;
 import com.revolut.exceptions.AccountAlreadyExistsException;
 import com.revolut.exceptions.AccountNotFoundException;
 
@@ -14,6 +15,14 @@ public interface AccountRepository {
 
     Collection<Account> getAllAccounts();
 
-    void updateAccount(Account old, Account updated);
+    /**
+     * @return the number of accounts, without visiting them
+     */
+    int size();
+
+    /**
+     * @return up to {@code limit} accounts numbered above {@code afterAccountNumber}, in account number order
+     */
+    Page<Account> getAccounts(final long afterAccountNumber, final int limit);
 
 }
@@ -0,0 +1,249 @@
+package com.revolut.persistence;
+
+import com.revolut.domain.Amount;
+import com.revolut.domain.Transaction;
+import org.joda.money.CurrencyUnit;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Append-only store of transactions in primitive columns: id as two longs, creation time in epoch microseconds,
+ * source and destination account, amount in minor units and a currency id, about 50 bytes per transaction
+ * instead of the few hundred a {@link Transaction} object graph takes. Columns are split into fixed-size chunks,
+ * so growing never copies them. Transactions are addressed by sequence number, starting at 1 in append order,
+ * and are materialised as {@link Transaction} objects only when read.
+ * <p>
+ * Appends are serialised by a write lock and published by the volatile write of {@link #size()}, so reading
+ * the columns of any sequence number up to the size needs no lock. The id index is a set of open-addressing
+ * tables of sequence numbers, probed by comparing the id columns, 4 bytes per slot at most half full. It is
+ * split by hash so that no table outgrows an array and a resize rehashes only a sixteenth of the ids. Lookups
+ * are optimistic reads that fall back to the read lock when an append intervenes.
+ */
+final class ColumnarLedger {
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_SIZE = Integer.MAX_VALUE - 1;
+    private static final int INDEX_SHIFT = 28;
+    private static final int INDEX_COUNT = 1 << (32 - INDEX_SHIFT);
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 8;
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<CurrencyUnit, Short> currencyIds = new HashMap<>();
+    private CurrencyUnit[] currencies = new CurrencyUnit[8];
+    private Chunk[] chunks = new Chunk[8];
+    private final int[][] indexes = new int[INDEX_COUNT][];
+    private final int[] indexCounts = new int[INDEX_COUNT];
+    private volatile int size;
+
+    ColumnarLedger() {
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            indexes[i] = new int[INITIAL_INDEX_CAPACITY];
+        }
+    }
+
+    /**
+     * @return the sequence number of the appended transaction, or {@code 0} if one with the same id is held
+     */
+    long append(final Transaction transaction) {
+        final UUID id = transaction.getId();
+        final long created = createdMicros(transaction.getCreated());
+        final long stamp = lock.writeLock();
+        try {
+            final int current = size;
+            final int hash = hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (probe(indexes[hash >>> INDEX_SHIFT], hash, id.getMostSignificantBits(), id.getLeastSignificantBits(), current) != 0) {
+                return 0;
+            }
+            if (current == MAX_SIZE) {
+                throw new IllegalStateException("ledger is full");
+            }
+            final short currency = currencyId(transaction.getAmount().getCurrency());
+            final int chunkIndex = current >>> CHUNK_SHIFT;
+            if (chunkIndex == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            if (chunks[chunkIndex] == null) {
+                chunks[chunkIndex] = new Chunk();
+            }
+            final Chunk chunk = chunks[chunkIndex];
+            final int row = current & CHUNK_MASK;
+            chunk.idMostBits[row] = id.getMostSignificantBits();
+            chunk.idLeastBits[row] = id.getLeastSignificantBits();
+            chunk.createdMicros[row] = created;
+            chunk.fromAccounts[row] = transaction.getFromAccountNumber();
+            chunk.toAccounts[row] = transaction.getToAccountNumber();
+            chunk.amounts[row] = transaction.getAmount().getMinorUnits();
+            chunk.currencies[row] = currency;
+
+            final int sequence = current + 1;
+            final int indexNumber = hash >>> INDEX_SHIFT;
+            if (++indexCounts[indexNumber] > indexes[indexNumber].length / 2) {
+                indexes[indexNumber] = resize(indexes[indexNumber]);
+            }
+            insert(indexes[indexNumber], hash, sequence);
+            size = sequence;
+            return sequence;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the sequence number of the transaction with {@code id}, or {@code 0} if there is none
+     */
+    long find(final UUID id) {
+        final long mostBits = id.getMostSignificantBits();
+        final long leastBits = id.getLeastSignificantBits();
+        final int hash = hash(mostBits, leastBits);
+        final long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                final int sequence = probe(indexes[hash >>> INDEX_SHIFT], hash, mostBits, leastBits, size);
+                if (lock.validate(stamp)) {
+                    return sequence;
+                }
+            } catch (final RuntimeException racedWithResize) {
+                // the read is retried under the lock below
+            }
+        }
+        final long readStamp = lock.readLock();
+        try {
+            return probe(indexes[hash >>> INDEX_SHIFT], hash, mostBits, leastBits, size);
+        } finally {
+            lock.unlockRead(readStamp);
+        }
+    }
+
+    /**
+     * @param sequence between 1 and {@link #size()}
+     */
+    Transaction get(final long sequence) {
+        final int row = checkedRow(sequence);
+        final Chunk chunk = chunks[row >>> CHUNK_SHIFT];
+        final int offset = row & CHUNK_MASK;
+        final long created = chunk.createdMicros[offset];
+        final Transaction transaction = Transaction.builder()
+                .id(new UUID(chunk.idMostBits[offset], chunk.idLeastBits[offset]))
+                .created(Instant.ofEpochSecond(Math.floorDiv(created, 1_000_000L), Math.floorMod(created, 1_000_000L) * 1_000).toString())
+                .accountFrom(chunk.fromAccounts[offset])
+                .accountTo(chunk.toAccounts[offset])
+                .amount(Amount.ofMinor(currencies[chunk.currencies[offset]], chunk.amounts[offset]))
+                .build();
+        transaction.getIsExecuting().set(false);
+        return transaction;
+    }
+
+    /**
+     * @param sequence between 1 and {@link #size()}
+     */
+    long getCreatedMicros(final long sequence) {
+        final int row = checkedRow(sequence);
+        return chunks[row >>> CHUNK_SHIFT].createdMicros[row & CHUNK_MASK];
+    }
+
+    private int checkedRow(final long sequence) {
+        if (sequence < 1 || sequence > size) {
+            throw new IndexOutOfBoundsException(String.format("no transaction at %s, ledger holds %s", sequence, size));
+        }
+        return (int) sequence - 1;
+    }
+
+    private short currencyId(final CurrencyUnit currency) {
+        final Short id = currencyIds.get(currency);
+        if (id != null) {
+            return id;
+        }
+        final short next = (short) currencyIds.size();
+        if (next == currencies.length) {
+            currencies = Arrays.copyOf(currencies, currencies.length * 2);
+        }
+        currencies[next] = currency;
+        currencyIds.put(currency, next);
+        return next;
+    }
+
+    /**
+     * @return the sequence number stored for the id, or {@code 0}
+     */
+    private int probe(final int[] table, final int hash, final long mostBits, final long leastBits, final int published) {
+        final int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            final int sequence = table[slot];
+            if (sequence == 0) {
+                return 0;
+            }
+            if (sequence <= published) {
+                final int row = sequence - 1;
+                final Chunk chunk = chunks[row >>> CHUNK_SHIFT];
+                final int offset = row & CHUNK_MASK;
+                if (chunk.idMostBits[offset] == mostBits && chunk.idLeastBits[offset] == leastBits) {
+                    return sequence;
+                }
+            }
+        }
+    }
+
+    private static void insert(final int[] table, final int hash, final int sequence) {
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = sequence;
+    }
+
+    /**
+     * Rehashes into a new table, leaving the old one intact for lookups that are still probing it.
+     */
+    private int[] resize(final int[] table) {
+        final int[] resized = new int[table.length * 2];
+        for (final int sequence : table) {
+            if (sequence != 0) {
+                final int row = sequence - 1;
+                final Chunk chunk = chunks[row >>> CHUNK_SHIFT];
+                insert(resized, hash(chunk.idMostBits[row & CHUNK_MASK], chunk.idLeastBits[row & CHUNK_MASK]), sequence);
+            }
+        }
+        return resized;
+    }
+
+    private static int hash(final long mostBits, final long leastBits) {
+        final long h = (mostBits ^ leastBits) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Creation times are assigned by {@link Transaction} and always parse; one set explicitly on
+     * the builder that does not is stored as the time of appending.
+     */
+    private static long createdMicros(final String created) {
+        Instant instant;
+        try {
+            instant = Instant.parse(created);
+        } catch (final DateTimeParseException exception) {
+            instant = Instant.now();
+        }
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    private static final class Chunk {
+        private final long[] idMostBits = new long[CHUNK_SIZE];
+        private final long[] idLeastBits = new long[CHUNK_SIZE];
+        private final long[] createdMicros = new long[CHUNK_SIZE];
+        private final long[] fromAccounts = new long[CHUNK_SIZE];
+        private final long[] toAccounts = new long[CHUNK_SIZE];
+        private final long[] amounts = new long[CHUNK_SIZE];
+        private final short[] currencies = new short[CHUNK_SIZE];
+    }
+}
@@ -0,0 +1,253 @@
+package com.revolut.persistence;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent map from primitive {@code long} keys to non-null values, striped into segments of open-addressing
+ * (linear probing) tables. Keys live in a {@code long[]} and values in a parallel reference array, so an entry costs
+ * a key and a reference slot instead of a boxed {@code Long} plus a hash node.
+ * <p>
+ * Reads never lock: a slot is published by a volatile write of its value after its key has been written, and a
+ * slot's key never changes once published. Writers lock their segment only. Entries cannot be removed, which is
+ * all the repositories need and keeps probing free of tombstones. Iteration over {@link #values()} is weakly
+ * consistent and never throws {@link java.util.ConcurrentModificationException}.
+ */
+public class ConcurrentLongHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+    private final Values values = new Values();
+
+    public ConcurrentLongHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongHashMap(final int expectedSize, final int concurrencyLevel) {
+        if (expectedSize < 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException(String.format("invalid size %s or concurrency level %s", expectedSize, concurrencyLevel));
+        }
+        final int segmentCount = nextPowerOfTwo(concurrencyLevel);
+        final int perSegment = (int) Math.ceil(expectedSize / (double) segmentCount / LOAD_FACTOR);
+        segments = (Segment<V>[]) new Segment<?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(nextPowerOfTwo(Math.max(2, perSegment)));
+        }
+        segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+    }
+
+    public V get(final long key) {
+        final long hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(final long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value, or {@code null} if there was none
+     */
+    public V put(final long key, final V value) {
+        final long hash = hash(key);
+        return segmentFor(hash).put(key, hash, requireValue(value), false);
+    }
+
+    /**
+     * @return the existing value, or {@code null} if {@code value} was inserted
+     */
+    public V putIfAbsent(final long key, final V value) {
+        final long hash = hash(key);
+        return segmentFor(hash).put(key, hash, requireValue(value), true);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Segment<V> segment : segments) {
+            if (segment.count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Collection<V> values() {
+        return values;
+    }
+
+    private Segment<V> segmentFor(final long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    private static <V> V requireValue(final V value) {
+        if (value == null) {
+            throw new NullPointerException("null values are not supported");
+        }
+        return value;
+    }
+
+    private static long hash(final long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+
+    private static int nextPowerOfTwo(final int value) {
+        final int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+
+    private static final class Table<V> {
+        private final long[] keys;
+        private final AtomicReferenceArray<V> values;
+        private final int mask;
+
+        private Table(final int capacity) {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment<V> {
+        private volatile Table<V> table;
+        private volatile int count;
+
+        private Segment(final int capacity) {
+            table = new Table<>(capacity);
+        }
+
+        private V get(final long key, final long hash) {
+            final Table<V> current = table;
+            for (int i = (int) hash & current.mask; ; i = (i + 1) & current.mask) {
+                final V value = current.values.get(i);
+                if (value == null) {
+                    return null;
+                }
+                if (current.keys[i] == key) {
+                    return value;
+                }
+            }
+        }
+
+        private synchronized V put(final long key, final long hash, final V value, final boolean onlyIfAbsent) {
+            Table<V> current = table;
+            int i = (int) hash & current.mask;
+            for (V existing; (existing = current.values.get(i)) != null; i = (i + 1) & current.mask) {
+                if (current.keys[i] == key) {
+                    if (!onlyIfAbsent) {
+                        current.values.set(i, value);
+                    }
+                    return existing;
+                }
+            }
+
+            if (count + 1 > current.keys.length * LOAD_FACTOR) {
+                current = resize(current);
+                i = (int) hash & current.mask;
+                while (current.values.get(i) != null) {
+                    i = (i + 1) & current.mask;
+                }
+            }
+            current.keys[i] = key;
+            current.values.set(i, value);
+            count = count + 1;
+            return null;
+        }
+
+        private Table<V> resize(final Table<V> old) {
+            final Table<V> resized = new Table<>(old.keys.length << 1);
+            for (int i = 0; i < old.keys.length; i++) {
+                final V value = old.values.get(i);
+                if (value != null) {
+                    int j = (int) hash(old.keys[i]) & resized.mask;
+                    while (resized.values.get(j) != null) {
+                        j = (j + 1) & resized.mask;
+                    }
+                    resized.keys[j] = old.keys[i];
+                    resized.values.lazySet(j, value);
+                }
+            }
+            table = resized;
+            return resized;
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentLongHashMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return ConcurrentLongHashMap.this.isEmpty();
+        }
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+        private int segmentIndex = -1;
+        private Table<V> table;
+        private int slot;
+        private V next;
+
+        private ValueIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public V next() {
+            final V current = next;
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return current;
+        }
+
+        private void advance() {
+            next = null;
+            while (true) {
+                if (table != null) {
+                    while (slot < table.keys.length) {
+                        final V value = table.values.get(slot++);
+                        if (value != null) {
+                            next = value;
+                            return;
+                        }
+                    }
+                }
+                if (++segmentIndex >= segments.length) {
+                    return;
+                }
+                table = segments[segmentIndex].table;
+                slot = 0;
+            }
+        }
+    }
+}
@@ -1,21 +1,50 @@
 package com.revolut.persistence;
 
 import com.revolut.domain.Account;
+import com.revolut.domain.Page;
 import com.revolut.exceptions.AccountAlreadyExistsException;
 import com.revolut.exceptions.AccountNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class InMemoryAccountRepository implements AccountRepository {
     private final Logger log = LoggerFactory.getLogger(InMemoryAccountRepository.class);
-    private final Map<Long, Account> accountRegistry = new HashMap<>();
+    private final ConcurrentLongHashMap<Account> accountRegistry;
     private final AtomicLong ACCOUNT_NUMBER_COUNTER = new AtomicLong();
+    private final long[] hotAccounts;
+    private final int hotSlots;
+
+    public InMemoryAccountRepository() {
+        this.accountRegistry = new ConcurrentLongHashMap<>();
+        this.hotAccounts = new long[0];
+        this.hotSlots = 0;
+    }
+
+    public InMemoryAccountRepository(final int expectedAccounts) {
+        this.accountRegistry = new ConcurrentLongHashMap<>(expectedAccounts, Runtime.getRuntime().availableProcessors() * 4);
+        this.hotAccounts = new long[0];
+        this.hotSlots = 0;
+    }
+
+    /**
+     * Accounts created under one of the {@code hotAccounts} numbers are made hot with {@code hotSlots} slots, see
+     * {@link Account#isHot()}.
+     */
+    public InMemoryAccountRepository(final long[] hotAccounts, final int hotSlots) {
+        if (hotSlots <= 0) {
+            throw new IllegalArgumentException(String.format("hot accounts need at least one slot, got %s", hotSlots));
+        }
+        this.accountRegistry = new ConcurrentLongHashMap<>();
+        this.hotAccounts = hotAccounts.clone();
+        Arrays.sort(this.hotAccounts);
+        this.hotSlots = hotSlots;
+    }
 
     @Override
     public Account createAccount(final Account account) throws AccountAlreadyExistsException {
@@ -24,7 +53,8 @@ public class InMemoryAccountRepository implements AccountRepository {
         final Account accountWithId = Account.builder()
                 .owner(account.getOwner())
                 .accountNumber(id)
-                .money(account.getMoney())
+                .balance(account.getBalance())
+                .hotSlots(Arrays.binarySearch(hotAccounts, id) >= 0 ? hotSlots : account.getHotSlots())
                 .build();
 
         final Account created = accountRegistry.putIfAbsent(accountWithId.getAccountNumber(), accountWithId);
@@ -41,19 +71,62 @@ public class InMemoryAccountRepository implements AccountRepository {
 
     @Override
     public Account getAccountByNumber(long accountNumber) throws AccountNotFoundException {
-        final AccountNotFoundException exception = new AccountNotFoundException(String.format("Account %s does not exist", accountNumber));
-        return Optional.ofNullable(accountRegistry.get(accountNumber))
-                .orElseThrow(() -> exception);
+        final Account account = accountRegistry.get(accountNumber);
+        if (account == null) {
+            throw new AccountNotFoundException(String.format("Account %s does not exist", accountNumber));
+        }
+        return account;
     }
 
+    /**
+     * Account numbers are handed out sequentially, so walking them keeps the listing in account number order,
+     * which hash order of the registry would not.
+     */
     @Override
     public Collection<Account> getAllAccounts() {
-        return accountRegistry.values();
+        final long last = ACCOUNT_NUMBER_COUNTER.get();
+        final List<Account> accounts = new ArrayList<>(accountRegistry.size());
+        for (long accountNumber = 1; accountNumber <= last; accountNumber++) {
+            final Account account = accountRegistry.get(accountNumber);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
+    @Override
+    public int size() {
+        return accountRegistry.size();
     }
 
     @Override
-    public void updateAccount(final Account old, final Account updated) {
-        accountRegistry.put(old.getAccountNumber(), updated);
+    public Page<Account> getAccounts(final long afterAccountNumber, final int limit) {
+        final long last = ACCOUNT_NUMBER_COUNTER.get();
+        final List<Account> accounts = new ArrayList<>(Math.min(limit, 1024));
+        long accountNumber = Math.max(afterAccountNumber, 0);
+        while (accounts.size() < limit && accountNumber < last) {
+            final Account account = accountRegistry.get(++accountNumber);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return new Page<>(accounts, accountNumber, accountNumber < last);
+    }
+
+    /**
+     * Registers a recovered account under its own number, or overwrites the balance of the account already
+     * registered under it, and moves account numbering past it.
+     *
+     * @return the registered account
+     */
+    public Account restoreAccount(final Account account) {
+        final Account existing = accountRegistry.putIfAbsent(account.getAccountNumber(), account);
+        if (existing != null) {
+            existing.restoreBalance(account.getBalanceMinorUnits());
+        }
+        ACCOUNT_NUMBER_COUNTER.accumulateAndGet(account.getAccountNumber(), Math::max);
+        return existing == null ? account : existing;
     }
 
     private long getNextAccountNumber() {
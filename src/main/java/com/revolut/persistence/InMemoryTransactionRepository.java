@@ -1,33 +1,134 @@
 package com.revolut.persistence;
 
+import com.revolut.domain.Page;
 import com.revolut.domain.Transaction;
 import com.revolut.exceptions.TransactionNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
 import java.util.*;
 
+/**
+ * Keeps transactions in a {@link ColumnarLedger}, which numbers them in the order they are persisted and
+ * indexes them by id, so a stored transaction costs a few dozen bytes of primitive columns and is only
+ * materialised again when read. Each account's transactions are also indexed by creation time, see
+ * {@link AccountHistory}.
+ * <p>
+ * Creation times, which the server assigns when it builds a transaction, are stored with microsecond precision.
+ */
 public class InMemoryTransactionRepository implements TransactionRepository {
     private final Logger log = LoggerFactory.getLogger(InMemoryTransactionRepository.class);
-    private Map<UUID, Transaction> transactionRegistry = new HashMap<>();
+    private final ColumnarLedger ledger = new ColumnarLedger();
+    private final ConcurrentLongHashMap<AccountHistory> histories = new ConcurrentLongHashMap<>();
+    private final Collection<Transaction> allTransactions = new AbstractCollection<Transaction>() {
+        @Override
+        public Iterator<Transaction> iterator() {
+            final int last = ledger.size();
+            return new Iterator<Transaction>() {
+                private int sequence;
+
+                @Override
+                public boolean hasNext() {
+                    return sequence < last;
+                }
+
+                @Override
+                public Transaction next() {
+                    if (sequence >= last) {
+                        throw new NoSuchElementException();
+                    }
+                    return ledger.get(++sequence);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ledger.size();
+        }
+    };
 
     @Override
     public void persistTransaction(final Transaction transaction) {
-        transactionRegistry.put(transaction.getId(), transaction);
-        log.info("persisted transaction {}", transaction);
+        restoreTransaction(transaction);
+        log.debug("persisted transaction {}", transaction);
+    }
+
+    /**
+     * Same as {@link #persistTransaction(Transaction)} without logging, for replaying recovered transactions.
+     * A transaction already held is ignored.
+     */
+    public void restoreTransaction(final Transaction transaction) {
+        final int sequence = (int) ledger.append(transaction);
+        if (sequence != 0) {
+            history(transaction.getFromAccountNumber()).add(sequence);
+            history(transaction.getToAccountNumber()).add(sequence);
+        }
     }
 
 
     @Override
     public Transaction getTransaction(final UUID uuid) throws TransactionNotFoundException {
-        return Optional.ofNullable(transactionRegistry.get(uuid)).orElseThrow(() -> {
+        final long sequence = ledger.find(uuid);
+        if (sequence == 0) {
             final String message = String.format("transaction with id:%s not found", uuid);
-            return new TransactionNotFoundException(message);
-        });
+            throw new TransactionNotFoundException(message);
+        }
+        return ledger.get(sequence);
     }
 
+    /**
+     * @return a view of the transactions in the order they were persisted; an iterator covers those persisted
+     * before it was created
+     */
     @Override
     public Collection<Transaction> getAllTransactions() {
-        return transactionRegistry.values();
+        return allTransactions;
+    }
+
+    @Override
+    public List<Transaction> getAccountTransactions(final long accountNumber, final Instant from, final Instant to, final int limit) {
+        final AccountHistory history = histories.get(accountNumber);
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        final int[] sequences = history.range(toMicros(from), toMicros(to), limit);
+        final List<Transaction> transactions = new ArrayList<>(sequences.length);
+        for (final int sequence : sequences) {
+            transactions.add(ledger.get(sequence));
+        }
+        return transactions;
+    }
+
+    @Override
+    public Page<Transaction> getTransactions(final long afterSequence, final int limit) {
+        final long last = ledger.size();
+        final List<Transaction> transactions = new ArrayList<>(Math.min(limit, 1024));
+        long position = Math.max(afterSequence, 0);
+        while (transactions.size() < limit && position < last) {
+            transactions.add(ledger.get(++position));
+        }
+        return new Page<>(transactions, position, position < last);
+    }
+
+    private AccountHistory history(final long accountNumber) {
+        final AccountHistory history = histories.get(accountNumber);
+        if (history != null) {
+            return history;
+        }
+        final AccountHistory created = new AccountHistory(ledger);
+        final AccountHistory existing = histories.putIfAbsent(accountNumber, created);
+        return existing == null ? created : existing;
+    }
+
+    private static long toMicros(final Instant instant) {
+        if (instant.getEpochSecond() >= Long.MAX_VALUE / 1_000_000) {
+            return Long.MAX_VALUE;
+        }
+        if (instant.getEpochSecond() <= Long.MIN_VALUE / 1_000_000) {
+            return Long.MIN_VALUE;
+        }
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
     }
 }
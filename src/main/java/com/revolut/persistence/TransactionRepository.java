@@ -1,17 +1,56 @@
 package com.revolut.persistence;
 
+import com.revolut.domain.Page;
 import com.revolut.domain.Transaction;
 import com.revolut.exceptions.TransactionNotFoundException;
 
+import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface TransactionRepository {
 
     void persistTransaction(Transaction transaction);
 
+    /**
+     * Persists transactions that were applied together, as one unit where the repository supports it.
+     */
+    default void persistTransactions(final Collection<Transaction> transactions) {
+        for (final Transaction transaction : transactions) {
+            persistTransaction(transaction);
+        }
+    }
+
+    /**
+     * Throws if {@link #persistTransaction(Transaction)} is bound to fail, as it is once a journal write has
+     * failed. Called under the account locks before any balance changes. Repositories that cannot fail this way
+     * return at once.
+     */
+    default void checkWritable() {
+    }
+
+    /**
+     * Blocks until the transactions persisted by the calling thread survive a crash. Called after the account
+     * locks are released, so waiting does not hold up other transfers. Repositories that keep nothing across
+     * restarts return at once.
+     */
+    default void awaitDurable() {
+    }
+
     Transaction getTransaction(UUID uuid) throws TransactionNotFoundException;
 
     Collection<Transaction> getAllTransactions();
 
+    /**
+     * @return up to {@code limit} transactions persisted after position {@code afterSequence}, in persistence order
+     */
+    Page<Transaction> getTransactions(long afterSequence, int limit);
+
+    /**
+     * @return up to {@code limit} transactions from or to {@code accountNumber} created in {@code [from, to)}, oldest
+     * first
+     */
+    List<Transaction> getAccountTransactions(long accountNumber, Instant from, Instant to, int limit);
+
 }
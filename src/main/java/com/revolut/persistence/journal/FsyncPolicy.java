@@ -0,0 +1,21 @@
+package com.revolut.persistence.journal;
+
+/**
+ * When the {@link Journal} forces appended records to disk, and whether writers wait for it.
+ */
+public enum FsyncPolicy {
+    /**
+     * Writers wait until an fsync covers their records. Writers that append while an fsync is in progress share
+     * the next one (group commit), so the fsync rate does not grow with the request rate.
+     */
+    GROUP,
+    /**
+     * The journal is fsynced at a fixed interval and writers never wait. A crash loses at most one interval.
+     */
+    INTERVAL,
+    /**
+     * Records are written to the file without fsync and writers never wait. They survive a crash of the process
+     * but not of the machine.
+     */
+    NONE
+}
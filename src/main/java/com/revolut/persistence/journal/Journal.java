@@ -0,0 +1,456 @@
+package com.revolut.persistence.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of length-prefixed, checksummed records: {@code [int length][payload][int crc32(payload)]}.
+ * <p>
+ * Records are addressed by their position in the log as a whole, which is split into segment files named after
+ * the position they start at. A new segment is started once the current one reaches the segment size, so that
+ * segments wholly covered by a snapshot can be deleted, see {@link #deleteSegmentsBefore(long)}.
+ * <p>
+ * Appenders copy their record into an in-memory buffer and return. A single flusher thread swaps that buffer for
+ * an empty one, writes it with one {@link FileChannel#write} and forces it according to the {@link FsyncPolicy}.
+ * Records appended while a write is in flight go to the other buffer and make up the next group, so under load
+ * one fsync covers many writers. Under {@link FsyncPolicy#GROUP} a writer calls {@link #awaitDurable()} after
+ * releasing its own locks to wait for the fsync covering its records.
+ * <p>
+ * On open the records from a given position on are replayed in order. Replay stops at the first incomplete or
+ * corrupt record of the last segment, which is what a crash in the middle of a write leaves behind, and the
+ * segment is truncated there.
+ */
+public class Journal implements Closeable {
+    static final int MAX_RECORD_BYTES = 2 << 20;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int FRAME_BYTES = Integer.BYTES + Integer.BYTES;
+    private static final int BUFFER_BYTES = 2 * MAX_RECORD_BYTES;
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+    private static final ThreadLocal<CRC32> CHECKSUM = ThreadLocal.withInitial(CRC32::new);
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long intervalNanos;
+    private final long segmentBytes;
+    private final ConcurrentNavigableMap<Long, Path> segments;
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private final Thread flusher;
+
+    private FileChannel channel;
+    private long segmentStart;
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_BYTES);
+    private long appended;
+    private long durable;
+    private boolean closed;
+    private IOException failure;
+
+    private Journal(final Path directory, final ConcurrentNavigableMap<Long, Path> segments, final FileChannel channel,
+                    final long position, final FsyncPolicy policy, final long intervalMillis, final long segmentBytes) {
+        this.directory = directory;
+        this.segments = segments;
+        this.channel = channel;
+        this.segmentStart = segments.lastKey();
+        this.policy = policy;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.segmentBytes = segmentBytes;
+        this.appended = position;
+        this.durable = position;
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Opens or creates the journal in {@code directory}, passing every valid record at or after {@code from} to
+     * {@code replay} before any append can happen.
+     *
+     * @param from a record boundary, as returned by {@link #position()}
+     */
+    public static Journal open(final Path directory, final FsyncPolicy policy, final long intervalMillis, final long segmentBytes,
+                               final long from, final Consumer<ByteBuffer> replay) throws IOException {
+        final ConcurrentNavigableMap<Long, Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            segments.put(from, createSegment(directory, from));
+        } else if (segments.firstKey() > from) {
+            throw new IOException(String.format("journal in %s starts at %s, records from %s are missing", directory, segments.firstKey(), from));
+        }
+
+        long position = from;
+        final Long first = segments.floorKey(from);
+        for (final Iterator<Map.Entry<Long, Path>> it = segments.tailMap(first == null ? from : first).entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<Long, Path> segment = it.next();
+            if (segment.getKey() > position) {
+                throw new IOException(String.format("journal segment %s does not follow position %s", segment.getValue(), position));
+            }
+            final boolean last = !it.hasNext();
+            try (FileChannel channel = FileChannel.open(segment.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final long offset = position - segment.getKey();
+                if (offset > channel.size()) {
+                    throw new IOException(String.format("journal segment %s ends before position %s", segment.getValue(), position));
+                }
+                final long valid = replay(channel, offset, replay);
+                if (valid < channel.size()) {
+                    if (!last) {
+                        throw new IOException(String.format("journal segment %s is corrupt at offset %s", segment.getValue(), valid));
+                    }
+                    log.warn("journal segment {} has {} bytes of incomplete records after offset {}, truncating",
+                            segment.getValue(), channel.size() - valid, valid);
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+                position = segment.getKey() + valid;
+            }
+        }
+
+        final FileChannel channel = FileChannel.open(segments.lastEntry().getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(position - segments.lastKey());
+        final Journal journal = new Journal(directory, segments, channel, position, policy, intervalMillis, segmentBytes);
+        journal.flusher.start();
+        return journal;
+    }
+
+    /**
+     * @return the offset after the last valid record of the segment
+     */
+    private static long replay(final FileChannel channel, final long from, final Consumer<ByteBuffer> replay) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        buffer.limit(0);
+        final CRC32 checksum = new CRC32();
+        long position = from;
+        while (true) {
+            if (buffer.remaining() < FRAME_BYTES && !fill(channel, buffer, position, FRAME_BYTES)) {
+                return position;
+            }
+            final int length = buffer.getInt(buffer.position());
+            if (length <= 0 || length > MAX_RECORD_BYTES) {
+                return position;
+            }
+            final int frame = length + FRAME_BYTES;
+            if (buffer.remaining() < frame && !fill(channel, buffer, position, frame)) {
+                return position;
+            }
+
+            final ByteBuffer payload = buffer.duplicate();
+            payload.position(buffer.position() + Integer.BYTES).limit(buffer.position() + Integer.BYTES + length);
+            checksum.reset();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != buffer.getInt(payload.limit())) {
+                return position;
+            }
+            replay.accept(payload.slice());
+            buffer.position(buffer.position() + frame);
+            position += frame;
+        }
+    }
+
+    /**
+     * Moves the unread bytes of {@code buffer}, which start at file position {@code position}, to its front and
+     * reads the file after them.
+     *
+     * @return whether at least {@code needed} bytes are now readable
+     */
+    private static boolean fill(final FileChannel channel, final ByteBuffer buffer, final long position, final int needed) throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= needed;
+    }
+
+    private static ConcurrentNavigableMap<Long, Path> listSegments(final Path directory) throws IOException {
+        final ConcurrentNavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (final Path file : files) {
+                final String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        return segments;
+    }
+
+    private static Path createSegment(final Path directory, final long start) throws IOException {
+        final Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+        Files.createFile(file);
+        forceDirectory(directory);
+        return file;
+    }
+
+    /**
+     * Makes a file created or deleted in {@code directory} survive a crash, where the platform allows it.
+     */
+    static void forceDirectory(final Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (final IOException ignored) {
+            // not supported on every platform
+        }
+    }
+
+    /**
+     * Copies {@code record} into the journal. It becomes durable asynchronously, see {@link #awaitDurable()}.
+     */
+    public void append(final ByteBuffer record) {
+        final int length = record.remaining();
+        if (length == 0 || length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException(String.format("journal record of %s bytes is out of range", length));
+        }
+        final CRC32 checksum = CHECKSUM.get();
+        checksum.reset();
+        checksum.update(record.duplicate());
+        final int crc = (int) checksum.getValue();
+
+        lock.lock();
+        try {
+            while (active.remaining() < length + FRAME_BYTES) {
+                checkOpen();
+                pending.signal();
+                drained.awaitUninterruptibly();
+            }
+            checkOpen();
+            active.putInt(length).put(record).putInt(crc);
+            appended += length + FRAME_BYTES;
+            lastAppended.get()[0] = appended;
+            if (policy != FsyncPolicy.INTERVAL) {
+                pending.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throws what {@link #append(ByteBuffer)} would throw right now because a write failed or the journal is
+     * closed, so a caller can refuse a change before making it rather than undo it after.
+     */
+    public void checkWritable() {
+        lock.lock();
+        try {
+            checkOpen();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record this thread has appended has been forced to disk. Returns at once unless the
+     * policy is {@link FsyncPolicy#GROUP}.
+     */
+    public void awaitDurable() {
+        if (policy == FsyncPolicy.GROUP) {
+            awaitWritten(lastAppended.get()[0]);
+        }
+    }
+
+    /**
+     * Blocks until every record appended so far, by any thread, has been written and, unless the policy is
+     * {@link FsyncPolicy#NONE}, forced to disk.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        awaitWritten(position());
+    }
+
+    private void awaitWritten(final long position) {
+        lock.lock();
+        try {
+            while (durable < position) {
+                if (failure != null) {
+                    throw new UncheckedIOException("journal write failed", failure);
+                }
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the position after the last appended record, written or not
+     */
+    public long position() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments holding only records before {@code position}. The segment being written is kept.
+     *
+     * @return the number of segments deleted
+     */
+    public int deleteSegmentsBefore(final long position) throws IOException {
+        int deleted = 0;
+        for (Map.Entry<Long, Path> segment = segments.firstEntry(); segment != null; segment = segments.firstEntry()) {
+            final Long next = segments.higherKey(segment.getKey());
+            if (next == null || next > position) {
+                break;
+            }
+            Files.deleteIfExists(segment.getValue());
+            segments.remove(segment.getKey());
+            deleted++;
+        }
+        if (deleted > 0) {
+            forceDirectory(directory);
+        }
+        return deleted;
+    }
+
+    /**
+     * @return the number of segment files, including the one being written
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Writes and forces every appended record, then closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel.isOpen()) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("journal write failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("journal is closed");
+        }
+    }
+
+    private void flushLoop() {
+        long written = durable;
+        while (true) {
+            final ByteBuffer batch;
+            final long target;
+            lock.lock();
+            try {
+                if (policy == FsyncPolicy.INTERVAL) {
+                    if (!closed) {
+                        pending.awaitNanos(intervalNanos);
+                    }
+                } else {
+                    while (active.position() == 0 && !closed) {
+                        pending.awaitUninterruptibly();
+                    }
+                }
+                if (active.position() == 0) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = active;
+                active = spare;
+                spare = null;
+                target = appended;
+                drained.signalAll();
+            } catch (final InterruptedException e) {
+                continue;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (written - segmentStart >= segmentBytes) {
+                    roll(written);
+                }
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                if (policy != FsyncPolicy.NONE) {
+                    channel.force(false);
+                }
+            } catch (final IOException exception) {
+                log.error("journal write failed, no further records will be accepted", exception);
+                lock.lock();
+                try {
+                    failure = exception;
+                    synced.signalAll();
+                    drained.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            written = target;
+            batch.clear();
+            lock.lock();
+            try {
+                spare = batch;
+                durable = target;
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new one at {@code position}. Runs on the flusher thread only.
+     */
+    private void roll(final long position) throws IOException {
+        channel.force(true);
+        channel.close();
+        final Path file = createSegment(directory, position);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentStart = position;
+        segments.put(position, file);
+    }
+}
@@ -0,0 +1,96 @@
+package com.revolut.persistence.journal;
+
+import java.nio.file.Path;
+
+public class JournalOptions {
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 10;
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 60_000;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final long segmentBytes;
+    private final long snapshotIntervalMillis;
+
+    private JournalOptions(final Builder builder) {
+        if (builder.directory == null) {
+            throw new IllegalArgumentException("journal directory must be set");
+        }
+        this.directory = builder.directory;
+        this.fsyncPolicy = builder.fsyncPolicy;
+        this.fsyncIntervalMillis = builder.fsyncIntervalMillis;
+        this.segmentBytes = builder.segmentBytes;
+        this.snapshotIntervalMillis = builder.snapshotIntervalMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public long getFsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    /**
+     * @return the size after which the journal moves on to a new segment file
+     */
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * @return how often a snapshot is taken when the journal has grown, {@code 0} for never
+     */
+    public long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    public static class Builder {
+        private Path directory;
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.GROUP;
+        private long fsyncIntervalMillis = DEFAULT_FSYNC_INTERVAL_MILLIS;
+        private long segmentBytes = DEFAULT_SEGMENT_BYTES;
+        private long snapshotIntervalMillis = DEFAULT_SNAPSHOT_INTERVAL_MILLIS;
+
+        private Builder() {
+        }
+
+        public Builder directory(final Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        public Builder fsyncPolicy(final FsyncPolicy fsyncPolicy) {
+            this.fsyncPolicy = fsyncPolicy;
+            return this;
+        }
+
+        public Builder fsyncIntervalMillis(final long fsyncIntervalMillis) {
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+            return this;
+        }
+
+        public Builder segmentBytes(final long segmentBytes) {
+            this.segmentBytes = segmentBytes;
+            return this;
+        }
+
+        public Builder snapshotIntervalMillis(final long snapshotIntervalMillis) {
+            this.snapshotIntervalMillis = snapshotIntervalMillis;
+            return this;
+        }
+
+        public JournalOptions build() {
+            return new JournalOptions(this);
+        }
+    }
+}
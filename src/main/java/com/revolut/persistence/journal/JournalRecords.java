@@ -0,0 +1,196 @@
+package com.revolut.persistence.journal;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Amount;
+import com.revolut.domain.Transaction;
+import com.revolut.exceptions.AccountNotFoundException;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import org.joda.money.CurrencyUnit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Binary encoding of the journal records, all numbers big-endian:
+ * <pre>
+ * ACCOUNT   : type(1) accountNumber(8) currency(3) balance(8) ownerLength(2) owner(UTF-8)
+ * TRANSFERS : type(1) count(4) { idMsb(8) idLsb(8) createdLength(2) created(ASCII) from(8) to(8) currency(3) amount(8) }
+ *             balances(4) { accountNumber(8) balance(8) }
+ * </pre>
+ * Balances are recorded as absolute values after the change rather than as deltas, so replaying a record sets
+ * state instead of adjusting it, and replaying the same record twice is harmless.
+ */
+final class JournalRecords {
+    static final byte ACCOUNT = 1;
+    static final byte TRANSFERS = 2;
+    private static final int CURRENCY_BYTES = 3;
+    /**
+     * Longest text a record holds, as its length is written in two bytes.
+     */
+    private static final int MAX_TEXT_BYTES = 0xFFFF;
+    private static final int SCRATCH_BYTES = 16 << 10;
+    private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(SCRATCH_BYTES));
+
+    private JournalRecords() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the owner of {@code account} does not fit in its record
+     */
+    static void checkAccount(final Account account) {
+        ownerOf(account);
+    }
+
+    /**
+     * @param account read under its lock, so the balance is the one that follows every record already journaled
+     * @throws IllegalArgumentException if the owner of {@code account} does not fit in its record
+     */
+    static ByteBuffer account(final Account account) {
+        final byte[] owner = ownerOf(account);
+        final ByteBuffer buffer = scratch(1 + Long.BYTES + CURRENCY_BYTES + Long.BYTES + Short.BYTES + owner.length);
+        buffer.put(ACCOUNT).putLong(account.getAccountNumber());
+        putCurrency(buffer, account.getCurrency());
+        buffer.putLong(account.getBalanceMinorUnits()).putShort((short) owner.length).put(owner);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param accounts every account the transactions touch, read under their locks
+     * @throws IllegalArgumentException if the creation time of a transaction does not fit in the record, before
+     *                                  anything is written
+     */
+    static ByteBuffer transfers(final Collection<Transaction> transactions, final Collection<Account> accounts) {
+        int size = 1 + Integer.BYTES + Integer.BYTES + accounts.size() * (Long.BYTES + Long.BYTES);
+        for (final Transaction transaction : transactions) {
+            size += Long.BYTES * 2 + Short.BYTES + asciiLength(transaction.getCreated()) + Long.BYTES * 2 + CURRENCY_BYTES + Long.BYTES;
+        }
+        final ByteBuffer buffer = scratch(size);
+        buffer.put(TRANSFERS).putInt(transactions.size());
+        for (final Transaction transaction : transactions) {
+            buffer.putLong(transaction.getId().getMostSignificantBits()).putLong(transaction.getId().getLeastSignificantBits());
+            putAscii(buffer, transaction.getCreated());
+            buffer.putLong(transaction.getFromAccountNumber()).putLong(transaction.getToAccountNumber());
+            putCurrency(buffer, transaction.getAmount().getCurrency());
+            buffer.putLong(transaction.getAmount().getMinorUnits());
+        }
+        buffer.putInt(accounts.size());
+        for (final Account account : accounts) {
+            buffer.putLong(account.getAccountNumber()).putLong(account.getBalanceMinorUnits());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Applies one record to the in-memory repositories. A balance for an account not created yet is skipped: the
+     * account's own record follows and carries the balance read after it.
+     */
+    static void replay(final ByteBuffer record, final InMemoryAccountRepository accounts, final InMemoryTransactionRepository transactions) {
+        final byte type = record.get();
+        switch (type) {
+            case ACCOUNT:
+                final long accountNumber = record.getLong();
+                final CurrencyUnit currency = getCurrency(record);
+                final long balance = record.getLong();
+                final byte[] owner = new byte[record.getShort() & 0xFFFF];
+                record.get(owner);
+                accounts.restoreAccount(Account.builder()
+                        .accountNumber(accountNumber)
+                        .owner(new String(owner, StandardCharsets.UTF_8))
+                        .balance(Amount.ofMinor(currency, balance))
+                        .build());
+                break;
+            case TRANSFERS:
+                for (int count = record.getInt(); count > 0; count--) {
+                    final Transaction transaction = Transaction.builder()
+                            .id(new UUID(record.getLong(), record.getLong()))
+                            .created(getAscii(record))
+                            .accountFrom(record.getLong())
+                            .accountTo(record.getLong())
+                            .amount(Amount.ofMinor(getCurrency(record), record.getLong()))
+                            .build();
+                    transaction.getIsExecuting().set(false);
+                    transactions.restoreTransaction(transaction);
+                }
+                for (int count = record.getInt(); count > 0; count--) {
+                    final long number = record.getLong();
+                    final long minorUnits = record.getLong();
+                    try {
+                        accounts.getAccountByNumber(number).restoreBalance(minorUnits);
+                    } catch (final AccountNotFoundException ignored) {
+                        // created concurrently, its ACCOUNT record comes later
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException(String.format("unknown journal record type %s", type));
+        }
+    }
+
+    private static ByteBuffer scratch(final int size) {
+        if (size > SCRATCH_BYTES) {
+            return ByteBuffer.allocate(size);
+        }
+        final ByteBuffer buffer = SCRATCH.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void putCurrency(final ByteBuffer buffer, final CurrencyUnit currency) {
+        final String code = currency.getCode();
+        for (int i = 0; i < CURRENCY_BYTES; i++) {
+            buffer.put((byte) code.charAt(i));
+        }
+    }
+
+    private static CurrencyUnit getCurrency(final ByteBuffer buffer) {
+        final char[] code = new char[CURRENCY_BYTES];
+        for (int i = 0; i < CURRENCY_BYTES; i++) {
+            code[i] = (char) buffer.get();
+        }
+        return CurrencyUnit.of(new String(code));
+    }
+
+    private static byte[] ownerOf(final Account account) {
+        final byte[] owner = account.getOwner() == null ? new byte[0] : account.getOwner().getBytes(StandardCharsets.UTF_8);
+        if (owner.length > MAX_TEXT_BYTES) {
+            throw new IllegalArgumentException(String.format("owner of account %s is %s bytes long, more than %s",
+                    account.getAccountNumber(), owner.length, MAX_TEXT_BYTES));
+        }
+        return owner;
+    }
+
+    /**
+     * @return the length of {@code text}, once checked that {@link #putAscii} can write it
+     */
+    private static int asciiLength(final String text) {
+        if (text.length() > MAX_TEXT_BYTES) {
+            throw new IllegalArgumentException(String.format("text of %s characters is longer than %s", text.length(), MAX_TEXT_BYTES));
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                throw new IllegalArgumentException(String.format("text %s is not ASCII", text));
+            }
+        }
+        return text.length();
+    }
+
+    private static void putAscii(final ByteBuffer buffer, final String text) {
+        buffer.putShort((short) text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private static String getAscii(final ByteBuffer buffer) {
+        final char[] text = new char[buffer.getShort() & 0xFFFF];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (char) buffer.get();
+        }
+        return new String(text);
+    }
+}
@@ -0,0 +1,154 @@
+package com.revolut.persistence.journal;
+
+import com.revolut.metrics.RecoveryMetrics;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import com.revolut.persistence.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account and transaction repositories kept in memory and journaled to a directory.
+ * <p>
+ * Opening the store loads the newest valid snapshot and replays the journal from the position that snapshot was
+ * taken at. Snapshots are taken in the background while transfers go on, see {@link Snapshots}. Once two
+ * snapshots exist, journal segments older than the older of them are deleted, so startup only ever replays the
+ * journal written since the last snapshots, and a corrupt newest snapshot can still fall back to the previous one.
+ * Transactions journaled before the snapshot used are not recovered, only their effect on the balances is.
+ */
+public class JournaledStore implements Closeable {
+    private static final int RETAINED_SNAPSHOTS = 2;
+    private static final Logger log = LoggerFactory.getLogger(JournaledStore.class);
+
+    private final Path directory;
+    private final Journal journal;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final RecoveryMetrics recoveryMetrics;
+    private final ScheduledExecutorService snapshotScheduler;
+    private long lastSnapshotPosition;
+
+    private JournaledStore(final Path directory, final Journal journal, final AccountRepository accountRepository,
+                           final TransactionRepository transactionRepository, final RecoveryMetrics recoveryMetrics,
+                           final long lastSnapshotPosition, final long snapshotIntervalMillis) {
+        this.directory = directory;
+        this.journal = journal;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.recoveryMetrics = recoveryMetrics;
+        this.lastSnapshotPosition = lastSnapshotPosition;
+        if (snapshotIntervalMillis > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "journal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            snapshotScheduler = null;
+        }
+    }
+
+    public static JournaledStore open(final JournalOptions options) throws IOException {
+        final Path directory = options.getDirectory();
+        Files.createDirectories(directory);
+
+        final long started = System.nanoTime();
+        InMemoryAccountRepository accounts = new InMemoryAccountRepository();
+        long snapshotPosition = 0;
+        for (final Path snapshot : Snapshots.list(directory)) {
+            try {
+                snapshotPosition = Snapshots.load(snapshot, accounts);
+                break;
+            } catch (final IOException exception) {
+                log.warn("skipping snapshot {}: {}", snapshot, exception.getMessage());
+                accounts = new InMemoryAccountRepository();
+            }
+        }
+        final long loaded = System.nanoTime();
+
+        final InMemoryAccountRepository recoveredAccounts = accounts;
+        final InMemoryTransactionRepository recoveredTransactions = new InMemoryTransactionRepository();
+        final Journal journal = Journal.open(directory, options.getFsyncPolicy(), options.getFsyncIntervalMillis(), options.getSegmentBytes(),
+                snapshotPosition, record -> JournalRecords.replay(record, recoveredAccounts, recoveredTransactions));
+        final long replayed = System.nanoTime();
+
+        final RecoveryMetrics recoveryMetrics = new RecoveryMetrics();
+        recoveryMetrics.recovered(snapshotPosition, loaded - started, replayed - loaded, journal.position() - snapshotPosition,
+                recoveredAccounts.size(), recoveredTransactions.getAllTransactions().size());
+        log.info("recovered {} accounts and {} transactions from {} in {} ms (snapshot {} ms, journal replay {} ms), fsync policy {}",
+                recoveryMetrics.getRecoveredAccounts(), recoveryMetrics.getRecoveredTransactions(), directory,
+                recoveryMetrics.getStartupMillis(), recoveryMetrics.getSnapshotLoadMillis(), recoveryMetrics.getReplayMillis(),
+                options.getFsyncPolicy());
+
+        final AccountRepository accountRepository = new JournalingAccountRepository(recoveredAccounts, journal);
+        final TransactionRepository transactionRepository = new JournalingTransactionRepository(recoveredTransactions, accountRepository, journal);
+        return new JournaledStore(directory, journal, accountRepository, transactionRepository, recoveryMetrics,
+                snapshotPosition, options.getSnapshotIntervalMillis());
+    }
+
+    public AccountRepository getAccountRepository() {
+        return accountRepository;
+    }
+
+    public TransactionRepository getTransactionRepository() {
+        return transactionRepository;
+    }
+
+    public RecoveryMetrics getRecoveryMetrics() {
+        return recoveryMetrics;
+    }
+
+    /**
+     * Snapshots all accounts unless nothing has been journaled since the last snapshot, then deletes the
+     * snapshots and journal segments no longer needed for recovery.
+     *
+     * @return whether a snapshot was taken
+     */
+    public synchronized boolean snapshot() throws IOException {
+        final long position = journal.position();
+        if (position == lastSnapshotPosition) {
+            return false;
+        }
+        final long started = System.nanoTime();
+        final long accounts = Snapshots.write(directory, position, accountRepository, journal);
+        lastSnapshotPosition = position;
+
+        final long oldestRetained = Snapshots.deleteOlderThan(directory, RETAINED_SNAPSHOTS);
+        final int deletedSegments = oldestRetained > 0 ? journal.deleteSegmentsBefore(oldestRetained) : 0;
+        recoveryMetrics.snapshotTaken(position, System.nanoTime() - started, accounts, deletedSegments);
+        log.info("snapshot of {} accounts at journal position {} took {} ms, deleted {} journal segments",
+                accounts, position, recoveryMetrics.getLastSnapshotMillis(), deletedSegments);
+        return true;
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (final IOException | RuntimeException exception) {
+            log.error("snapshot failed", exception);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+    }
+}
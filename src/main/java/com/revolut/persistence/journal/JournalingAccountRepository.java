@@ -0,0 +1,65 @@
+package com.revolut.persistence.journal;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Page;
+import com.revolut.exceptions.AccountAlreadyExistsException;
+import com.revolut.exceptions.AccountNotFoundException;
+import com.revolut.persistence.AccountRepository;
+
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Journals every account created through the in-memory repository it wraps.
+ */
+public class JournalingAccountRepository implements AccountRepository {
+    private final AccountRepository delegate;
+    private final Journal journal;
+
+    public JournalingAccountRepository(final AccountRepository delegate, final Journal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    /**
+     * The account is visible to transfers before its record is appended, so the record is written under the
+     * account's lock with the balance read there, which already includes any transfer journaled in between. An
+     * account that cannot be journaled is rejected before it is created.
+     *
+     * @throws IllegalArgumentException if the account's owner does not fit in a journal record
+     */
+    @Override
+    public Account createAccount(final Account account) throws AccountAlreadyExistsException {
+        JournalRecords.checkAccount(account);
+        final Account created = delegate.createAccount(account);
+        final Lock lock = created.getLock();
+        lock.lock();
+        try {
+            journal.append(JournalRecords.account(created));
+        } finally {
+            lock.unlock();
+        }
+        journal.awaitDurable();
+        return created;
+    }
+
+    @Override
+    public Account getAccountByNumber(final long accountNumber) throws AccountNotFoundException {
+        return delegate.getAccountByNumber(accountNumber);
+    }
+
+    @Override
+    public Collection<Account> getAllAccounts() {
+        return delegate.getAllAccounts();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public Page<Account> getAccounts(final long afterAccountNumber, final int limit) {
+        return delegate.getAccounts(afterAccountNumber, limit);
+    }
+}
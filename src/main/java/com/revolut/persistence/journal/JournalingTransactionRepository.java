@@ -0,0 +1,94 @@
+package com.revolut.persistence.journal;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Page;
+import com.revolut.domain.Transaction;
+import com.revolut.exceptions.AccountNotFoundException;
+import com.revolut.exceptions.TransactionNotFoundException;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.TransactionRepository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Journals transactions together with the resulting balances of the accounts they touch. Transactions are
+ * persisted while the transfer still holds the account locks, so records touching the same account are appended
+ * in the order the balances changed, and the balances read here are exactly the ones the transfer left.
+ */
+public class JournalingTransactionRepository implements TransactionRepository {
+    private final TransactionRepository delegate;
+    private final AccountRepository accountRepository;
+    private final Journal journal;
+
+    public JournalingTransactionRepository(final TransactionRepository delegate, final AccountRepository accountRepository, final Journal journal) {
+        this.delegate = delegate;
+        this.accountRepository = accountRepository;
+        this.journal = journal;
+    }
+
+    @Override
+    public void persistTransaction(final Transaction transaction) {
+        persistTransactions(Collections.singletonList(transaction));
+    }
+
+    /**
+     * Journals all {@code transactions} as a single record, so a batch is recovered entirely or not at all.
+     */
+    @Override
+    public void persistTransactions(final Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        final Map<Long, Account> accounts = new LinkedHashMap<>();
+        for (final Transaction transaction : transactions) {
+            accounts.computeIfAbsent(transaction.getFromAccountNumber(), this::account);
+            accounts.computeIfAbsent(transaction.getToAccountNumber(), this::account);
+        }
+        journal.append(JournalRecords.transfers(transactions, accounts.values()));
+        delegate.persistTransactions(transactions);
+    }
+
+    @Override
+    public void checkWritable() {
+        journal.checkWritable();
+    }
+
+    @Override
+    public void awaitDurable() {
+        journal.awaitDurable();
+    }
+
+    @Override
+    public Transaction getTransaction(final UUID uuid) throws TransactionNotFoundException {
+        return delegate.getTransaction(uuid);
+    }
+
+    @Override
+    public Collection<Transaction> getAllTransactions() {
+        return delegate.getAllTransactions();
+    }
+
+    @Override
+    public Page<Transaction> getTransactions(final long afterSequence, final int limit) {
+        return delegate.getTransactions(afterSequence, limit);
+    }
+
+    @Override
+    public List<Transaction> getAccountTransactions(final long accountNumber, final Instant from, final Instant to, final int limit) {
+        return delegate.getAccountTransactions(accountNumber, from, to, limit);
+    }
+
+    private Account account(final long accountNumber) {
+        try {
+            return accountRepository.getAccountByNumber(accountNumber);
+        } catch (final AccountNotFoundException exception) {
+            throw new IllegalStateException(String.format("transaction on unknown account %s", accountNumber), exception);
+        }
+    }
+}
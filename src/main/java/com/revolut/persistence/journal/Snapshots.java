@@ -0,0 +1,180 @@
+package com.revolut.persistence.journal;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Page;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot files of all accounts, each named after the journal position it is valid from:
+ * <pre>
+ * magic(4) version(4) position(8) { ACCOUNT journal record }* count(4) crc32(4)
+ * </pre>
+ * A snapshot is fuzzy: it is written while transfers go on, one account at a time. That is sound because journal
+ * records carry absolute balances. Any balance read after the position was taken is either the one all records
+ * before the position left, or one set by a record after it, which replaying from the position applies again.
+ * Each balance is read under the account's lock, so it never comes from a transfer whose record is not appended.
+ */
+final class Snapshots {
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int TRAILER_BYTES = Integer.BYTES + Integer.BYTES;
+    private static final int PAGE_SIZE = 1024;
+    private static final int WRITE_BUFFER_BYTES = 256 << 10;
+    private static final Logger log = LoggerFactory.getLogger(Snapshots.class);
+
+    private Snapshots() {
+    }
+
+    /**
+     * @return the snapshot files in {@code directory}, newest first
+     */
+    static List<Path> list(final Path directory) throws IOException {
+        final List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            files.forEach(snapshots::add);
+        }
+        snapshots.sort(Comparator.comparingLong(Snapshots::positionOf).reversed());
+        return snapshots;
+    }
+
+    static long positionOf(final Path snapshot) {
+        final String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Writes a snapshot valid from journal {@code position}, which must have been taken before the first account is
+     * read. The journal is flushed before the snapshot is published, so no balance in it is ahead of the journal.
+     *
+     * @return the number of accounts written
+     */
+    static long write(final Path directory, final long position, final AccountRepository accounts, final Journal journal) throws IOException {
+        final Path target = directory.resolve(String.format("%s%020d%s", PREFIX, position, SUFFIX));
+        final Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        final CRC32 checksum = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(position);
+            long after = 0;
+            Page<Account> page;
+            do {
+                page = accounts.getAccounts(after, PAGE_SIZE);
+                for (final Account account : page.getItems()) {
+                    final ByteBuffer record;
+                    final Lock lock = account.getLock();
+                    lock.lock();
+                    try {
+                        record = JournalRecords.account(account);
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (buffer.remaining() < record.remaining()) {
+                        drain(channel, buffer, checksum);
+                    }
+                    buffer.put(record);
+                    count++;
+                }
+                after = page.getCursor();
+            } while (page.hasMore());
+
+            if (buffer.remaining() < TRAILER_BYTES) {
+                drain(channel, buffer, checksum);
+            }
+            buffer.putInt(count);
+            drain(channel, buffer, checksum);
+            buffer.putInt((int) checksum.getValue());
+            drain(channel, buffer, checksum);
+            journal.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        Journal.forceDirectory(directory);
+        return count;
+    }
+
+    private static void drain(final FileChannel channel, final ByteBuffer buffer, final CRC32 checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Restores the accounts of {@code snapshot} through a memory-mapped read.
+     *
+     * @return the journal position the snapshot is valid from
+     * @throws IOException if the snapshot is incomplete or corrupt, in which case {@code accounts} may hold part of it
+     */
+    static long load(final Path snapshot, final InMemoryAccountRepository accounts) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("snapshot %s has an invalid size %s", snapshot, size));
+            }
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            final int checked = (int) size - Integer.BYTES;
+            final CRC32 checksum = new CRC32();
+            final ByteBuffer covered = mapped.duplicate();
+            covered.limit(checked);
+            checksum.update(covered);
+            if ((int) checksum.getValue() != mapped.getInt(checked) || mapped.getInt(0) != MAGIC || mapped.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException(String.format("snapshot %s is corrupt", snapshot));
+            }
+
+            final long position = mapped.getLong(Integer.BYTES + Integer.BYTES);
+            final int count = mapped.getInt(checked - Integer.BYTES);
+            final ByteBuffer records = mapped.duplicate();
+            records.position(HEADER_BYTES).limit(checked - Integer.BYTES);
+            final InMemoryTransactionRepository noTransactions = new InMemoryTransactionRepository();
+            int restored = 0;
+            while (records.hasRemaining()) {
+                JournalRecords.replay(records, accounts, noTransactions);
+                restored++;
+            }
+            if (restored != count) {
+                throw new IOException(String.format("snapshot %s holds %s accounts, expected %s", snapshot, restored, count));
+            }
+            log.info("loaded {} accounts from snapshot {}", count, snapshot);
+            return position;
+        }
+    }
+
+    /**
+     * Deletes all but the newest {@code retain} snapshots, and any unfinished snapshot file.
+     *
+     * @return the position of the oldest snapshot kept, or {@code 0} if fewer than {@code retain} exist
+     */
+    static long deleteOlderThan(final Path directory, final int retain) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX + ".tmp")) {
+            for (final Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        final List<Path> snapshots = list(directory);
+        for (int i = retain; i < snapshots.size(); i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        return snapshots.size() < retain ? 0 : positionOf(snapshots.get(retain - 1));
+    }
+}
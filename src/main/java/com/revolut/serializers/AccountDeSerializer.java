@@ -0,0 +1,49 @@
+package com.revolut.serializers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.revolut.domain.Account;
+import com.revolut.domain.Amount;
+
+import java.io.IOException;
+
+public class AccountDeSerializer extends StdDeserializer<Account> {
+    public AccountDeSerializer() {
+        super(Account.class);
+    }
+
+    @Override
+    public Account deserialize(final JsonParser jp, final DeserializationContext ctxt) throws IOException {
+        if (!jp.isExpectedStartObjectToken()) {
+            return (Account) ctxt.handleUnexpectedToken(Account.class, jp);
+        }
+        String owner = null;
+        long accountNumber = 0;
+        Amount balance = null;
+        for (String field = jp.nextFieldName(); field != null; field = jp.nextFieldName()) {
+            final JsonToken value = jp.nextToken();
+            switch (field) {
+                case "owner":
+                    owner = value == JsonToken.VALUE_NULL ? null : _parseString(jp, ctxt);
+                    break;
+                case "accountNumber":
+                    accountNumber = _parseLongPrimitive(jp, ctxt);
+                    break;
+                case "money":
+                    balance = MoneyDeSerializer.readAmount(jp, ctxt);
+                    break;
+                case "lock":
+                    jp.skipChildren();
+                    break;
+                default:
+                    ctxt.handleUnknownProperty(jp, this, Account.class, field);
+            }
+        }
+        if (balance == null) {
+            return (Account) ctxt.handleMissingInstantiator(Account.class, null, jp, "account must have money");
+        }
+        return Account.builder().owner(owner).accountNumber(accountNumber).balance(balance).build();
+    }
+}
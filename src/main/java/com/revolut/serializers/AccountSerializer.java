@@ -0,0 +1,45 @@
+package com.revolut.serializers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.revolut.domain.Account;
+import com.revolut.domain.AccountSnapshot;
+import org.joda.money.CurrencyUnit;
+
+import java.io.IOException;
+
+/**
+ * Writes the published balance, see {@link Account#getPublishedBalanceMinorUnits()}.
+ */
+public class AccountSerializer extends StdSerializer<Account> {
+    public AccountSerializer() {
+        super(Account.class);
+    }
+
+    @Override
+    public void serialize(final Account account, final JsonGenerator jgen, final SerializerProvider provider) throws IOException {
+        write(account.getOwner(), account.getAccountNumber(), account.getCurrency(), account.getPublishedBalanceMinorUnits(), jgen);
+    }
+
+    private static void write(final String owner, final long accountNumber, final CurrencyUnit currency, final long balanceMinorUnits,
+                              final JsonGenerator jgen) throws IOException {
+        jgen.writeStartObject();
+        jgen.writeStringField("owner", owner);
+        jgen.writeNumberField("accountNumber", accountNumber);
+        jgen.writeFieldName("money");
+        MoneySerializer.writeMoney(currency, balanceMinorUnits, jgen);
+        jgen.writeEndObject();
+    }
+
+    public static class SnapshotSerializer extends StdSerializer<AccountSnapshot> {
+        public SnapshotSerializer() {
+            super(AccountSnapshot.class);
+        }
+
+        @Override
+        public void serialize(final AccountSnapshot snapshot, final JsonGenerator jgen, final SerializerProvider provider) throws IOException {
+            write(snapshot.getOwner(), snapshot.getAccountNumber(), snapshot.getCurrency(), snapshot.getBalanceMinorUnits(), jgen);
+        }
+    }
+}
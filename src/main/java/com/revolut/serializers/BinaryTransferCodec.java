@@ -0,0 +1,261 @@
+package com.revolut.serializers;
+
+import com.revolut.domain.Amount;
+import com.revolut.domain.BatchResult;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.TransferStatus;
+import org.joda.money.CurrencyUnit;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The {@value #CONTENT_TYPE} encoding of transfers, for internal callers that would rather not pay for JSON. All
+ * numbers are big-endian. A transfer request is one fixed {@value #REQUEST_BYTES} byte record, a batch any number of
+ * them back to back:
+ * <pre>
+ *  0  from account number      int64
+ *  8  to account number        int64
+ * 16  amount in minor units    int64
+ * 24  ISO 4217 numeric code    uint16
+ * 26  reserved, zero           6 bytes
+ * 32  idempotency key          16 bytes, a UUID, all zero for none; ignored in a batch
+ * </pre>
+ * The response to a transfer is its id, 16 bytes, then its creation time in microseconds since the epoch, int64.
+ * The response to a batch is a {@value #BATCH_HEADER_BYTES} byte header, whether it committed (1 byte, 0 or 1), 3
+ * reserved bytes and the number of results (int32), then per transfer a {@value #BATCH_ITEM_BYTES} byte record: its
+ * status (1 byte, see {@link #STATUS_CODES}), 7 reserved bytes and the id of the transfer if it was applied, all zero
+ * otherwise. Failures keep their HTTP status and plain text message.
+ * <p>
+ * Records are read straight out of the request bytes: decoding allocates the {@link Transaction} and nothing else.
+ */
+public final class BinaryTransferCodec {
+    public static final String CONTENT_TYPE = "application/x-transfer-bin";
+    public static final int REQUEST_BYTES = 48;
+    public static final int RESPONSE_BYTES = 24;
+    public static final int BATCH_HEADER_BYTES = 8;
+    public static final int BATCH_ITEM_BYTES = 24;
+    /**
+     * Status codes on the wire, by position: 0 is {@link TransferStatus#OK}. Append only.
+     */
+    static final TransferStatus[] STATUS_CODES = {
+            TransferStatus.OK,
+            TransferStatus.INVALID_AMOUNT,
+            TransferStatus.ACCOUNT_NOT_FOUND,
+            TransferStatus.SAME_ACCOUNT,
+            TransferStatus.UNSUPPORTED_CURRENCY,
+            TransferStatus.INSUFFICIENT_FUNDS,
+            TransferStatus.TIMEOUT,
+            TransferStatus.ABORTED,
+            TransferStatus.FAILED,
+            TransferStatus.NO_EXCHANGE_RATE
+    };
+    private static final int KEY_OFFSET = 32;
+    private static final int NUMERIC_CODES = 1000;
+    private static final CurrencyUnit[] CURRENCIES = new CurrencyUnit[NUMERIC_CODES];
+    private static final byte[] STATUS_BYTES = new byte[TransferStatus.values().length];
+
+    static {
+        for (int code = 0; code < STATUS_CODES.length; code++) {
+            STATUS_BYTES[STATUS_CODES[code].ordinal()] = (byte) code;
+        }
+    }
+
+    private BinaryTransferCodec() {
+    }
+
+    /**
+     * @return whether a request with {@code contentType} is in this encoding
+     */
+    public static boolean isBinary(final String contentType) {
+        return contentType != null && contentType.regionMatches(true, 0, CONTENT_TYPE, 0, CONTENT_TYPE.length());
+    }
+
+    /**
+     * Writes a transfer request record at {@code offset}.
+     *
+     * @param idempotencyKey {@code null} for none
+     */
+    public static void encodeRequest(final long from, final long to, final Amount amount, final UUID idempotencyKey,
+                                     final byte[] buffer, final int offset) {
+        final int numericCode = amount.getCurrency().getNumericCode();
+        if (numericCode < 0) {
+            throw new IllegalArgumentException(String.format("currency %s has no numeric code", amount.getCurrency()));
+        }
+        putLong(buffer, offset, from);
+        putLong(buffer, offset + 8, to);
+        putLong(buffer, offset + 16, amount.getMinorUnits());
+        buffer[offset + 24] = (byte) (numericCode >>> 8);
+        buffer[offset + 25] = (byte) numericCode;
+        for (int i = offset + 26; i < offset + KEY_OFFSET; i++) {
+            buffer[i] = 0;
+        }
+        putLong(buffer, offset + KEY_OFFSET, idempotencyKey == null ? 0 : idempotencyKey.getMostSignificantBits());
+        putLong(buffer, offset + KEY_OFFSET + 8, idempotencyKey == null ? 0 : idempotencyKey.getLeastSignificantBits());
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code body} is not exactly one valid record
+     */
+    public static Transaction decodeTransfer(final byte[] body) {
+        if (body.length != REQUEST_BYTES) {
+            throw new IllegalArgumentException(String.format("transfer must be %s bytes, was %s", REQUEST_BYTES, body.length));
+        }
+        return decode(body, 0);
+    }
+
+    /**
+     * @return the idempotency key of the single record in {@code body}, or {@code null} if it has none
+     */
+    public static UUID idempotencyKeyOf(final byte[] body) {
+        final long msb = getLong(body, KEY_OFFSET);
+        final long lsb = getLong(body, KEY_OFFSET + 8);
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code body} is not a whole number of valid records, or more than
+     *                                  {@code maxTransfers} of them
+     */
+    public static List<Transaction> decodeBatch(final byte[] body, final int maxTransfers) {
+        if (body.length % REQUEST_BYTES != 0) {
+            throw new IllegalArgumentException(String.format("batch must be a multiple of %s bytes, was %s", REQUEST_BYTES, body.length));
+        }
+        final int count = body.length / REQUEST_BYTES;
+        if (count > maxTransfers) {
+            throw new IllegalArgumentException(String.format("batch exceeds %s transfers", maxTransfers));
+        }
+        final List<Transaction> transactions = new ArrayList<>(count);
+        for (int offset = 0; offset < body.length; offset += REQUEST_BYTES) {
+            transactions.add(decode(body, offset));
+        }
+        return transactions;
+    }
+
+    public static byte[] encodeTransfer(final Transaction transaction) {
+        final byte[] response = new byte[RESPONSE_BYTES];
+        putLong(response, 0, transaction.getId().getMostSignificantBits());
+        putLong(response, 8, transaction.getId().getLeastSignificantBits());
+        putLong(response, 16, epochMicrosOf(transaction.getCreated()));
+        return response;
+    }
+
+    public static byte[] encodeBatchResult(final BatchResult result) {
+        final List<BatchResult.Item> items = result.getResults();
+        final byte[] response = new byte[BATCH_HEADER_BYTES + items.size() * BATCH_ITEM_BYTES];
+        response[0] = (byte) (result.isCommitted() ? 1 : 0);
+        response[4] = (byte) (items.size() >>> 24);
+        response[5] = (byte) (items.size() >>> 16);
+        response[6] = (byte) (items.size() >>> 8);
+        response[7] = (byte) items.size();
+        int offset = BATCH_HEADER_BYTES;
+        for (final BatchResult.Item item : items) {
+            response[offset] = STATUS_BYTES[item.getStatus().ordinal()];
+            if (item.getId() != null) {
+                putLong(response, offset + 8, item.getId().getMostSignificantBits());
+                putLong(response, offset + 16, item.getId().getLeastSignificantBits());
+            }
+            offset += BATCH_ITEM_BYTES;
+        }
+        return response;
+    }
+
+    /**
+     * @return the status of the batch result item at {@code index} of an encoded batch result
+     */
+    public static TransferStatus statusOf(final byte[] batchResult, final int index) {
+        return STATUS_CODES[batchResult[BATCH_HEADER_BYTES + index * BATCH_ITEM_BYTES]];
+    }
+
+    private static Transaction decode(final byte[] body, final int offset) {
+        final long from = getLong(body, offset);
+        final long to = getLong(body, offset + 8);
+        final long minorUnits = getLong(body, offset + 16);
+        final int numericCode = (body[offset + 24] & 0xFF) << 8 | body[offset + 25] & 0xFF;
+        for (int i = offset + 26; i < offset + KEY_OFFSET; i++) {
+            if (body[i] != 0) {
+                throw new IllegalArgumentException(String.format("reserved byte %s of transfer is not zero", i - offset));
+            }
+        }
+        if (from <= 0 || to <= 0 || minorUnits <= 0) {
+            throw new IllegalArgumentException(String.format("invalid transfer of %s minor units from %s to %s", minorUnits, from, to));
+        }
+        return Transaction.builder()
+                .accountFrom(from)
+                .accountTo(to)
+                .amount(Amount.ofMinor(currencyOf(numericCode), minorUnits))
+                .build();
+    }
+
+    /**
+     * Reads {@code yyyy-MM-ddTHH:mm:ss[.SSS[SSS]]Z}, the shape transactions are created with, by hand: it is most of
+     * the cost of a response otherwise. Anything else goes through {@link Instant#parse}.
+     */
+    static long epochMicrosOf(final String created) {
+        final int length = created.length();
+        if ((length == 20 || length == 24 || length == 27) && created.charAt(4) == '-' && created.charAt(7) == '-'
+                && created.charAt(10) == 'T' && created.charAt(13) == ':' && created.charAt(16) == ':'
+                && created.charAt(length - 1) == 'Z' && (length == 20 || created.charAt(19) == '.')) {
+            final int year = digits(created, 0, 4);
+            final int month = digits(created, 5, 7);
+            final int day = digits(created, 8, 10);
+            final int hour = digits(created, 11, 13);
+            final int minute = digits(created, 14, 16);
+            final int second = digits(created, 17, 19);
+            int micros = length == 20 ? 0 : digits(created, 20, length - 1);
+            if (length == 24) {
+                micros *= 1_000;
+            }
+            if (year >= 0 && month > 0 && day > 0 && micros >= 0 && hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                final long epochDay = LocalDate.of(year, month, day).toEpochDay();
+                return ((epochDay * 24 + hour) * 60 + minute) * 60_000_000L + second * 1_000_000L + micros;
+            }
+        }
+        final Instant instant = Instant.parse(created);
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+
+    /**
+     * @return the decimal number in {@code [from, to)}, or -1 if it is not all digits
+     */
+    private static int digits(final String text, final int from, final int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static CurrencyUnit currencyOf(final int numericCode) {
+        if (numericCode >= NUMERIC_CODES) {
+            throw new IllegalArgumentException(String.format("unknown numeric currency code %s", numericCode));
+        }
+        CurrencyUnit currency = CURRENCIES[numericCode];
+        if (currency == null) {
+            currency = CurrencyUnit.ofNumericCode(numericCode);
+            CURRENCIES[numericCode] = currency;
+        }
+        return currency;
+    }
+
+    private static long getLong(final byte[] buffer, final int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = value << 8 | buffer[i] & 0xFF;
+        }
+        return value;
+    }
+
+    private static void putLong(final byte[] buffer, final int offset, final long value) {
+        for (int i = 7; i >= 0; i--) {
+            buffer[offset + 7 - i] = (byte) (value >>> (i * 8));
+        }
+    }
+}
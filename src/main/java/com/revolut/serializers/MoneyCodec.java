@@ -0,0 +1,127 @@
+package com.revolut.serializers;
+
+import com.revolut.domain.Amount;
+import org.joda.money.CurrencyUnit;
+
+/**
+ * Reads and writes the {@code "EUR 12.50"} money format straight from and into char buffers, producing the same
+ * text as {@link org.joda.money.Money#toString()} and accepting what {@link org.joda.money.Money#parse(String)}
+ * accepts, without going through {@link String} or {@link java.math.BigDecimal}.
+ */
+final class MoneyCodec {
+    static final int MAX_LENGTH = 64;
+    private static final int LETTERS = 26;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    private static final CurrencyUnit[] CURRENCIES = new CurrencyUnit[LETTERS * LETTERS * LETTERS];
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+    private MoneyCodec() {
+    }
+
+    /**
+     * @return a per-thread scratch buffer of {@link #MAX_LENGTH} chars
+     */
+    static char[] buffer() {
+        return BUFFER.get();
+    }
+
+    /**
+     * Writes {@code currency} and {@code minorUnits} to the start of {@code buffer}.
+     *
+     * @return the number of chars written
+     */
+    static int format(final CurrencyUnit currency, final long minorUnits, final char[] buffer) {
+        currency.getCode().getChars(0, 3, buffer, 0);
+        buffer[3] = ' ';
+        int length = 4;
+        if (minorUnits < 0) {
+            buffer[length++] = '-';
+        }
+
+        final int decimals = decimalsOf(currency);
+        int start = buffer.length;
+        long remaining = minorUnits > 0 ? -minorUnits : minorUnits;
+        int digits = 0;
+        do {
+            buffer[--start] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+            if (++digits == decimals) {
+                buffer[--start] = '.';
+            }
+        } while (remaining != 0 || digits <= decimals);
+
+        final int numberLength = buffer.length - start;
+        System.arraycopy(buffer, start, buffer, length, numberLength);
+        return length + numberLength;
+    }
+
+    static Amount parse(final char[] text, final int offset, final int length) {
+        if (length < 4) {
+            throw new IllegalArgumentException(String.format("Money '%s' cannot be parsed", new String(text, offset, length)));
+        }
+        final CurrencyUnit currency = currencyOf(text[offset], text[offset + 1], text[offset + 2]);
+        final int decimals = decimalsOf(currency);
+        final int end = offset + length;
+
+        int i = offset + 3;
+        while (i < end && text[i] == ' ') {
+            i++;
+        }
+        boolean negative = false;
+        if (i < end && (text[i] == '-' || text[i] == '+')) {
+            negative = text[i++] == '-';
+        }
+
+        // accumulated as a negative number so that Long.MIN_VALUE minor units still parse
+        long units = 0;
+        int digits = 0;
+        for (; i < end && isDigit(text[i]); i++, digits++) {
+            units = Math.subtractExact(Math.multiplyExact(units, 10), text[i] - '0');
+        }
+        int fractionDigits = 0;
+        if (i < end && text[i] == '.') {
+            for (i++; i < end && isDigit(text[i]); i++, digits++) {
+                if (fractionDigits < decimals) {
+                    units = Math.subtractExact(Math.multiplyExact(units, 10), text[i] - '0');
+                    fractionDigits++;
+                } else if (text[i] != '0') {
+                    throw new ArithmeticException(String.format("Scale of amount '%s' is greater than the scale of the currency %s",
+                            new String(text, offset, length), currency));
+                }
+            }
+        }
+        if (i != end || digits == 0) {
+            throw new IllegalArgumentException(String.format("Money amount '%s' cannot be parsed", new String(text, offset, length)));
+        }
+
+        units = Math.multiplyExact(units, POWERS_OF_TEN[decimals - fractionDigits]);
+        return Amount.ofMinor(currency, negative ? units : Math.negateExact(units));
+    }
+
+    private static CurrencyUnit currencyOf(final char first, final char second, final char third) {
+        if (!isLetter(first) || !isLetter(second) || !isLetter(third)) {
+            return CurrencyUnit.of(new String(new char[]{first, second, third}));
+        }
+        final int index = ((first - 'A') * LETTERS + (second - 'A')) * LETTERS + (third - 'A');
+        CurrencyUnit currency = CURRENCIES[index];
+        if (currency == null) {
+            currency = CurrencyUnit.of(new String(new char[]{first, second, third}));
+            CURRENCIES[index] = currency;
+        }
+        return currency;
+    }
+
+    private static int decimalsOf(final CurrencyUnit currency) {
+        return Math.max(0, currency.getDecimalPlaces());
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(final char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+}
@@ -2,8 +2,10 @@ package com.revolut.serializers;
 
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.revolut.domain.Amount;
 import org.joda.money.Money;
 
 import java.io.IOException;
@@ -15,6 +17,22 @@ public class MoneyDeSerializer extends StdDeserializer<Money> {
 
     @Override
     public Money deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
-        return Money.parse(jp.readValueAs(String.class));
+        return readAmount(jp, ctxt).toMoney();
+    }
+
+    /**
+     * Parses the current string token directly from the parser's text buffer.
+     */
+    static Amount readAmount(final JsonParser jp, final DeserializationContext ctxt) throws IOException {
+        if (jp.currentToken() != JsonToken.VALUE_STRING) {
+            // a problem handler may make up a Money, never an Amount
+            final Money money = (Money) ctxt.handleUnexpectedToken(Money.class, jp);
+            return money == null ? null : Amount.of(money);
+        }
+        try {
+            return MoneyCodec.parse(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+        } catch (final IllegalArgumentException | ArithmeticException exception) {
+            throw ctxt.weirdStringException(jp.getText(), Money.class, exception.getMessage());
+        }
     }
 }
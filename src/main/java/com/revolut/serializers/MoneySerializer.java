@@ -3,6 +3,8 @@ package com.revolut.serializers;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.revolut.domain.Amount;
+import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
 
 import java.io.IOException;
@@ -14,6 +16,15 @@ public class MoneySerializer extends StdSerializer<Money> {
 
     @Override
     public void serialize(final Money value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
-        jgen.writeString(value.toString());
+        writeMoney(value.getCurrencyUnit(), value.getAmountMinorLong(), jgen);
+    }
+
+    static void writeAmount(final Amount amount, final JsonGenerator jgen) throws IOException {
+        writeMoney(amount.getCurrency(), amount.getMinorUnits(), jgen);
+    }
+
+    static void writeMoney(final CurrencyUnit currency, final long minorUnits, final JsonGenerator jgen) throws IOException {
+        final char[] buffer = MoneyCodec.buffer();
+        jgen.writeString(buffer, 0, MoneyCodec.format(currency, minorUnits, buffer));
     }
 }
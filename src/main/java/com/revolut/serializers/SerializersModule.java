@@ -0,0 +1,23 @@
+package com.revolut.serializers;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.revolut.domain.Account;
+import com.revolut.domain.AccountSnapshot;
+import com.revolut.domain.Transaction;
+import org.joda.money.Money;
+
+/**
+ * Registers the streaming (de)serializers for the API types on an {@link com.fasterxml.jackson.databind.ObjectMapper}.
+ */
+public class SerializersModule extends SimpleModule {
+    public SerializersModule() {
+        super(SerializersModule.class.getSimpleName());
+        addSerializer(Money.class, new MoneySerializer());
+        addDeserializer(Money.class, new MoneyDeSerializer());
+        addSerializer(Account.class, new AccountSerializer());
+        addSerializer(AccountSnapshot.class, new AccountSerializer.SnapshotSerializer());
+        addDeserializer(Account.class, new AccountDeSerializer());
+        addSerializer(Transaction.class, new TransactionSerializer());
+        addDeserializer(Transaction.class, new TransactionDeSerializer());
+    }
+}
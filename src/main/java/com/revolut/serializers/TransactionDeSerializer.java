@@ -0,0 +1,69 @@
+package com.revolut.serializers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.revolut.domain.Amount;
+import com.revolut.domain.Transaction;
+
+import java.io.IOException;
+import java.util.UUID;
+
+public class TransactionDeSerializer extends StdDeserializer<Transaction> {
+    public TransactionDeSerializer() {
+        super(Transaction.class);
+    }
+
+    @Override
+    public Transaction deserialize(final JsonParser jp, final DeserializationContext ctxt) throws IOException {
+        if (!jp.isExpectedStartObjectToken()) {
+            return (Transaction) ctxt.handleUnexpectedToken(Transaction.class, jp);
+        }
+        UUID id = null;
+        String created = null;
+        long from = 0;
+        long to = 0;
+        Amount amount = null;
+        for (String field = jp.nextFieldName(); field != null; field = jp.nextFieldName()) {
+            final JsonToken value = jp.nextToken();
+            switch (field) {
+                case "id":
+                    id = value == JsonToken.VALUE_NULL ? null : readUuid(jp, ctxt);
+                    break;
+                case "created":
+                    created = value == JsonToken.VALUE_NULL ? null : _parseString(jp, ctxt);
+                    break;
+                case "fromAccountNumber":
+                    from = _parseLongPrimitive(jp, ctxt);
+                    break;
+                case "toAccountNumber":
+                    to = _parseLongPrimitive(jp, ctxt);
+                    break;
+                case "money":
+                    amount = MoneyDeSerializer.readAmount(jp, ctxt);
+                    break;
+                case "isExecuting":
+                    jp.skipChildren();
+                    break;
+                default:
+                    ctxt.handleUnknownProperty(jp, this, Transaction.class, field);
+            }
+        }
+        if (amount == null) {
+            return (Transaction) ctxt.handleMissingInstantiator(Transaction.class, null, jp, "transaction must have money");
+        }
+        return Transaction.builder().id(id).created(created).accountFrom(from).accountTo(to).amount(amount).build();
+    }
+
+    private static UUID readUuid(final JsonParser jp, final DeserializationContext ctxt) throws IOException {
+        if (jp.currentToken() != JsonToken.VALUE_STRING) {
+            return (UUID) ctxt.handleUnexpectedToken(UUID.class, jp);
+        }
+        try {
+            return UuidCodec.parse(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+        } catch (final IllegalArgumentException exception) {
+            throw ctxt.weirdStringException(jp.getText(), UUID.class, exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.revolut.serializers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.revolut.domain.Transaction;
+
+import java.io.IOException;
+
+public class TransactionSerializer extends StdSerializer<Transaction> {
+    private static final ThreadLocal<char[]> UUID_BUFFER = ThreadLocal.withInitial(() -> new char[UuidCodec.LENGTH]);
+
+    public TransactionSerializer() {
+        super(Transaction.class);
+    }
+
+    @Override
+    public void serialize(final Transaction transaction, final JsonGenerator jgen, final SerializerProvider provider) throws IOException {
+        final char[] uuid = UUID_BUFFER.get();
+        UuidCodec.format(transaction.getId(), uuid);
+
+        jgen.writeStartObject();
+        jgen.writeFieldName("id");
+        jgen.writeString(uuid, 0, UuidCodec.LENGTH);
+        jgen.writeStringField("created", transaction.getCreated());
+        jgen.writeNumberField("fromAccountNumber", transaction.getFromAccountNumber());
+        jgen.writeNumberField("toAccountNumber", transaction.getToAccountNumber());
+        jgen.writeFieldName("money");
+        MoneySerializer.writeAmount(transaction.getAmount(), jgen);
+        jgen.writeEndObject();
+    }
+}
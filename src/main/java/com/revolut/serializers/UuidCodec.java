@@ -0,0 +1,56 @@
+package com.revolut.serializers;
+
+import java.util.UUID;
+
+/**
+ * Canonical 36 char UUID text from and into char buffers, without {@link UUID#toString()} or
+ * {@link UUID#fromString(String)}.
+ */
+final class UuidCodec {
+    static final int LENGTH = 36;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private UuidCodec() {
+    }
+
+    static void format(final UUID uuid, final char[] buffer) {
+        final long msb = uuid.getMostSignificantBits();
+        final long lsb = uuid.getLeastSignificantBits();
+        hex(msb >>> 32, 8, buffer, 0);
+        buffer[8] = '-';
+        hex(msb >>> 16, 4, buffer, 9);
+        buffer[13] = '-';
+        hex(msb, 4, buffer, 14);
+        buffer[18] = '-';
+        hex(lsb >>> 48, 4, buffer, 19);
+        buffer[23] = '-';
+        hex(lsb, 12, buffer, 24);
+    }
+
+    static UUID parse(final char[] text, final int offset, final int length) {
+        if (length != LENGTH || text[offset + 8] != '-' || text[offset + 13] != '-' || text[offset + 18] != '-' || text[offset + 23] != '-') {
+            throw new IllegalArgumentException(String.format("Invalid UUID string: %s", new String(text, offset, length)));
+        }
+        final long msb = (unhex(text, offset, 8) << 32) | (unhex(text, offset + 9, 4) << 16) | unhex(text, offset + 14, 4);
+        final long lsb = (unhex(text, offset + 19, 4) << 48) | unhex(text, offset + 24, 12);
+        return new UUID(msb, lsb);
+    }
+
+    private static void hex(final long value, final int digits, final char[] buffer, final int offset) {
+        for (int i = digits - 1, shift = 0; i >= 0; i--, shift += 4) {
+            buffer[offset + i] = HEX[(int) (value >>> shift) & 0xF];
+        }
+    }
+
+    private static long unhex(final char[] text, final int offset, final int digits) {
+        long value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            final int digit = Character.digit(text[i], 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException(String.format("Invalid UUID string: %s", new String(text, offset, digits)));
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+}
@@ -1,6 +1,8 @@
 package com.revolut.service;
 
 import com.revolut.domain.Account;
+import com.revolut.domain.AccountSnapshot;
+import com.revolut.domain.Page;
 import com.revolut.exceptions.AccountAlreadyExistsException;
 import com.revolut.exceptions.AccountNotFoundException;
 
@@ -11,5 +13,17 @@ public interface AccountingService {
 
     Collection<Account> getAllAccounts();
 
+    /**
+     * @return the number of accounts, without copying any
+     */
+    int getAccountCount();
+
+    Page<Account> getAccounts(long afterAccountNumber, int limit);
+
     Account getAccount(long accountId) throws AccountNotFoundException;
+
+    /**
+     * @return the account's published balance and its version, read without locking and without copying the account
+     */
+    AccountSnapshot getAccountSnapshot(long accountId) throws AccountNotFoundException;
 }
@@ -1,6 +1,8 @@
 package com.revolut.service;
 
 import com.revolut.domain.Account;
+import com.revolut.domain.AccountSnapshot;
+import com.revolut.domain.Page;
 import com.revolut.exceptions.AccountAlreadyExistsException;
 import com.revolut.exceptions.AccountNotFoundException;
 import com.revolut.persistence.AccountRepository;
@@ -31,10 +33,29 @@ public class AccountingServiceImpl implements AccountingService {
         return allAccounts.stream().map(Account::copy).collect(Collectors.toList());
     }
 
+    @Override
+    public int getAccountCount() {
+        return accountRepository.size();
+    }
+
+    /**
+     * Unlike {@link #getAllAccounts()} the page holds the live accounts rather than copies, it is only read for
+     * serialization, which reads each balance once.
+     */
+    @Override
+    public Page<Account> getAccounts(final long afterAccountNumber, final int limit) {
+        return accountRepository.getAccounts(afterAccountNumber, limit);
+    }
+
     @Override
     public Account getAccount(final long accountId) throws AccountNotFoundException {
         final Account orig = accountRepository.getAccountByNumber(accountId);
         return Account.copy(orig);
     }
 
+    @Override
+    public AccountSnapshot getAccountSnapshot(final long accountId) throws AccountNotFoundException {
+        return accountRepository.getAccountByNumber(accountId).snapshot();
+    }
+
 }
@@ -0,0 +1,69 @@
+package com.revolut.service;
+
+import com.revolut.audit.AuditLog;
+import com.revolut.domain.BatchMode;
+import com.revolut.domain.BatchResult;
+import com.revolut.domain.Page;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.TransferStatus;
+import com.revolut.exceptions.*;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Records every committed transfer in the {@link AuditLog}, once the transfer engine has released its accounts.
+ */
+public class AuditedTransactionService implements TransactionService {
+    private final TransactionService delegate;
+    private final AuditLog auditLog;
+
+    public AuditedTransactionService(final TransactionService delegate, final AuditLog auditLog) {
+        this.delegate = delegate;
+        this.auditLog = auditLog;
+    }
+
+    @Override
+    public Transaction transfer(final Transaction transaction)
+            throws SameAccountTransferException, InsufficientFundsException, AccountNotFoundException, InvalidDepositException, TransferTimeoutException,
+            ExchangeRateNotFoundException {
+        final Transaction transferred = delegate.transfer(transaction);
+        auditLog.transferred(transferred);
+        return transferred;
+    }
+
+    @Override
+    public BatchResult transferBatch(final List<Transaction> transactions, final BatchMode mode) {
+        final BatchResult result = delegate.transferBatch(transactions, mode);
+        final List<BatchResult.Item> items = result.getResults();
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getStatus() == TransferStatus.OK) {
+                auditLog.transferred(transactions.get(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<Transaction> getAllTransactions() {
+        return delegate.getAllTransactions();
+    }
+
+    @Override
+    public Page<Transaction> getTransactions(final long afterSequence, final int limit) {
+        return delegate.getTransactions(afterSequence, limit);
+    }
+
+    @Override
+    public List<Transaction> getAccountTransactions(final long accountNumber, final Instant from, final Instant to, final int limit)
+            throws AccountNotFoundException {
+        return delegate.getAccountTransactions(accountNumber, from, to, limit);
+    }
+
+    @Override
+    public Transaction getTransaction(final UUID uuid) throws TransactionNotFoundException {
+        return delegate.getTransaction(uuid);
+    }
+}
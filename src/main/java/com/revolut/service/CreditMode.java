@@ -0,0 +1,23 @@
+package com.revolut.service;
+
+import java.util.Locale;
+
+/**
+ * When the lock based engine credits the destination of a single transfer.
+ */
+public enum CreditMode {
+    /**
+     * Under the destination lock, together with the debit. The destination balance includes the credit by the time
+     * the transfer returns.
+     */
+    IMMEDIATE,
+    /**
+     * After the transfer has released the source, the only lock it takes, through a {@link DeferredCreditApplier}
+     * that coalesces the credits pending for each destination. Until it runs, the money is in neither balance.
+     */
+    DEFERRED;
+
+    public static CreditMode of(final String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,156 @@
+package com.revolut.service;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Amount;
+import com.revolut.exceptions.InvalidDepositException;
+import com.revolut.persistence.ConcurrentLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies credits the transfers of {@link CreditMode#DEFERRED} have already debited. Credits to one destination add
+ * up in its pending sum, and at most one task per destination is queued to apply it: that task takes the destination
+ * lock once for however many credits arrived in the meantime, deposits their sum and publishes the balance.
+ * <p>
+ * A transfer checks its credit with {@link #checkCredit} before debiting anything, counting what is already pending
+ * for the destination. Only credits to the same destination checked alongside can then still take its balance past
+ * what it can hold; the sum that cannot be deposited stays pending and is tried again with the next credit to the
+ * account, rather than being dropped. Closing refuses further transfers and applies whatever is pending before
+ * returning.
+ */
+public class DeferredCreditApplier implements AutoCloseable {
+    public static final int DEFAULT_THREADS = 1;
+
+    private static final Logger log = LoggerFactory.getLogger(DeferredCreditApplier.class);
+    private final ConcurrentLongHashMap<PendingCredits> pending = new ConcurrentLongHashMap<>();
+    private final ExecutorService executor;
+    private final LongAdder credits = new LongAdder();
+    private final LongAdder applications = new LongAdder();
+    private volatile boolean closed;
+
+    public DeferredCreditApplier(final int threads) {
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "credit-applier-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Fails the way crediting {@code amount} to {@code account} would, with the credits already pending for it, so a
+     * transfer can refuse it before debiting anything.
+     *
+     * @throws RejectedExecutionException once the applier is closed
+     */
+    void checkCredit(final Account account, final Amount amount) throws InvalidDepositException {
+        if (closed) {
+            throw new RejectedExecutionException("credit applier is closed");
+        }
+        account.checkDeposit(amount);
+        final PendingCredits credits = pending.get(account.getAccountNumber());
+        final long pendingMinorUnits = credits == null ? 0 : credits.minorUnits.get();
+        if (pendingMinorUnits > Long.MAX_VALUE - account.getBalanceMinorUnits() - amount.getMinorUnits()) {
+            throw new InvalidDepositException(String.format("money %s would overflow the balance of account %s with the credits pending",
+                    amount, account.getAccountNumber()));
+        }
+    }
+
+    /**
+     * Queues {@code amount}, already checked by {@link #checkCredit}, for {@code account}. A credit queued while the
+     * applier closes is applied by the calling thread.
+     */
+    void credit(final Account account, final Amount amount) {
+        PendingCredits credits = pending.get(account.getAccountNumber());
+        if (credits == null) {
+            final PendingCredits created = new PendingCredits(account);
+            credits = pending.putIfAbsent(account.getAccountNumber(), created);
+            if (credits == null) {
+                credits = created;
+            }
+        }
+        credits.minorUnits.addAndGet(amount.getMinorUnits());
+        this.credits.increment();
+        if (credits.scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(credits);
+            } catch (final RejectedExecutionException exception) {
+                credits.run();
+            }
+        }
+    }
+
+    /**
+     * @return credits queued so far
+     */
+    public long getCredits() {
+        return credits.sum();
+    }
+
+    /**
+     * @return deposits made to apply them, each covering one or more credits
+     */
+    public long getApplications() {
+        return applications.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class PendingCredits implements Runnable {
+        private final Account account;
+        private final AtomicLong minorUnits = new AtomicLong();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private PendingCredits(final Account account) {
+            this.account = account;
+        }
+
+        /**
+         * Applies the pending sum until none is left. A credit added after the sum was taken either finds this
+         * task still scheduled, and is picked up by the check after it unschedules, or schedules a new one. A sum
+         * that cannot be deposited goes back to pending, and the task stops until the next credit schedules it.
+         */
+        @Override
+        public void run() {
+            boolean failed = false;
+            do {
+                account.getLock().lock();
+                long sum = 0;
+                try {
+                    sum = minorUnits.getAndSet(0);
+                    if (sum != 0) {
+                        account.deposit(Amount.ofMinor(account.getCurrency(), sum));
+                        applications.increment();
+                    }
+                    account.publish();
+                } catch (final InvalidDepositException | RuntimeException exception) {
+                    minorUnits.addAndGet(sum);
+                    failed = true;
+                    log.error("cannot apply credits of {} minor units to account {}, keeping them pending",
+                            sum, account.getAccountNumber(), exception);
+                } finally {
+                    account.getLock().unlock();
+                }
+                scheduled.set(false);
+            } while (!failed && minorUnits.get() != 0 && scheduled.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.revolut.service;
+
+import com.revolut.domain.Account;
+import com.revolut.exceptions.AccountNotFoundException;
+import com.revolut.persistence.AccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Folds the slots of hot accounts into their published balance every {@code intervalMillis}. Credits to a hot
+ * account skip its lock and so never publish, see {@link TransactionServiceImpl#transfer}; without this, readers
+ * would only see them after the next withdrawal from the account.
+ * <p>
+ * Publishing takes the account lock, as every publisher must, but only if it is free: an account whose lock is held
+ * is being withdrawn from, and whoever holds it publishes on release anyway.
+ */
+public class HotAccountConsolidator implements AutoCloseable {
+    public static final long DEFAULT_INTERVAL_MILLIS = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(HotAccountConsolidator.class);
+    private final AccountRepository accountRepository;
+    private final long[] accountNumbers;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param accountNumbers the hot accounts, which need not have been created yet
+     */
+    public HotAccountConsolidator(final AccountRepository accountRepository, final long[] accountNumbers, final long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException(String.format("consolidation interval must be positive, was %s ms", intervalMillis));
+        }
+        this.accountRepository = accountRepository;
+        this.accountNumbers = accountNumbers.clone();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "hot-account-consolidator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scheduledConsolidation, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publishes every hot account whose lock is free.
+     */
+    void consolidate() {
+        for (final long accountNumber : accountNumbers) {
+            final Account account;
+            try {
+                account = accountRepository.getAccountByNumber(accountNumber);
+            } catch (final AccountNotFoundException ignored) {
+                continue;
+            }
+            final Lock lock = account.getLock();
+            if (lock.tryLock()) {
+                try {
+                    account.publish();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void scheduledConsolidation() {
+        try {
+            consolidate();
+        } catch (final RuntimeException exception) {
+            log.error("hot account consolidation failed", exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
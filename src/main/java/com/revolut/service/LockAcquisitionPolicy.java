@@ -0,0 +1,51 @@
+package com.revolut.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a transfer may wait for its account locks. Each attempt waits at most the current backoff for a lock,
+ * then releases everything it holds and pauses for a jittered backoff that doubles up to {@code maxBackoff}.
+ * Once the total deadline would be exceeded the transfer fails fast instead of queueing behind a hot account.
+ */
+public class LockAcquisitionPolicy {
+    public static final long DEFAULT_INITIAL_BACKOFF_MICROS = 50;
+    public static final long DEFAULT_MAX_BACKOFF_MICROS = 5_000;
+    public static final long DEFAULT_DEADLINE_MILLIS = 1_000;
+
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long deadlineNanos;
+
+    public LockAcquisitionPolicy(final long initialBackoff, final long maxBackoff, final long deadline, final TimeUnit unit) {
+        if (initialBackoff <= 0 || maxBackoff < initialBackoff || deadline <= 0) {
+            throw new IllegalArgumentException(String.format("invalid lock policy backoff %s..%s, deadline %s", initialBackoff, maxBackoff, deadline));
+        }
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+        this.deadlineNanos = unit.toNanos(deadline);
+    }
+
+    public static LockAcquisitionPolicy defaults() {
+        return withDeadline(DEFAULT_DEADLINE_MILLIS);
+    }
+
+    public static LockAcquisitionPolicy withDeadline(final long deadlineMillis) {
+        return new LockAcquisitionPolicy(
+                TimeUnit.MICROSECONDS.toNanos(DEFAULT_INITIAL_BACKOFF_MICROS),
+                TimeUnit.MICROSECONDS.toNanos(DEFAULT_MAX_BACKOFF_MICROS),
+                TimeUnit.MILLISECONDS.toNanos(deadlineMillis),
+                TimeUnit.NANOSECONDS);
+    }
+
+    public long getInitialBackoffNanos() {
+        return initialBackoffNanos;
+    }
+
+    public long getMaxBackoffNanos() {
+        return maxBackoffNanos;
+    }
+
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+}
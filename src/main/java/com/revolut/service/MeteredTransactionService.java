@@ -0,0 +1,73 @@
+package com.revolut.service;
+
+import com.revolut.domain.BatchMode;
+import com.revolut.domain.BatchResult;
+import com.revolut.domain.Page;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.TransferStatus;
+import com.revolut.exceptions.*;
+import com.revolut.metrics.TransferMetrics;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Counts the outcome of every transfer going through either transfer engine.
+ */
+public class MeteredTransactionService implements TransactionService {
+    private final TransactionService delegate;
+    private final TransferMetrics metrics;
+
+    public MeteredTransactionService(final TransactionService delegate, final TransferMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Transaction transfer(final Transaction transaction)
+            throws SameAccountTransferException, InsufficientFundsException, AccountNotFoundException, InvalidDepositException, TransferTimeoutException,
+            ExchangeRateNotFoundException {
+        try {
+            final Transaction transferred = delegate.transfer(transaction);
+            metrics.record(TransferStatus.OK);
+            return transferred;
+        } catch (final SameAccountTransferException | InsufficientFundsException | AccountNotFoundException
+                | InvalidDepositException | TransferTimeoutException | ExchangeRateNotFoundException
+                | UnsupportedOperationException exception) {
+            metrics.record(Transfers.statusOf(exception));
+            throw exception;
+        }
+    }
+
+    @Override
+    public BatchResult transferBatch(final List<Transaction> transactions, final BatchMode mode) {
+        final BatchResult result = delegate.transferBatch(transactions, mode);
+        for (final BatchResult.Item item : result.getResults()) {
+            metrics.record(item.getStatus());
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<Transaction> getAllTransactions() {
+        return delegate.getAllTransactions();
+    }
+
+    @Override
+    public Page<Transaction> getTransactions(final long afterSequence, final int limit) {
+        return delegate.getTransactions(afterSequence, limit);
+    }
+
+    @Override
+    public List<Transaction> getAccountTransactions(final long accountNumber, final Instant from, final Instant to, final int limit)
+            throws AccountNotFoundException {
+        return delegate.getAccountTransactions(accountNumber, from, to, limit);
+    }
+
+    @Override
+    public Transaction getTransaction(final UUID uuid) throws TransactionNotFoundException {
+        return delegate.getTransaction(uuid);
+    }
+}
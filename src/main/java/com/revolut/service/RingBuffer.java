@@ -0,0 +1,132 @@
+package com.revolut.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue for many producers and a single consumer, in the style of the LMAX disruptor: a preallocated
+ * array of slots addressed by an ever increasing sequence number. Producers claim a sequence with one CAS and
+ * publish their slot by writing its sequence number, so the consumer never sees a half-written slot and neither
+ * side locks or allocates.
+ * <p>
+ * A consumer that finds the buffer empty may {@link #await(long)} until a producer publishes; producers only pay
+ * for waking it while it is actually parked.
+ */
+public final class RingBuffer<E> {
+    private final Object[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private volatile Thread parkedConsumer;
+
+    public RingBuffer(final int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(String.format("capacity %s is not a power of two", capacity));
+        }
+        slots = new Object[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return {@code false} if the buffer is full
+     */
+    public boolean offer(final E element) {
+        if (element == null) {
+            throw new NullPointerException("null elements are not supported");
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        final int slot = (int) sequence & mask;
+        slots[slot] = element;
+        published.lazySet(slot, sequence);
+        final Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Offers {@code element} until there is room or {@code deadlineNanos}, a {@link System#nanoTime()} value,
+     * has passed.
+     *
+     * @return {@code false} if the buffer stayed full until the deadline
+     */
+    public boolean offer(final E element, final long deadlineNanos) {
+        int attempts = 0;
+        while (!offer(element)) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            backOff(++attempts);
+        }
+        return true;
+    }
+
+    /**
+     * Offers {@code element} until there is room. Only for producers that the consumer never waits on, or the two
+     * could wait on each other forever.
+     */
+    public void put(final E element) {
+        int attempts = 0;
+        while (!offer(element)) {
+            backOff(++attempts);
+        }
+    }
+
+    /**
+     * Only ever called from the consumer thread.
+     *
+     * @return the oldest element, or {@code null} if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        final long sequence = consumed;
+        final int slot = (int) sequence & mask;
+        if (published.get(slot) != sequence) {
+            return null;
+        }
+        final E element = (E) slots[slot];
+        slots[slot] = null;
+        consumed = sequence + 1;
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return published.get((int) consumed & mask) != consumed;
+    }
+
+    /**
+     * Parks the consumer thread until an element is published or {@code timeoutNanos} pass.
+     */
+    public void await(final long timeoutNanos) {
+        parkedConsumer = Thread.currentThread();
+        try {
+            if (isEmpty()) {
+                LockSupport.parkNanos(this, timeoutNanos);
+            }
+        } finally {
+            parkedConsumer = null;
+        }
+    }
+
+    private static void backOff(final int attempts) {
+        if (attempts < 64) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(10_000);
+        }
+    }
+}
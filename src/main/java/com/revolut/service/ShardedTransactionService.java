@@ -0,0 +1,684 @@
+package com.revolut.service;
+
+import com.revolut.domain.*;
+import com.revolut.exceptions.*;
+import com.revolut.fx.FxRateCache;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer engine without account locks. Accounts are partitioned into shards by account number, and each shard
+ * is owned by one thread that takes commands from a {@link RingBuffer} and is the only thread changing the
+ * balances of its accounts. A transfer between two accounts of the same shard is a single command applied
+ * start to finish by that thread.
+ * <p>
+ * A transfer between shards is applied in two phases coordinated by the calling thread. First every shard
+ * involved reserves, that is withdraws, what its accounts need to cover their outgoing transfers; if any shard
+ * cannot, the shards that did are refunded and nothing is applied. Otherwise every shard credits its accounts
+ * with the rest. Shard threads never wait for each other, only callers wait for shards. While a transfer is
+ * between the phases its money is in flight: already withdrawn and not yet deposited.
+ * <p>
+ * A command that has waited in its ring buffer beyond the deadline is failed with {@link TransferTimeoutException}
+ * without being applied, as is one that finds its ring buffer full until then. Commands of the second phase and
+ * refunds have no deadline, they always complete.
+ * <p>
+ * Balances are changed outside of {@link Account#getLock()}, so this engine cannot be combined with a journal,
+ * which relies on those locks to record balances consistently.
+ */
+public class ShardedTransactionService implements TransactionService, AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+    private static final int IDLE_SPINS = 128;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Logger log = LoggerFactory.getLogger(TransactionService.class);
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final long deadlineNanos;
+    private final Shard[] shards;
+    private final FxRateCache fxRates;
+
+    public ShardedTransactionService(final AccountRepository accountRepository, final TransactionRepository transactionRepository,
+                                     final int shardCount, final int queueCapacity, final long deadlineMillis) {
+        this(accountRepository, transactionRepository, shardCount, queueCapacity, deadlineMillis, null);
+    }
+
+    /**
+     * @param fxRates converts transfers between accounts in different currencies, or {@code null} to reject them
+     */
+    public ShardedTransactionService(final AccountRepository accountRepository, final TransactionRepository transactionRepository,
+                                     final int shardCount, final int queueCapacity, final long deadlineMillis,
+                                     final FxRateCache fxRates) {
+        if (shardCount <= 0 || deadlineMillis <= 0) {
+            throw new IllegalArgumentException(String.format("invalid shard count %s or deadline %s ms", shardCount, deadlineMillis));
+        }
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        this.fxRates = fxRates;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+        for (final Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    @Override
+    public Transaction transfer(final Transaction transaction)
+            throws SameAccountTransferException, InsufficientFundsException, AccountNotFoundException, InvalidDepositException, TransferTimeoutException,
+            ExchangeRateNotFoundException {
+        final Amount amount = transaction.getAmount();
+        if (log.isDebugEnabled()) {
+            log.debug("transfer initiated : {}, money: {}, src: {}, dst: {} ", transaction, amount, transaction.getFromAccountNumber(), transaction.getToAccountNumber());
+        }
+
+        final Account src = accountRepository.getAccountByNumber(transaction.getFromAccountNumber());
+        final Account dst = accountRepository.getAccountByNumber(transaction.getToAccountNumber());
+        final Amount credit = Transfers.creditOf(fxRates, src, dst, amount);
+        dst.checkDeposit(credit);
+
+        final long deadline = System.nanoTime() + deadlineNanos;
+        final Shard shard = shardOf(src);
+        if (shard == shardOf(dst)) {
+            rethrow(outcome(submit(shard, deadline, () -> {
+                transactionRepository.checkWritable();
+                dst.checkDeposit(credit);
+                src.withdraw(amount);
+                dst.deposit(credit);
+                try {
+                    transactionRepository.persistTransaction(transaction);
+                } catch (final RuntimeException exception) {
+                    Transfers.reverse(transaction, src, dst, amount, credit);
+                    throw exception;
+                }
+                src.publish();
+                dst.publish();
+                transaction.getIsExecuting().set(false);
+            })));
+        } else {
+            transactionRepository.checkWritable();
+            final List<Transaction> transactions = Collections.singletonList(transaction);
+            final TwoPhaseTransfer twoPhase = new TwoPhaseTransfer(transactions, new Account[]{src}, new Account[]{dst},
+                    new Amount[]{credit}, deadline);
+            rethrow(twoPhase.execute());
+            transactionRepository.persistTransactions(transactions);
+            transaction.getIsExecuting().set(false);
+        }
+        transactionRepository.awaitDurable();
+        return transaction;
+    }
+
+    /**
+     * An atomic batch whose accounts all belong to one shard is applied by that shard like a single transfer;
+     * one spanning shards goes through the two phases as a whole. A best-effort batch first applies the transfers
+     * within a shard, each shard in batch order, then the transfers between shards one after another.
+     */
+    @Override
+    public BatchResult transferBatch(final List<Transaction> transactions, final BatchMode mode) {
+        final int size = transactions.size();
+        final TransferStatus[] statuses = new TransferStatus[size];
+        final String[] messages = new String[size];
+        final Account[] sources = new Account[size];
+        final Account[] destinations = new Account[size];
+        final Amount[] credits = new Amount[size];
+        final boolean rejected = Transfers.resolve(accountRepository, fxRates, transactions, sources, destinations, credits, statuses, messages);
+        final long deadline = System.nanoTime() + deadlineNanos;
+
+        if (mode == BatchMode.ATOMIC && rejected) {
+            Transfers.abortRemaining(statuses);
+        } else if (mode == BatchMode.ATOMIC) {
+            applyAtomic(transactions, sources, destinations, credits, statuses, messages, deadline);
+        } else {
+            applyBestEffort(transactions, sources, destinations, credits, statuses, messages, deadline);
+        }
+
+        boolean committed = false;
+        for (final TransferStatus status : statuses) {
+            committed |= status == TransferStatus.OK;
+        }
+        if (committed) {
+            transactionRepository.awaitDurable();
+        }
+        log.debug("batch of {} transfers in mode {} committed: {}", size, mode, committed);
+        return Transfers.batchResult(mode, committed, transactions, statuses, messages);
+    }
+
+    private void applyAtomic(final List<Transaction> transactions, final Account[] sources, final Account[] destinations,
+                             final Amount[] credits, final TransferStatus[] statuses, final String[] messages, final long deadline) {
+        final Shard shard = shardOf(sources[0]);
+        boolean sameShard = true;
+        for (int i = 0; i < transactions.size(); i++) {
+            sameShard &= shardOf(sources[i]) == shard && shardOf(destinations[i]) == shard;
+        }
+        if (sameShard) {
+            final Throwable failure = outcome(applyOnShard(shard, transactions, BatchMode.ATOMIC, sources, destinations, credits, statuses, messages, deadline));
+            if (failure != null) {
+                failAll(statuses, messages, failure);
+            }
+            return;
+        }
+        final Throwable failure = new TwoPhaseTransfer(transactions, sources, destinations, credits, deadline).execute();
+        if (failure == null) {
+            Arrays.fill(statuses, TransferStatus.OK);
+            persist(transactions);
+        } else if (failure instanceof InsufficientFundsFailure) {
+            Transfers.abortRemaining(statuses);
+            final InsufficientFundsFailure insufficient = (InsufficientFundsFailure) failure;
+            statuses[insufficient.item] = TransferStatus.INSUFFICIENT_FUNDS;
+            messages[insufficient.item] = insufficient.exception.getMessage();
+        } else {
+            failAll(statuses, messages, failure);
+        }
+    }
+
+    private void applyBestEffort(final List<Transaction> transactions, final Account[] sources, final Account[] destinations,
+                                 final Amount[] credits, final TransferStatus[] statuses, final String[] messages, final long deadline) {
+        final Map<Shard, List<Integer>> withinShards = new LinkedHashMap<>();
+        final List<Integer> betweenShards = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            if (statuses[i] != null) {
+                continue;
+            }
+            final Shard shard = shardOf(sources[i]);
+            if (shard == shardOf(destinations[i])) {
+                withinShards.computeIfAbsent(shard, s -> new ArrayList<>()).add(i);
+            } else {
+                betweenShards.add(i);
+            }
+        }
+
+        final List<SubBatch> subBatches = new ArrayList<>();
+        for (final Map.Entry<Shard, List<Integer>> entry : withinShards.entrySet()) {
+            subBatches.add(new SubBatch(entry.getKey(), entry.getValue(), transactions, sources, destinations, credits, deadline));
+        }
+        for (final SubBatch subBatch : subBatches) {
+            subBatch.await();
+            subBatch.copyInto(statuses, messages);
+        }
+
+        for (final int i : betweenShards) {
+            final List<Transaction> single = Collections.singletonList(transactions.get(i));
+            final Throwable failure = new TwoPhaseTransfer(single, new Account[]{sources[i]}, new Account[]{destinations[i]},
+                    new Amount[]{credits[i]}, deadline).execute();
+            if (failure == null) {
+                statuses[i] = TransferStatus.OK;
+                persist(single);
+            } else {
+                final Throwable cause = failure instanceof InsufficientFundsFailure ? ((InsufficientFundsFailure) failure).exception : failure;
+                statuses[i] = statusOf(cause);
+                messages[i] = cause.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Applies the unresolved transfers of a batch on {@code shard}, which owns all their accounts.
+     */
+    private CompletableFuture<Void> applyOnShard(final Shard shard, final List<Transaction> transactions, final BatchMode mode,
+                                                 final Account[] sources, final Account[] destinations, final Amount[] credits,
+                                                 final TransferStatus[] statuses, final String[] messages, final long deadline) {
+        return submit(shard, deadline, () -> {
+            transactionRepository.checkWritable();
+            Transfers.apply(transactions, mode, sources, destinations, credits, statuses, messages);
+            try {
+                persist(Transfers.applied(transactions, statuses));
+            } catch (final RuntimeException exception) {
+                Transfers.rollBack(transactions, sources, destinations, credits, statuses, transactions.size());
+                throw exception;
+            }
+            Transfers.publish(sources, destinations);
+        });
+    }
+
+    private void persist(final List<Transaction> applied) {
+        transactionRepository.persistTransactions(applied);
+        for (final Transaction transaction : applied) {
+            transaction.getIsExecuting().set(false);
+        }
+    }
+
+    private static void failAll(final TransferStatus[] statuses, final String[] messages, final Throwable failure) {
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == null || statuses[i] == TransferStatus.OK) {
+                statuses[i] = statusOf(failure);
+                messages[i] = failure.getMessage();
+            }
+        }
+    }
+
+    private static TransferStatus statusOf(final Throwable failure) {
+        if (failure instanceof Exception) {
+            return Transfers.statusOf((Exception) failure);
+        }
+        throw new IllegalStateException("unexpected transfer failure", failure);
+    }
+
+    private Shard shardOf(final Account account) {
+        return shards[(int) Long.remainderUnsigned(account.getAccountNumber(), shards.length)];
+    }
+
+    private CompletableFuture<Void> submit(final Shard shard, final long deadline, final Command command) {
+        final Task task = new Task(command, deadline);
+        if (deadline == NO_DEADLINE) {
+            shard.tasks.put(task);
+        } else if (!shard.tasks.offer(task, deadline)) {
+            task.done.completeExceptionally(timeout());
+        }
+        return task.done;
+    }
+
+    private TransferTimeoutException timeout() {
+        return new TransferTimeoutException(String.format("transfer queue is busy, transfer timed out after %s ms",
+                TimeUnit.NANOSECONDS.toMillis(deadlineNanos)));
+    }
+
+    /**
+     * @return {@code null} once {@code future} completed normally, otherwise why it failed
+     */
+    private static Throwable outcome(final CompletableFuture<Void> future) {
+        try {
+            future.join();
+            return null;
+        } catch (final CompletionException exception) {
+            return exception.getCause();
+        }
+    }
+
+    private static void rethrow(final Throwable failure)
+            throws InsufficientFundsException, InvalidDepositException, TransferTimeoutException {
+        if (failure == null) {
+            return;
+        }
+        final Throwable cause = failure instanceof InsufficientFundsFailure ? ((InsufficientFundsFailure) failure).exception : failure;
+        if (cause instanceof InsufficientFundsException) {
+            throw (InsufficientFundsException) cause;
+        } else if (cause instanceof InvalidDepositException) {
+            throw (InvalidDepositException) cause;
+        } else if (cause instanceof TransferTimeoutException) {
+            throw (TransferTimeoutException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException("unexpected transfer failure", cause);
+    }
+
+    @Override
+    public Collection<Transaction> getAllTransactions() {
+        return transactionRepository.getAllTransactions();
+    }
+
+    @Override
+    public Page<Transaction> getTransactions(final long afterSequence, final int limit) {
+        return transactionRepository.getTransactions(afterSequence, limit);
+    }
+
+    @Override
+    public List<Transaction> getAccountTransactions(final long accountNumber, final Instant from, final Instant to, final int limit)
+            throws AccountNotFoundException {
+        accountRepository.getAccountByNumber(accountNumber);
+        return transactionRepository.getAccountTransactions(accountNumber, from, to, limit);
+    }
+
+    @Override
+    public Transaction getTransaction(final UUID uuid) throws TransactionNotFoundException {
+        return transactionRepository.getTransaction(uuid);
+    }
+
+    /**
+     * Stops the shard threads once they have applied every command already queued.
+     */
+    @Override
+    public void close() {
+        for (final Shard shard : shards) {
+            shard.running = false;
+            shard.tasks.offer(new Task(() -> {
+            }, NO_DEADLINE));
+        }
+        for (final Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Command {
+        void execute() throws Exception;
+    }
+
+    private final class Task {
+        private final Command command;
+        private final long deadline;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Task(final Command command, final long deadline) {
+            this.command = command;
+            this.deadline = deadline;
+        }
+
+        private void run() {
+            if (deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0) {
+                done.completeExceptionally(timeout());
+                return;
+            }
+            try {
+                command.execute();
+                done.complete(null);
+            } catch (final Throwable failure) {
+                done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static final class Shard implements Runnable {
+        private final RingBuffer<Task> tasks;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Shard(final int index, final int queueCapacity) {
+            tasks = new RingBuffer<>(queueCapacity);
+            thread = new Thread(this, "transfer-shard-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (running || !tasks.isEmpty()) {
+                final Task task = tasks.poll();
+                if (task != null) {
+                    task.run();
+                    idle = 0;
+                } else if (++idle < IDLE_SPINS) {
+                    Thread.yield();
+                } else {
+                    tasks.await(IDLE_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    /**
+     * The transfers of a best-effort batch within one shard, applied on it with their own status arrays.
+     */
+    private final class SubBatch {
+        private final List<Integer> items;
+        private final TransferStatus[] statuses;
+        private final String[] messages;
+        private final CompletableFuture<Void> done;
+
+        private SubBatch(final Shard shard, final List<Integer> items, final List<Transaction> transactions,
+                         final Account[] sources, final Account[] destinations, final Amount[] credits, final long deadline) {
+            this.items = items;
+            final int size = items.size();
+            final List<Transaction> subTransactions = new ArrayList<>(size);
+            final Account[] subSources = new Account[size];
+            final Account[] subDestinations = new Account[size];
+            final Amount[] subCredits = new Amount[size];
+            for (int i = 0; i < size; i++) {
+                subTransactions.add(transactions.get(items.get(i)));
+                subSources[i] = sources[items.get(i)];
+                subDestinations[i] = destinations[items.get(i)];
+                subCredits[i] = credits[items.get(i)];
+            }
+            statuses = new TransferStatus[size];
+            messages = new String[size];
+            done = applyOnShard(shard, subTransactions, BatchMode.BEST_EFFORT, subSources, subDestinations, subCredits,
+                    statuses, messages, deadline);
+        }
+
+        private void await() {
+            final Throwable failure = outcome(done);
+            if (failure != null) {
+                failAll(statuses, messages, failure);
+            }
+        }
+
+        private void copyInto(final TransferStatus[] allStatuses, final String[] allMessages) {
+            for (int i = 0; i < items.size(); i++) {
+                allStatuses[items.get(i)] = statuses[i];
+                allMessages[items.get(i)] = messages[i];
+            }
+        }
+    }
+
+    /**
+     * The transfers of one side of a transfer between shards: per account the amounts it gains and loses, in batch
+     * order.
+     */
+    private final class TwoPhaseTransfer {
+        private final Map<Shard, List<Leg>> legsByShard = new LinkedHashMap<>();
+        private final long deadline;
+
+        private TwoPhaseTransfer(final List<Transaction> transactions, final Account[] sources, final Account[] destinations,
+                                 final Amount[] credits, final long deadline) {
+            this.deadline = deadline;
+            final Map<Long, Leg> legs = new LinkedHashMap<>();
+            for (int i = 0; i < transactions.size(); i++) {
+                final long amount = transactions.get(i).getAmount().getMinorUnits();
+                final long credit = credits[i].getMinorUnits();
+                final Account src = sources[i];
+                final Account dst = destinations[i];
+                legs.computeIfAbsent(src.getAccountNumber(), number -> new Leg(src)).add(i, -amount);
+                legs.computeIfAbsent(dst.getAccountNumber(), number -> new Leg(dst)).add(i, credit);
+            }
+            for (final Leg leg : legs.values()) {
+                legsByShard.computeIfAbsent(shardOf(leg.account), shard -> new ArrayList<>()).add(leg);
+            }
+        }
+
+        /**
+         * @return {@code null} once every transfer is applied, otherwise why none is
+         */
+        private Throwable execute() {
+            final Map<Shard, CompletableFuture<Void>> reservations = new LinkedHashMap<>();
+            for (final Map.Entry<Shard, List<Leg>> entry : legsByShard.entrySet()) {
+                final List<Leg> legs = entry.getValue();
+                reservations.put(entry.getKey(), submit(entry.getKey(), deadline, () -> reserve(legs)));
+            }
+            Throwable failure = null;
+            final List<Shard> reserved = new ArrayList<>();
+            for (final Map.Entry<Shard, CompletableFuture<Void>> entry : reservations.entrySet()) {
+                final Throwable shardFailure = outcome(entry.getValue());
+                if (shardFailure == null) {
+                    reserved.add(entry.getKey());
+                } else {
+                    failure = earliest(failure, shardFailure);
+                }
+            }
+
+            if (failure != null) {
+                complete(reserved, this::refund);
+                return failure;
+            }
+            complete(legsByShard.keySet(), this::credit);
+            return null;
+        }
+
+        /**
+         * Runs the second phase, or the refunds, on {@code shards}, which cannot fail short of a bug.
+         */
+        private void complete(final Collection<Shard> shards, final LegsCommand command) {
+            final List<CompletableFuture<Void>> completions = new ArrayList<>();
+            for (final Shard shard : shards) {
+                final List<Leg> legs = legsByShard.get(shard);
+                completions.add(submit(shard, NO_DEADLINE, () -> command.execute(legs)));
+            }
+            for (final CompletableFuture<Void> completion : completions) {
+                final Throwable failure = outcome(completion);
+                if (failure != null) {
+                    throw new IllegalStateException("cannot complete transfer between shards, money is in flight", failure);
+                }
+            }
+        }
+
+        /**
+         * Withdraws from each account the most its transfers take from it at any point, after checking that every
+         * account can cover that and hold everything it gains, so a shard reserves either all of its part or nothing.
+         * Credits the shard applies to an account between the two phases can still take it over what it can hold.
+         */
+        private void reserve(final List<Leg> legs) throws InsufficientFundsFailure, InsufficientFundsException, InvalidDepositException {
+            for (final Leg leg : legs) {
+                if (leg.overflows(leg.account.getBalanceMinorUnits())) {
+                    throw new InvalidDepositException(String.format("transfers to account %s would overflow its balance",
+                            leg.account.getAccountNumber()));
+                }
+            }
+            InsufficientFundsFailure failure = null;
+            for (final Leg leg : legs) {
+                final int item = leg.firstUncovered(leg.account.getBalanceMinorUnits());
+                if (item >= 0 && (failure == null || item < failure.item)) {
+                    failure = new InsufficientFundsFailure(item, new InsufficientFundsException(
+                            String.format("Account %s does not have sufficient funds", leg.account.getAccountNumber())));
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            for (final Leg leg : legs) {
+                leg.reserved = leg.shortfall();
+                if (leg.reserved > 0) {
+                    leg.account.withdraw(Amount.ofMinor(leg.account.getCurrency(), leg.reserved));
+                }
+            }
+        }
+
+        private void credit(final List<Leg> legs) throws InvalidDepositException {
+            for (final Leg leg : legs) {
+                final long credit = Math.addExact(leg.net(), leg.reserved);
+                if (credit > 0) {
+                    leg.account.deposit(Amount.ofMinor(leg.account.getCurrency(), credit));
+                }
+                leg.account.publish();
+            }
+        }
+
+        private void refund(final List<Leg> legs) throws InvalidDepositException {
+            for (final Leg leg : legs) {
+                if (leg.reserved > 0) {
+                    leg.account.deposit(Amount.ofMinor(leg.account.getCurrency(), leg.reserved));
+                }
+                leg.account.publish();
+            }
+        }
+
+        private Throwable earliest(final Throwable current, final Throwable candidate) {
+            if (current == null) {
+                return candidate;
+            }
+            if (current instanceof InsufficientFundsFailure && candidate instanceof InsufficientFundsFailure
+                    && ((InsufficientFundsFailure) candidate).item < ((InsufficientFundsFailure) current).item) {
+                return candidate;
+            }
+            return current;
+        }
+    }
+
+    @FunctionalInterface
+    private interface LegsCommand {
+        void execute(List<Leg> legs) throws Exception;
+    }
+
+    /**
+     * The amounts one account gains and loses in a transfer between shards, in minor units and batch order.
+     * {@link #reserved} is written by the owning shard in the first phase and read by it in the second.
+     */
+    private static final class Leg {
+        private final Account account;
+        private int[] items = new int[2];
+        private long[] deltas = new long[2];
+        private int size;
+        private long reserved;
+
+        private Leg(final Account account) {
+            this.account = account;
+        }
+
+        private void add(final int item, final long delta) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                deltas = Arrays.copyOf(deltas, size * 2);
+            }
+            items[size] = item;
+            deltas[size++] = delta;
+        }
+
+        private long net() {
+            long net = 0;
+            for (int i = 0; i < size; i++) {
+                net = Math.addExact(net, deltas[i]);
+            }
+            return net;
+        }
+
+        /**
+         * @return how far the running balance change drops below zero at its lowest
+         */
+        private long shortfall() {
+            long running = 0;
+            long lowest = 0;
+            for (int i = 0; i < size; i++) {
+                running = Math.addExact(running, deltas[i]);
+                lowest = Math.min(lowest, running);
+            }
+            return -lowest;
+        }
+
+        /**
+         * @return whether {@code balance} plus everything the account gains is more than it can hold
+         */
+        private boolean overflows(final long balance) {
+            long highest = balance;
+            for (int i = 0; i < size; i++) {
+                if (deltas[i] > 0) {
+                    if (deltas[i] > Long.MAX_VALUE - highest) {
+                        return true;
+                    }
+                    highest += deltas[i];
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the first transfer that would take {@code balance} below zero, or {@code -1}
+         */
+        private int firstUncovered(final long balance) {
+            long running = balance;
+            for (int i = 0; i < size; i++) {
+                running = Math.addExact(running, deltas[i]);
+                if (running < 0) {
+                    return items[i];
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A shard could not reserve what transfer {@link #item} of the batch, and the ones before it, need.
+     */
+    private static final class InsufficientFundsFailure extends Exception {
+        private final int item;
+        private final InsufficientFundsException exception;
+
+        private InsufficientFundsFailure(final int item, final InsufficientFundsException exception) {
+            super(exception.getMessage(), exception, false, false);
+            this.item = item;
+            this.exception = exception;
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package com.revolut.service;
 
+import com.revolut.domain.BatchMode;
+import com.revolut.domain.BatchResult;
+import com.revolut.domain.Page;
 import com.revolut.domain.Transaction;
 import com.revolut.exceptions.*;
 
+import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface TransactionService {
     Transaction getTransaction(UUID uuid) throws TransactionNotFoundException;
 
-    Transaction transfer(Transaction t) throws SameAccountTransferException, InsufficientFundsException, AccountNotFoundException, InvalidDepositException;
+    Transaction transfer(Transaction t) throws SameAccountTransferException, InsufficientFundsException, AccountNotFoundException, InvalidDepositException, TransferTimeoutException,
+            ExchangeRateNotFoundException;
+
+    BatchResult transferBatch(List<Transaction> transactions, BatchMode mode);
 
     Collection<Transaction> getAllTransactions();
+
+    Page<Transaction> getTransactions(long afterSequence, int limit);
+
+    List<Transaction> getAccountTransactions(long accountNumber, Instant from, Instant to, int limit) throws AccountNotFoundException;
 }
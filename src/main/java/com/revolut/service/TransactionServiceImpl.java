@@ -1,87 +1,293 @@
 package com.revolut.service;
 
-import com.revolut.domain.Account;
-import com.revolut.domain.Transaction;
+import com.revolut.domain.*;
 import com.revolut.exceptions.*;
+import com.revolut.fx.FxRateCache;
+import com.revolut.metrics.LockContentionMetrics;
 import com.revolut.persistence.AccountRepository;
 import com.revolut.persistence.TransactionRepository;
-import org.joda.money.CurrencyUnit;
-import org.joda.money.Money;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
-import java.util.UUID;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 
 public class TransactionServiceImpl implements TransactionService {
-    private static final long LOCK_TIMEOUT = 100;
     private final Logger log = LoggerFactory.getLogger(TransactionService.class);
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final LockAcquisitionPolicy lockPolicy;
+    private final LockContentionMetrics contentionMetrics;
+    private final DeferredCreditApplier creditApplier;
+    private final FxRateCache fxRates;
 
     public TransactionServiceImpl(final AccountRepository accountRepository, final TransactionRepository transactionRepository) {
+        this(accountRepository, transactionRepository, LockAcquisitionPolicy.defaults(), new LockContentionMetrics());
+    }
+
+    public TransactionServiceImpl(final AccountRepository accountRepository,
+                                  final TransactionRepository transactionRepository,
+                                  final LockAcquisitionPolicy lockPolicy,
+                                  final LockContentionMetrics contentionMetrics) {
+        this(accountRepository, transactionRepository, lockPolicy, contentionMetrics, null, null);
+    }
+
+    /**
+     * @param creditApplier applies the credits of single transfers, see {@link CreditMode#DEFERRED}, or
+     *                      {@code null} to credit under the destination lock
+     * @param fxRates       converts transfers between accounts in different currencies, or {@code null} to reject them
+     */
+    public TransactionServiceImpl(final AccountRepository accountRepository,
+                                  final TransactionRepository transactionRepository,
+                                  final LockAcquisitionPolicy lockPolicy,
+                                  final LockContentionMetrics contentionMetrics,
+                                  final DeferredCreditApplier creditApplier,
+                                  final FxRateCache fxRates) {
         this.accountRepository = accountRepository;
         this.transactionRepository = transactionRepository;
+        this.lockPolicy = lockPolicy;
+        this.contentionMetrics = contentionMetrics;
+        this.creditApplier = creditApplier;
+        this.fxRates = fxRates;
     }
 
+    /**
+     * Locks the two accounts in ascending account number order, so that two transfers touching the same pair of
+     * accounts in opposite directions can never deadlock, while transfers between unrelated accounts never contend.
+     * Balances are updated in place under those locks. Lock acquisition is bounded by the {@link LockAcquisitionPolicy} deadline.
+     * Between accounts in different currencies the destination is credited the amount converted at the rates current
+     * when the transfer started, read before taking any lock.
+     * <p>
+     * A hot destination, see {@link Account#isHot()}, is not locked at all: the credit goes to one of its slots, so
+     * transfers into a treasury or merchant account only contend on their sources. Its published balance catches up
+     * when the {@link HotAccountConsolidator} or the next withdrawal from it publishes.
+     * <p>
+     * With a {@link DeferredCreditApplier} the destination is not locked either: once the debit is done and the
+     * source released, the credit is queued to the applier, which lands it shortly after the transfer returns.
+     */
     @Override
     public Transaction transfer(final Transaction transaction)
-            throws SameAccountTransferException, InsufficientFundsException, AccountNotFoundException, InvalidDepositException {
+            throws SameAccountTransferException, InsufficientFundsException, AccountNotFoundException, InvalidDepositException, TransferTimeoutException,
+            ExchangeRateNotFoundException {
 
         final long srcAccountId = transaction.getFromAccountNumber();
         final long dstAccountId = transaction.getToAccountNumber();
-        final Money amount = transaction.getMoney();
+        final Amount amount = transaction.getAmount();
 
         final AtomicBoolean isExecuting = transaction.getIsExecuting();
-        log.info("transfer initiated : {}, money: {}, src: {}, dst: {} ", transaction, amount, srcAccountId, dstAccountId);
-
-        while (isExecuting.get()) {
-            Account src, dst;
-            synchronized (this) {
-                src = accountRepository.getAccountByNumber(srcAccountId);
-                dst = accountRepository.getAccountByNumber(dstAccountId);
-                if (src == dst) {
-                    throw new SameAccountTransferException(String.format("transfer between the same account %s", src.getAccountNumber()));
-                }
-                final CurrencyUnit srcCurrency = src.getMoney().getCurrencyUnit();
-                final CurrencyUnit dstCurrency = dst.getMoney().getCurrencyUnit();
-                if (srcCurrency != dstCurrency) {
-                    throw new UnsupportedOperationException(String.format("transfer between the different currency %s, %s", srcCurrency, dstCurrency));
+        if (log.isDebugEnabled()) {
+            log.debug("transfer initiated : {}, money: {}, src: {}, dst: {} ", transaction, amount, srcAccountId, dstAccountId);
+        }
+
+        final Account src = accountRepository.getAccountByNumber(srcAccountId);
+        final Account dst = accountRepository.getAccountByNumber(dstAccountId);
+        final Amount credit = Transfers.creditOf(fxRates, src, dst, amount);
+
+        final boolean deferCredit = creditApplier != null && !dst.isHot();
+        final Account[] ordered;
+        if (dst.isHot() || deferCredit) {
+            ordered = new Account[]{src};
+        } else {
+            ordered = srcAccountId < dstAccountId ? new Account[]{src, dst} : new Account[]{dst, src};
+        }
+        lockInOrder(ordered);
+        try {
+            log.debug("current thread {} has lock", Thread.currentThread().getName());
+            transactionRepository.checkWritable();
+            if (deferCredit) {
+                creditApplier.checkCredit(dst, credit);
+            } else {
+                dst.checkDeposit(credit);
+            }
+            src.withdraw(amount);
+            if (!deferCredit) {
+                try {
+                    dst.deposit(credit);
+                } catch (final InvalidDepositException exception) {
+                    // only a hot destination, credited alongside, can get here
+                    Transfers.refund(transaction, src, amount);
+                    throw exception;
                 }
+            }
 
+            try {
+                transactionRepository.persistTransaction(transaction);
+            } catch (final RuntimeException exception) {
+                // the journal failed since the check above, and no balance may keep a change it does not record
+                reverse(transaction, src, dst, amount, credit, deferCredit);
+                throw exception;
             }
+            isExecuting.set(false);
+        } finally {
+            unlock(ordered);
+            log.debug("current thread {} has unlocked", Thread.currentThread().getName());
+        }
+        if (deferCredit) {
+            creditApplier.credit(dst, credit);
+        }
+        transactionRepository.awaitDurable();
+
+        return transaction;
+    }
+
+    /**
+     * Resolves every transfer up front, then locks all accounts of the batch once, in ascending account number
+     * order, and applies the transfers in batch order while holding them. An atomic batch is rejected before
+     * locking if any transfer is invalid, and transfers already applied are reversed if a later one fails. Hot
+     * destinations are locked too, so that reversing a credit to one cannot find it already withdrawn, and for the
+     * same reason batch credits are never deferred.
+     */
+    @Override
+    public BatchResult transferBatch(final List<Transaction> transactions, final BatchMode mode) {
+        final int size = transactions.size();
+        final TransferStatus[] statuses = new TransferStatus[size];
+        final String[] messages = new String[size];
+        final Account[] sources = new Account[size];
+        final Account[] destinations = new Account[size];
+        final Amount[] credits = new Amount[size];
+        final boolean rejected = Transfers.resolve(accountRepository, fxRates, transactions, sources, destinations, credits, statuses, messages);
+        final Map<Long, Account> involved = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            if (statuses[i] == null) {
+                involved.put(sources[i].getAccountNumber(), sources[i]);
+                involved.put(destinations[i].getAccountNumber(), destinations[i]);
+            }
+        }
+
+        boolean committed = false;
+        if (mode == BatchMode.ATOMIC && rejected) {
+            Transfers.abortRemaining(statuses);
+        } else if (!involved.isEmpty()) {
+            final Account[] ordered = involved.values().toArray(new Account[0]);
             try {
-                if (src.getLock().tryLock(LOCK_TIMEOUT, TimeUnit.NANOSECONDS)
-                        &&
-                        dst.getLock().tryLock(LOCK_TIMEOUT, TimeUnit.NANOSECONDS)
-                )
-                    try {
-
-                        log.debug("current thread {} has lock", Thread.currentThread().getName());
-                        final Account srcUpdated = src.withdraw(amount);
-                        final Account dstUpdated = dst.deposit(amount);
-
-                        accountRepository.updateAccount(src, srcUpdated);
-                        accountRepository.updateAccount(dst, dstUpdated);
-
-                        transactionRepository.persistTransaction(transaction);
-                        isExecuting.set(false);
-                    } finally {
-                        src.getLock().unlock();
-                        dst.getLock().unlock();
-                        log.debug("current thread {} has unlocked", Thread.currentThread().getName());
+                lockInOrder(ordered);
+            } catch (final TransferTimeoutException exception) {
+                for (int i = 0; i < size; i++) {
+                    if (statuses[i] == null) {
+                        statuses[i] = TransferStatus.TIMEOUT;
+                        messages[i] = exception.getMessage();
                     }
-            } catch (final InterruptedException e) {
-                log.error("Thread {} is interrupted {}", Thread.currentThread().getName(), e);
-                isExecuting.set(false);
-                Thread.currentThread().interrupt();
-                throw new RuntimeException(e);
+                }
+                return Transfers.batchResult(mode, false, transactions, statuses, messages);
+            }
+            try {
+                transactionRepository.checkWritable();
+                committed = Transfers.apply(transactions, mode, sources, destinations, credits, statuses, messages);
+                final List<Transaction> applied = Transfers.applied(transactions, statuses);
+                try {
+                    transactionRepository.persistTransactions(applied);
+                } catch (final RuntimeException exception) {
+                    Transfers.rollBack(transactions, sources, destinations, credits, statuses, size);
+                    throw exception;
+                }
+                for (final Transaction transaction : applied) {
+                    transaction.getIsExecuting().set(false);
+                }
+            } finally {
+                unlock(ordered);
+            }
+            if (committed) {
+                transactionRepository.awaitDurable();
             }
         }
 
-        return transaction;
+        log.debug("batch of {} transfers in mode {} committed: {}", size, mode, committed);
+        return Transfers.batchResult(mode, committed, transactions, statuses, messages);
+    }
+
+    /**
+     * Reverses a transfer that could not be persisted, while its locks are still held. A deferred credit has not
+     * been handed to the applier yet, so only the source is refunded. A hot destination, which the transfer does
+     * not lock, is locked for the reversal: every other lock is acquired with a deadline, so waiting for it while
+     * holding the source cannot deadlock.
+     */
+    private static void reverse(final Transaction transaction, final Account src, final Account dst, final Amount amount,
+                                final Amount credit, final boolean deferCredit) {
+        if (deferCredit) {
+            Transfers.refund(transaction, src, amount);
+        } else if (!dst.isHot()) {
+            Transfers.reverse(transaction, src, dst, amount, credit);
+        } else {
+            dst.getLock().lock();
+            try {
+                Transfers.reverse(transaction, src, dst, amount, credit);
+                dst.publish();
+            } finally {
+                dst.getLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Acquires the locks of all {@code ordered} accounts, which must be distinct and sorted by account number, or
+     * none of them. A failed attempt releases whatever it holds before backing off, so a hot account cannot pin its
+     * partners' locks for the length of a retry.
+     */
+    private void lockInOrder(final Account[] ordered) throws TransferTimeoutException {
+        final long deadline = System.nanoTime() + lockPolicy.getDeadlineNanos();
+        long backoff = lockPolicy.getInitialBackoffNanos();
+        try {
+            while (true) {
+                int locked = 0;
+                while (locked < ordered.length && tryLock(ordered[locked], backoff)) {
+                    locked++;
+                }
+                if (locked == ordered.length) {
+                    return;
+                }
+                final Account contended = ordered[locked];
+                unlock(ordered, locked);
+
+                final long pause = ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+                if (System.nanoTime() + pause - deadline >= 0) {
+                    contentionMetrics.timedOut(contended.getAccountNumber());
+                    throw new TransferTimeoutException(String.format("account %s is busy, transfer timed out after %s ms",
+                            contended.getAccountNumber(), TimeUnit.NANOSECONDS.toMillis(lockPolicy.getDeadlineNanos())));
+                }
+                contentionMetrics.retried(contended.getAccountNumber());
+                LockSupport.parkNanos(pause);
+                backoff = Math.min(backoff * 2, lockPolicy.getMaxBackoffNanos());
+            }
+        } catch (final InterruptedException e) {
+            log.error("Thread {} is interrupted {}", Thread.currentThread().getName(), e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Publishes the balances changed while holding the locks, see {@link Account#publish()}, then releases them.
+     */
+    private static void unlock(final Account[] ordered) {
+        for (final Account account : ordered) {
+            account.publish();
+        }
+        unlock(ordered, ordered.length);
+    }
+
+    /**
+     * Releases the first {@code count} locks in reverse acquisition order.
+     */
+    private static void unlock(final Account[] ordered, final int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            ordered[i].getLock().unlock();
+        }
+    }
+
+    private boolean tryLock(final Account account, final long timeoutNanos) throws InterruptedException {
+        final Lock lock = account.getLock();
+        if (lock.tryLock()) {
+            return true;
+        }
+        final long waitStarted = System.nanoTime();
+        final boolean locked = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        contentionMetrics.waited(account.getAccountNumber(), System.nanoTime() - waitStarted);
+        return locked;
     }
 
     @Override
@@ -89,8 +295,20 @@ public class TransactionServiceImpl implements TransactionService {
         return transactionRepository.getAllTransactions();
     }
 
+    @Override
+    public Page<Transaction> getTransactions(final long afterSequence, final int limit) {
+        return transactionRepository.getTransactions(afterSequence, limit);
+    }
+
+    @Override
+    public List<Transaction> getAccountTransactions(final long accountNumber, final Instant from, final Instant to, final int limit)
+            throws AccountNotFoundException {
+        accountRepository.getAccountByNumber(accountNumber);
+        return transactionRepository.getAccountTransactions(accountNumber, from, to, limit);
+    }
+
     @Override
     public Transaction getTransaction(UUID uuid) throws TransactionNotFoundException {
         return transactionRepository.getTransaction(uuid);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,246 @@
+package com.revolut.service;
+
+import com.revolut.domain.*;
+import com.revolut.exceptions.*;
+import com.revolut.fx.FxRateCache;
+import com.revolut.fx.FxRates;
+import com.revolut.persistence.AccountRepository;
+import org.joda.money.CurrencyUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Validation and batch bookkeeping shared by the transfer engines. How accounts are kept consistent while a
+ * transfer applies, by locks or by single-threaded ownership, is up to the engine.
+ */
+final class Transfers {
+    private static final Logger log = LoggerFactory.getLogger(Transfers.class);
+
+    private Transfers() {
+    }
+
+    /**
+     * Resolves the accounts of every transfer into {@code sources} and {@code destinations}, and what each
+     * destination is credited into {@code credits}, recording a status and message for each transfer that cannot be
+     * applied whatever the balances. All conversions use the same exchange rates.
+     *
+     * @param fxRates {@code null} to reject transfers between currencies
+     * @return {@code true} if any transfer was rejected
+     */
+    static boolean resolve(final AccountRepository accountRepository, final FxRateCache fxRates, final List<Transaction> transactions,
+                           final Account[] sources, final Account[] destinations, final Amount[] credits,
+                           final TransferStatus[] statuses, final String[] messages) {
+        final FxRates rates = fxRates == null ? null : fxRates.getRates();
+        boolean rejected = false;
+        for (int i = 0; i < transactions.size(); i++) {
+            final Transaction transaction = transactions.get(i);
+            try {
+                if (!transaction.getAmount().isPositive()) {
+                    throw new InvalidDepositException(String.format("money %s cannot be deposited", transaction.getAmount()));
+                }
+                sources[i] = accountRepository.getAccountByNumber(transaction.getFromAccountNumber());
+                destinations[i] = accountRepository.getAccountByNumber(transaction.getToAccountNumber());
+                credits[i] = creditOf(rates, sources[i], destinations[i], transaction.getAmount());
+            } catch (final Exception exception) {
+                statuses[i] = statusOf(exception);
+                messages[i] = exception.getMessage();
+                rejected = true;
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * @param fxRates {@code null} to reject transfers between currencies
+     * @return what {@code dst} is credited when {@code amount} is debited from {@code src}: {@code amount} itself
+     * between accounts in the same currency, otherwise {@code amount} converted at the current rate
+     * @throws InvalidDepositException       if {@code amount} is not in the currency of {@code src}, or converts to
+     *                                       nothing
+     * @throws UnsupportedOperationException for accounts in different currencies without exchange rates
+     * @throws ExchangeRateNotFoundException for accounts in different currencies without a rate between them
+     */
+    static Amount creditOf(final FxRateCache fxRates, final Account src, final Account dst, final Amount amount)
+            throws SameAccountTransferException, InvalidDepositException, ExchangeRateNotFoundException {
+        return creditOf(fxRates == null ? null : fxRates.getRates(), src, dst, amount);
+    }
+
+    private static Amount creditOf(final FxRates rates, final Account src, final Account dst, final Amount amount)
+            throws SameAccountTransferException, InvalidDepositException, ExchangeRateNotFoundException {
+        if (src == dst) {
+            throw new SameAccountTransferException(String.format("transfer between the same account %s", src.getAccountNumber()));
+        }
+        final CurrencyUnit srcCurrency = src.getCurrency();
+        final CurrencyUnit dstCurrency = dst.getCurrency();
+        if (amount.getCurrency() != srcCurrency) {
+            throw new InvalidDepositException(String.format("money %s is not in the currency %s of account %s",
+                    amount, srcCurrency, src.getAccountNumber()));
+        }
+        if (srcCurrency == dstCurrency) {
+            return amount;
+        }
+        if (rates == null) {
+            throw new UnsupportedOperationException(String.format("transfer between the different currency %s, %s", srcCurrency, dstCurrency));
+        }
+        final Amount credit = rates.convert(amount, dstCurrency);
+        if (!credit.isPositive()) {
+            throw new InvalidDepositException(String.format("money %s converts to %s", amount, credit));
+        }
+        return credit;
+    }
+
+    /**
+     * Applies the transfers without a status yet in batch order, on accounts the caller has exclusive use of.
+     * A transfer that fails in an atomic batch, for whatever reason, reverses the ones applied before it and aborts
+     * the rest. A transfer that fails after its debit is refunded first.
+     *
+     * @return {@code true} if any transfer was applied and kept
+     */
+    static boolean apply(final List<Transaction> transactions, final BatchMode mode,
+                         final Account[] sources, final Account[] destinations, final Amount[] credits,
+                         final TransferStatus[] statuses, final String[] messages) {
+        boolean committed = false;
+        for (int i = 0; i < transactions.size(); i++) {
+            if (statuses[i] != null) {
+                continue;
+            }
+            final Amount amount = transactions.get(i).getAmount();
+            try {
+                destinations[i].checkDeposit(credits[i]);
+                sources[i].withdraw(amount);
+                try {
+                    destinations[i].deposit(credits[i]);
+                } catch (final InvalidDepositException | RuntimeException exception) {
+                    refund(transactions.get(i), sources[i], amount);
+                    throw exception;
+                }
+                statuses[i] = TransferStatus.OK;
+                committed = true;
+            } catch (final InsufficientFundsException | InvalidDepositException | RuntimeException exception) {
+                if (exception instanceof RuntimeException) {
+                    log.error("transfer {} of a batch failed", transactions.get(i).getId(), exception);
+                }
+                statuses[i] = statusOf(exception);
+                messages[i] = exception.getMessage();
+                if (mode == BatchMode.ATOMIC) {
+                    rollBack(transactions, sources, destinations, credits, statuses, i);
+                    abortRemaining(statuses);
+                    return false;
+                }
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * Gives {@code src} back what {@code transaction} withdrew from it when the credit then failed.
+     */
+    static void refund(final Transaction transaction, final Account src, final Amount amount) {
+        try {
+            src.deposit(amount);
+        } catch (final InvalidDepositException | RuntimeException exception) {
+            throw new IllegalStateException(String.format("cannot refund transfer %s", transaction.getId()), exception);
+        }
+    }
+
+    /**
+     * Takes {@code credit} back from {@code dst} and refunds {@code src}, when the applied {@code transaction} could
+     * not be persisted. The caller holds the locks of both accounts.
+     */
+    static void reverse(final Transaction transaction, final Account src, final Account dst, final Amount amount, final Amount credit) {
+        try {
+            dst.withdraw(credit);
+        } catch (final InsufficientFundsException | RuntimeException exception) {
+            throw new IllegalStateException(String.format("cannot reverse transfer %s", transaction.getId()), exception);
+        }
+        refund(transaction, src, amount);
+    }
+
+    /**
+     * Reverses the applied transfers before {@code failed} in reverse order, which restores every balance exactly,
+     * so none of the reversing withdrawals can run short.
+     */
+    static void rollBack(final List<Transaction> transactions, final Account[] sources, final Account[] destinations,
+                         final Amount[] credits, final TransferStatus[] statuses, final int failed) {
+        for (int i = failed - 1; i >= 0; i--) {
+            if (statuses[i] == TransferStatus.OK) {
+                try {
+                    destinations[i].withdraw(credits[i]);
+                    sources[i].deposit(transactions.get(i).getAmount());
+                } catch (final InsufficientFundsException | InvalidDepositException | RuntimeException exception) {
+                    throw new IllegalStateException(String.format("cannot roll back transfer %s", transactions.get(i).getId()), exception);
+                }
+                statuses[i] = TransferStatus.ABORTED;
+            }
+        }
+    }
+
+    /**
+     * @return the transfers with status {@link TransferStatus#OK}, in batch order
+     */
+    static List<Transaction> applied(final List<Transaction> transactions, final TransferStatus[] statuses) {
+        final List<Transaction> applied = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            if (statuses[i] == TransferStatus.OK) {
+                applied.add(transactions.get(i));
+            }
+        }
+        return applied;
+    }
+
+    static void abortRemaining(final TransferStatus[] statuses) {
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == null || statuses[i] == TransferStatus.OK) {
+                statuses[i] = TransferStatus.ABORTED;
+            }
+        }
+    }
+
+    static BatchResult batchResult(final BatchMode mode, final boolean committed, final List<Transaction> transactions,
+                                   final TransferStatus[] statuses, final String[] messages) {
+        final List<BatchResult.Item> items = new ArrayList<>(statuses.length);
+        for (int i = 0; i < statuses.length; i++) {
+            final UUID id = statuses[i] == TransferStatus.OK ? transactions.get(i).getId() : null;
+            items.add(new BatchResult.Item(statuses[i], id, messages[i]));
+        }
+        return new BatchResult(mode, committed, items);
+    }
+
+    /**
+     * Publishes the balances of every account a batch resolved, see {@link Account#publish()}.
+     */
+    static void publish(final Account[] sources, final Account[] destinations) {
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] != null) {
+                sources[i].publish();
+            }
+            if (destinations[i] != null) {
+                destinations[i].publish();
+            }
+        }
+    }
+
+    static TransferStatus statusOf(final Exception exception) {
+        if (exception instanceof AccountNotFoundException) {
+            return TransferStatus.ACCOUNT_NOT_FOUND;
+        } else if (exception instanceof SameAccountTransferException) {
+            return TransferStatus.SAME_ACCOUNT;
+        } else if (exception instanceof InsufficientFundsException) {
+            return TransferStatus.INSUFFICIENT_FUNDS;
+        } else if (exception instanceof InvalidDepositException) {
+            return TransferStatus.INVALID_AMOUNT;
+        } else if (exception instanceof UnsupportedOperationException) {
+            return TransferStatus.UNSUPPORTED_CURRENCY;
+        } else if (exception instanceof TransferTimeoutException) {
+            return TransferStatus.TIMEOUT;
+        } else if (exception instanceof ExchangeRateNotFoundException) {
+            return TransferStatus.NO_EXCHANGE_RATE;
+        } else if (exception instanceof RuntimeException) {
+            return TransferStatus.FAILED;
+        }
+        throw new IllegalStateException("unexpected transfer failure", exception);
+    }
+}
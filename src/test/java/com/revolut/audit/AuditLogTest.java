@@ -0,0 +1,72 @@
+package com.revolut.audit;
+
+import com.revolut.domain.Transaction;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AuditLogTest {
+
+    @Test
+    public void shouldWriteEveryRecordedEventOnClose() throws IOException {
+        final StringWriter out = new StringWriter();
+        final AuditLog auditLog = new AuditLog(out, 4, AuditOverflowPolicy.BLOCK);
+        final Transaction transaction = Transaction.builder().accountFrom(1).accountTo(2).money(Money.of(CurrencyUnit.EUR, 10.5)).build();
+        for (int i = 0; i < 100; i++) {
+            auditLog.transferred(transaction);
+        }
+        auditLog.requested("POST", "/transactions", 201, 0.5f);
+        auditLog.close();
+
+        final String[] lines = out.toString().split("\n");
+        Assert.assertEquals(101, lines.length);
+        Assert.assertEquals(String.format("transfer %s %s 1 2 EUR 1050", transaction.getCreated(), transaction.getId()), lines[0]);
+        Assert.assertTrue(lines[100], lines[100].matches("request \\S+Z POST /transactions 201 0\\.5"));
+        Assert.assertEquals(0, auditLog.getDropped());
+    }
+
+    @Test
+    public void shouldDropEventsWhileTheWriterCannotKeepUp() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final StringWriter written = new StringWriter();
+        final Writer slow = new Writer() {
+            @Override
+            public void write(final char[] buffer, final int offset, final int length) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException exception) {
+                    throw new IOException(exception);
+                }
+                written.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final AuditLog auditLog = new AuditLog(slow, 8, AuditOverflowPolicy.DROP);
+        auditLog.requested("GET", "/accounts", 200, 1);
+        Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            auditLog.requested("GET", "/accounts", 200, 1);
+        }
+        release.countDown();
+        auditLog.close();
+
+        Assert.assertEquals(100 - 8, auditLog.getDropped());
+        Assert.assertEquals(1 + 8, written.toString().split("\n").length);
+    }
+}
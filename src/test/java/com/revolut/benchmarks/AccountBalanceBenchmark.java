@@ -0,0 +1,101 @@
+package com.revolut.benchmarks;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Amount;
+import com.revolut.exceptions.InsufficientFundsException;
+import com.revolut.exceptions.InvalidDepositException;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A withdraw followed by a deposit of the same amount, as one transfer leg pair does, comparing the in-place
+ * balance update with the previous approach of rebuilding an immutable account (and its lock) per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountBalanceBenchmark {
+    private static final Money AMOUNT = Money.of(CurrencyUnit.EUR, 10);
+    private static final Money INITIAL = Money.of(CurrencyUnit.EUR, 1_000_000);
+
+    private static final Amount AMOUNT_MINOR = Amount.of(AMOUNT);
+
+    private Account account;
+    private RebuiltAccount rebuiltAccount;
+
+    @Setup
+    public void setup() {
+        account = Account.builder().accountNumber(1).owner("owner").money(INITIAL).build();
+        rebuiltAccount = new RebuiltAccount(1, "owner", INITIAL);
+    }
+
+    @Benchmark
+    public Account inPlace() throws InsufficientFundsException, InvalidDepositException {
+        account.getLock().lock();
+        try {
+            account.withdraw(AMOUNT_MINOR);
+            account.deposit(AMOUNT_MINOR);
+        } finally {
+            account.getLock().unlock();
+        }
+        return account;
+    }
+
+    @Benchmark
+    public RebuiltAccount rebuiltPerOperation() throws InsufficientFundsException, InvalidDepositException {
+        final RebuiltAccount current = rebuiltAccount;
+        current.lock.lock();
+        try {
+            rebuiltAccount = current.withdraw(AMOUNT).deposit(AMOUNT);
+        } finally {
+            current.lock.unlock();
+        }
+        return rebuiltAccount;
+    }
+
+    /**
+     * The account model before balances became mutable: every operation allocated a new account and lock.
+     */
+    static final class RebuiltAccount {
+        private final Lock lock = new ReentrantLock();
+        private final long accountNumber;
+        private final String owner;
+        private final Money money;
+
+        RebuiltAccount(final long accountNumber, final String owner, final Money money) {
+            this.accountNumber = accountNumber;
+            this.owner = owner;
+            this.money = money;
+        }
+
+        RebuiltAccount deposit(final Money amount) throws InvalidDepositException {
+            if (amount.isNegative()) {
+                throw new InvalidDepositException(String.format("money %s cannot be deposited", amount));
+            }
+            return new RebuiltAccount(accountNumber, owner, money.plus(amount));
+        }
+
+        RebuiltAccount withdraw(final Money amount) throws InsufficientFundsException {
+            final Money afterWithDraw = money.minus(amount);
+            if (afterWithDraw.isNegative()) {
+                throw new InsufficientFundsException(String.format("Account %s does not have sufficient funds", accountNumber));
+            }
+            return new RebuiltAccount(accountNumber, owner, afterWithDraw);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AccountBalanceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,72 @@
+package com.revolut.benchmarks;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.AccountSnapshot;
+import com.revolut.exceptions.AccountAlreadyExistsException;
+import com.revolut.exceptions.AccountNotFoundException;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.InMemoryAccountRepository;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InMemoryAccountRepository#getAccountByNumber} for random existing accounts, and for missing ones, which is
+ * what every 404 costs; and the balance read behind {@code GET /accounts/:id}, a snapshot against the copy it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountLookupBenchmark {
+    @Param({"100000"})
+    public int accounts;
+
+    private AccountRepository accountRepository;
+
+    @Setup
+    public void setup() throws AccountAlreadyExistsException {
+        accountRepository = new InMemoryAccountRepository();
+        final Money money = Money.of(CurrencyUnit.EUR, 100);
+        for (int i = 0; i < accounts; i++) {
+            accountRepository.createAccount(Account.builder().owner("owner" + i).money(money).build());
+        }
+    }
+
+    @Benchmark
+    public Account hit() throws AccountNotFoundException {
+        return accountRepository.getAccountByNumber(1 + ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    @Benchmark
+    public AccountSnapshot snapshot() throws AccountNotFoundException {
+        return accountRepository.getAccountByNumber(1 + ThreadLocalRandom.current().nextInt(accounts)).snapshot();
+    }
+
+    @Benchmark
+    public Account copy() throws AccountNotFoundException {
+        return Account.copy(accountRepository.getAccountByNumber(1 + ThreadLocalRandom.current().nextInt(accounts)));
+    }
+
+    @Benchmark
+    public AccountNotFoundException miss() {
+        try {
+            accountRepository.getAccountByNumber(accounts + 1 + ThreadLocalRandom.current().nextInt(accounts));
+            throw new IllegalStateException("account should not exist");
+        } catch (final AccountNotFoundException exception) {
+            return exception;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AccountLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.revolut.benchmarks;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Transaction;
+import com.revolut.exceptions.*;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import com.revolut.service.TransactionService;
+import com.revolut.service.TransactionServiceImpl;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransactionServiceImpl#transfer} from several threads, each back and forth between two accounts of its own,
+ * so transfers never contend. Throughput should grow with the number of threads up to the number of cores; compare
+ * {@code -t 1} with the default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class DisjointTransferBenchmark {
+    private static final Money INITIAL = Money.of(CurrencyUnit.EUR, 1_000_000_000);
+    private static final Money AMOUNT = Money.of(CurrencyUnit.EUR, 1);
+
+    private AccountRepository accountRepository;
+    private TransactionService transactionService;
+
+    @Setup
+    public void setup() {
+        accountRepository = new InMemoryAccountRepository();
+        transactionService = new TransactionServiceImpl(accountRepository, new InMemoryTransactionRepository());
+    }
+
+    @Benchmark
+    public Transaction transfer(final OwnAccounts accounts) throws InsufficientFundsException, InvalidDepositException,
+            AccountNotFoundException, SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
+        accounts.forward = !accounts.forward;
+        final long from = accounts.forward ? accounts.first : accounts.second;
+        final long to = accounts.forward ? accounts.second : accounts.first;
+        return transactionService.transfer(Transaction.builder().accountFrom(from).accountTo(to).money(AMOUNT).build());
+    }
+
+    @State(Scope.Thread)
+    public static class OwnAccounts {
+        private long first;
+        private long second;
+        private boolean forward;
+
+        @Setup
+        public void setup(final DisjointTransferBenchmark benchmark) throws AccountAlreadyExistsException {
+            first = benchmark.accountRepository.createAccount(Account.builder().owner("first").money(INITIAL).build()).getAccountNumber();
+            second = benchmark.accountRepository.createAccount(Account.builder().owner("second").money(INITIAL).build()).getAccountNumber();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DisjointTransferBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,162 @@
+package com.revolut.benchmarks;
+
+import com.revolut.App;
+import com.revolut.ExecutionMode;
+import io.javalin.Javalin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load against a server per {@link ExecutionMode}: half of the clients transfer back and forth between
+ * a few hot accounts, so that transfers wait on each other's locks, and the other half read an unrelated account.
+ * With more clients than Jetty has threads, in {@code SYNC} mode the reads queue behind transfers waiting for locks,
+ * which shows in their p99; with transfers executing off the Jetty threads the reads stay fast.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.revolut.benchmarks.ExecutionModeLoad},
+ * tuned by {@code load.modes} (comma separated, default {@code sync,async}, add {@code virtual} on JDK 21),
+ * {@code load.clients} (512), {@code load.seconds} (10) and {@code load.hot.accounts} (2).
+ */
+public class ExecutionModeLoad {
+    private static final int FIRST_PORT = 7100;
+
+    public static void main(final String[] args) throws Exception {
+        final String[] modes = System.getProperty("load.modes", "sync,async").split(",");
+        final int clients = Integer.getInteger("load.clients", 512);
+        final long seconds = Long.getLong("load.seconds", 10);
+        final int hotAccounts = Integer.getInteger("load.hot.accounts", 2);
+
+        System.out.printf("%-8s %-9s %10s %10s %10s %10s%n", "mode", "request", "count", "p50 ms", "p99 ms", "max ms");
+        for (int i = 0; i < modes.length; i++) {
+            final ExecutionMode mode = ExecutionMode.of(modes[i].trim());
+            final int port = FIRST_PORT + i;
+            final Javalin server = App.start(port, mode);
+            try {
+                run(mode, "http://localhost:" + port, clients, seconds, hotAccounts);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    private static void run(final ExecutionMode mode, final String base, final int clients, final long seconds, final int hotAccounts)
+            throws Exception {
+        for (int i = 0; i <= hotAccounts; i++) {
+            request(base + "/accounts", "{\"owner\": \"load" + i + "\", \"money\": \"EUR 1000000000.00\"}");
+        }
+        final long readAccount = hotAccounts + 1;
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final List<Latencies> transfers = new ArrayList<>();
+        final List<Latencies> reads = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(clients);
+        for (int client = 0; client < clients; client++) {
+            final boolean transferring = client % 2 == 0;
+            final Latencies latencies = new Latencies();
+            (transferring ? transfers : reads).add(latencies);
+            final long from = client / 2 % hotAccounts + 1;
+            final long to = from % hotAccounts + 1;
+            final Thread thread = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        final long start = System.nanoTime();
+                        if (transferring) {
+                            request(base + "/transactions", String.format(
+                                    "{\"fromAccountNumber\": %s, \"toAccountNumber\": %s, \"money\": \"EUR 0.01\"}", from, to));
+                        } else {
+                            request(base + "/accounts/" + readAccount, null);
+                        }
+                        latencies.record(System.nanoTime() - start);
+                    }
+                } catch (final IOException exception) {
+                    throw new IllegalStateException(exception);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-client-" + client);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        print(mode, "transfer", transfers);
+        print(mode, "read", reads);
+    }
+
+    /**
+     * Any response counts, a transfer that timed out waiting for locks took its time as much as one that did not.
+     *
+     * @return the response status
+     */
+    static int request(final String url, final String body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        final int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                drain(in);
+            }
+        }
+        return status;
+    }
+
+    private static void drain(final InputStream in) throws IOException {
+        final byte[] buffer = new byte[4096];
+        final ByteArrayOutputStream ignored = new ByteArrayOutputStream();
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            ignored.write(buffer, 0, read);
+        }
+    }
+
+    private static void print(final ExecutionMode mode, final String request, final List<Latencies> all) {
+        int count = 0;
+        for (final Latencies latencies : all) {
+            count += latencies.size;
+        }
+        final long[] nanos = new long[count];
+        int offset = 0;
+        for (final Latencies latencies : all) {
+            System.arraycopy(latencies.nanos, 0, nanos, offset, latencies.size);
+            offset += latencies.size;
+        }
+        Arrays.sort(nanos);
+        System.out.printf(Locale.ROOT, "%-8s %-9s %10d %10.2f %10.2f %10.2f%n", mode, request, count,
+                millis(nanos, 0.50), millis(nanos, 0.99), millis(nanos, 1.0));
+    }
+
+    private static double millis(final long[] sorted, final double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        final int index = Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int size;
+
+        private void record(final long latency) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latency;
+        }
+    }
+}
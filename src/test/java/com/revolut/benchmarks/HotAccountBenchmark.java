@@ -0,0 +1,65 @@
+package com.revolut.benchmarks;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Transaction;
+import com.revolut.exceptions.*;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import com.revolut.service.TransactionService;
+import com.revolut.service.TransactionServiceImpl;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Credit throughput into a single treasury account, account 1, from many sources at once: with {@code hotSlots} 0
+ * every transfer queues on the treasury lock, otherwise the treasury is hot and only the sources are locked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class HotAccountBenchmark {
+    private static final Money INITIAL = Money.of(CurrencyUnit.EUR, 1_000_000_000);
+    private static final Money AMOUNT = Money.of(CurrencyUnit.EUR, 1);
+    private static final long TREASURY = 1;
+
+    @Param({"0", "8"})
+    public int hotSlots;
+
+    @Param({"256"})
+    public int sources;
+
+    private TransactionService transactionService;
+
+    @Setup
+    public void setup() throws AccountAlreadyExistsException {
+        final InMemoryAccountRepository accountRepository = hotSlots == 0
+                ? new InMemoryAccountRepository()
+                : new InMemoryAccountRepository(new long[]{TREASURY}, hotSlots);
+        for (int i = 0; i <= sources; i++) {
+            accountRepository.createAccount(Account.builder().owner("owner" + i).money(INITIAL).build());
+        }
+        transactionService = new TransactionServiceImpl(accountRepository, new InMemoryTransactionRepository());
+    }
+
+    @Benchmark
+    public Transaction credit() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException,
+            SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
+        final long from = TREASURY + 1 + ThreadLocalRandom.current().nextInt(sources);
+        return transactionService.transfer(Transaction.builder().accountFrom(from).accountTo(TREASURY).money(AMOUNT).build());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HotAccountBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,135 @@
+package com.revolut.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.revolut.domain.Transaction;
+import com.revolut.serializers.BinaryTransferCodec;
+import com.revolut.serializers.SerializersModule;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decoding a transfer request and encoding the transaction response, with the streaming serializers against the
+ * previous setup: bean reflection for the domain types and {@code Money.parse}/{@code Money.toString} for money,
+ * and with the fixed-layout {@link BinaryTransferCodec} records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+    private static final String REQUEST = "{\"fromAccountNumber\": 1, \"toAccountNumber\": 2, \"money\" : \"EUR 2000.50\"}";
+
+    private ObjectMapper streaming;
+    private ObjectMapper reflective;
+    private Transaction transaction;
+    private ReflectiveTransaction reflectiveTransaction;
+    private byte[] record;
+
+    @Setup
+    public void setup() {
+        streaming = new ObjectMapper().registerModule(new SerializersModule());
+        final SimpleModule stringMoney = new SimpleModule();
+        stringMoney.addSerializer(Money.class, new StringMoneySerializer());
+        stringMoney.addDeserializer(Money.class, new StringMoneyDeSerializer());
+        reflective = new ObjectMapper().registerModule(stringMoney);
+
+        transaction = Transaction.builder().accountFrom(1).accountTo(2).money(Money.of(CurrencyUnit.EUR, 2000.50)).build();
+        reflectiveTransaction = new ReflectiveTransaction();
+        reflectiveTransaction.id = transaction.getId();
+        reflectiveTransaction.created = transaction.getCreated();
+        reflectiveTransaction.fromAccountNumber = 1;
+        reflectiveTransaction.toAccountNumber = 2;
+        reflectiveTransaction.money = transaction.getMoney();
+        record = new byte[BinaryTransferCodec.REQUEST_BYTES];
+        BinaryTransferCodec.encodeRequest(1, 2, transaction.getAmount(), null, record, 0);
+    }
+
+    @Benchmark
+    public Transaction decodeStreaming() throws IOException {
+        return streaming.readValue(REQUEST, Transaction.class);
+    }
+
+    @Benchmark
+    public ReflectiveTransaction decodeReflective() throws IOException {
+        return reflective.readValue(REQUEST, ReflectiveTransaction.class);
+    }
+
+    @Benchmark
+    public Transaction decodeBinary() {
+        return BinaryTransferCodec.decodeTransfer(record);
+    }
+
+    @Benchmark
+    public byte[] encodeStreaming() throws IOException {
+        return streaming.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public byte[] encodeReflective() throws IOException {
+        return reflective.writeValueAsBytes(reflectiveTransaction);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return BinaryTransferCodec.encodeTransfer(transaction);
+    }
+
+    /**
+     * The shape Jackson used to bind by reflection, doing the same construction work as the old domain class.
+     */
+    @JsonIgnoreProperties(value = {"isExecuting"})
+    public static class ReflectiveTransaction {
+        public final transient AtomicBoolean isExecuting = new AtomicBoolean(true);
+        public UUID id = UUID.randomUUID();
+        public String created = Instant.now().toString();
+        public long fromAccountNumber;
+        public long toAccountNumber;
+        public Money money;
+    }
+
+    static class StringMoneySerializer extends StdSerializer<Money> {
+        StringMoneySerializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(final Money value, final JsonGenerator jgen, final SerializerProvider provider) throws IOException {
+            jgen.writeString(value.toString());
+        }
+    }
+
+    static class StringMoneyDeSerializer extends StdDeserializer<Money> {
+        StringMoneyDeSerializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(final JsonParser jp, final DeserializationContext ctxt) throws IOException {
+            return Money.parse(jp.readValueAs(String.class));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
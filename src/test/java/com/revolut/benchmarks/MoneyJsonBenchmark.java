@@ -0,0 +1,62 @@
+package com.revolut.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revolut.serializers.SerializersModule;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single money value through the API's Jackson (de)serializers, next to {@link Money#parse} and
+ * {@link Money#toString()} as the baseline they replace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyJsonBenchmark {
+    private static final String TEXT = "EUR 2000.50";
+    private static final byte[] JSON = ('"' + TEXT + '"').getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper objectMapper;
+    private Money money;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper().registerModule(new SerializersModule());
+        money = Money.of(CurrencyUnit.EUR, 2000.50);
+    }
+
+    @Benchmark
+    public Money deserialize() throws IOException {
+        return objectMapper.readValue(JSON, Money.class);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(money);
+    }
+
+    @Benchmark
+    public Money parse() {
+        return Money.parse(TEXT);
+    }
+
+    @Benchmark
+    public String format() {
+        return money.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MoneyJsonBenchmark.class.getSimpleName()).build()).run();
+    }
+}
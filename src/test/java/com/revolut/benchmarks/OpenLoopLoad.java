@@ -0,0 +1,171 @@
+package com.revolut.benchmarks;
+
+import com.revolut.App;
+import com.revolut.ExecutionMode;
+import io.javalin.Javalin;
+import org.HdrHistogram.Histogram;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load against the whole stack: boots {@link App} in-process, creates {@code load.accounts} accounts and
+ * sends transfers between them at a fixed {@code load.rate} per second, whether or not earlier ones have been
+ * answered. Accounts are drawn Zipf-skewed by {@code load.zipf}, 0 for uniform, so the first accounts are the hot ones.
+ * <p>
+ * Transfer {@code i} is due at {@code start + i / rate}. Its response time is measured from then, not from when a
+ * sender got round to it, so a stall shows up in every transfer that should have been sent during it instead of in one
+ * (coordinated omission). The service time, from the actual send, is reported next to it; a growing gap between the two
+ * means the server, or {@code load.senders}, could not keep up with the rate.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.revolut.benchmarks.OpenLoopLoad},
+ * tuned by {@code load.rate} (1000), {@code load.seconds} (30), {@code load.warmup.seconds} (5), {@code load.accounts} (1000),
+ * {@code load.zipf} (1.1), {@code load.senders} (256) and {@code load.execution} (sync). The full response time
+ * distribution is written to {@code target/open-loop-load.hgrm} for the HdrHistogram plotter.
+ */
+public class OpenLoopLoad {
+    private static final int PORT = 7200;
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    public static void main(final String[] args) throws Exception {
+        final int rate = Integer.getInteger("load.rate", 1000);
+        final long seconds = Long.getLong("load.seconds", 30);
+        final long warmupSeconds = Long.getLong("load.warmup.seconds", 5);
+        final int accounts = Integer.getInteger("load.accounts", 1000);
+        final double zipfExponent = Double.parseDouble(System.getProperty("load.zipf", "1.1"));
+        final int senders = Integer.getInteger("load.senders", 256);
+        final ExecutionMode mode = ExecutionMode.of(System.getProperty("load.execution", ExecutionMode.SYNC.name()));
+
+        final Javalin server = App.start(PORT, mode);
+        try {
+            final String base = "http://localhost:" + PORT;
+            for (int i = 0; i < accounts; i++) {
+                ExecutionModeLoad.request(base + "/accounts", "{\"owner\": \"load" + i + "\", \"money\": \"EUR 1000000000.00\"}");
+            }
+            final ZipfSampler sampler = new ZipfSampler(accounts, zipfExponent);
+            run(base, sampler, rate, warmupSeconds, senders);
+            final List<Sender> measured = run(base, sampler, rate, seconds, senders);
+            report(mode, rate, seconds, zipfExponent, measured);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static List<Sender> run(final String base, final ZipfSampler sampler, final int rate, final long seconds,
+                                    final int senderCount) throws InterruptedException {
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        final long count = seconds * rate;
+        final long start = System.nanoTime();
+        final AtomicLong next = new AtomicLong();
+        final List<Sender> senders = new ArrayList<>();
+        for (int i = 0; i < senderCount; i++) {
+            final Sender sender = new Sender(i, () -> {
+                final long index = next.getAndIncrement();
+                return index < count ? start + index * intervalNanos : Long.MIN_VALUE;
+            }, base, sampler);
+            senders.add(sender);
+            sender.start();
+        }
+        for (final Sender sender : senders) {
+            sender.join();
+        }
+        return senders;
+    }
+
+    private static void report(final ExecutionMode mode, final int rate, final long seconds, final double zipfExponent,
+                               final List<Sender> senders) throws IOException {
+        final Histogram responseTimes = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        final Histogram serviceTimes = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        long failed = 0;
+        for (final Sender sender : senders) {
+            responseTimes.add(sender.responseTimes);
+            serviceTimes.add(sender.serviceTimes);
+            failed += sender.failed;
+        }
+
+        System.out.printf(Locale.ROOT, "mode %s, %d transfers/s for %d s, zipf %.2f, %d transfers, %d failed%n",
+                mode, rate, seconds, zipfExponent, responseTimes.getTotalCount(), failed);
+        System.out.printf("%-14s %10s %10s %10s %10s%n", "", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        print("response time", responseTimes);
+        print("service time", serviceTimes);
+
+        final Path distribution = Paths.get("target", "open-loop-load.hgrm");
+        Files.createDirectories(distribution.getParent());
+        try (PrintStream out = new PrintStream(new FileOutputStream(distribution.toFile()), false, "UTF-8")) {
+            responseTimes.outputPercentileDistribution(out, 1e6);
+        }
+    }
+
+    private static void print(final String name, final Histogram histogram) {
+        System.out.printf(Locale.ROOT, "%-14s %10.2f %10.2f %10.2f %10.2f%n", name,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface Schedule {
+        /**
+         * @return when the next transfer is due, or {@link Long#MIN_VALUE} once all have been sent
+         */
+        long next();
+    }
+
+    private static final class Sender extends Thread {
+        private final Histogram responseTimes = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        private final Histogram serviceTimes = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        private final Schedule schedule;
+        private final String base;
+        private final ZipfSampler sampler;
+        private long failed;
+
+        private Sender(final int index, final Schedule schedule, final String base, final ZipfSampler sampler) {
+            super("load-sender-" + index);
+            setDaemon(true);
+            this.schedule = schedule;
+            this.base = base;
+            this.sampler = sampler;
+        }
+
+        @Override
+        public void run() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (long due; (due = schedule.next()) != Long.MIN_VALUE; ) {
+                for (long wait; (wait = due - System.nanoTime()) > 0; ) {
+                    LockSupport.parkNanos(wait);
+                }
+                final int from = sampler.next(random) + 1;
+                int to = sampler.next(random) + 1;
+                if (to == from) {
+                    to = from % sampler.size() + 1;
+                }
+
+                final long sent = System.nanoTime();
+                int status;
+                try {
+                    status = ExecutionModeLoad.request(base + "/transactions", String.format(
+                            "{\"fromAccountNumber\": %s, \"toAccountNumber\": %s, \"money\": \"EUR 0.01\"}", from, to));
+                } catch (final IOException exception) {
+                    status = -1;
+                }
+                final long now = System.nanoTime();
+                responseTimes.recordValue(Math.min(now - due, HIGHEST_TRACKABLE_NANOS));
+                serviceTimes.recordValue(Math.min(now - sent, HIGHEST_TRACKABLE_NANOS));
+                if (status < 200 || status >= 300) {
+                    failed++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.revolut.benchmarks;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Transaction;
+import com.revolut.exceptions.*;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import com.revolut.service.TransactionService;
+import com.revolut.service.TransactionServiceImpl;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransactionServiceImpl#transfer} from several threads, with source and destination accounts drawn uniformly
+ * ({@code zipfExponent} 0) or Zipf-skewed towards a few hot accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class TransferBenchmark {
+    private static final Money INITIAL = Money.of(CurrencyUnit.EUR, 1_000_000_000);
+    private static final Money AMOUNT = Money.of(CurrencyUnit.EUR, 1);
+
+    @Param({"1024"})
+    public int accounts;
+
+    @Param({"0", "1.1"})
+    public double zipfExponent;
+
+    private TransactionService transactionService;
+    private ZipfSampler sampler;
+
+    @Setup
+    public void setup() throws AccountAlreadyExistsException {
+        final AccountRepository accountRepository = new InMemoryAccountRepository();
+        for (int i = 0; i < accounts; i++) {
+            accountRepository.createAccount(Account.builder().owner("owner" + i).money(INITIAL).build());
+        }
+        transactionService = new TransactionServiceImpl(accountRepository, new InMemoryTransactionRepository());
+        sampler = new ZipfSampler(accounts, zipfExponent);
+    }
+
+    @Benchmark
+    public Transaction transfer() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException,
+            SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int from = sampler.next(random);
+        int to = sampler.next(random);
+        if (to == from) {
+            to = (from + 1) % accounts;
+        }
+        return transactionService.transfer(Transaction.builder().accountFrom(from + 1).accountTo(to + 1).money(AMOUNT).build());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TransferBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package com.revolut.benchmarks;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Transaction;
+import com.revolut.exceptions.*;
+import com.revolut.metrics.LockContentionMetrics;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import com.revolut.service.DeferredCreditApplier;
+import com.revolut.service.LockAcquisitionPolicy;
+import com.revolut.service.ShardedTransactionService;
+import com.revolut.service.TransactionService;
+import com.revolut.service.TransactionServiceImpl;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer latency of the lock based engine, crediting under the destination lock or deferring credits, against the
+ * sharded single-writer engine, with every thread transferring between random accounts of a small, contended set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class TransferEngineBenchmark {
+    private static final Money INITIAL = Money.of(CurrencyUnit.EUR, 1_000_000_000);
+    private static final Money AMOUNT = Money.of(CurrencyUnit.EUR, 1);
+
+    @Param({"locking", "deferred", "sharded"})
+    public String engine;
+
+    @Param({"16"})
+    public int accounts;
+
+    private TransactionService transactionService;
+    private DeferredCreditApplier creditApplier;
+
+    @Setup
+    public void setup() throws AccountAlreadyExistsException {
+        final AccountRepository accountRepository = new InMemoryAccountRepository();
+        for (int i = 0; i < accounts; i++) {
+            accountRepository.createAccount(Account.builder().owner("owner" + i).money(INITIAL).build());
+        }
+        if ("sharded".equals(engine)) {
+            transactionService = new ShardedTransactionService(accountRepository, new InMemoryTransactionRepository(),
+                    Runtime.getRuntime().availableProcessors(), ShardedTransactionService.DEFAULT_QUEUE_CAPACITY, 1000);
+        } else {
+            creditApplier = "deferred".equals(engine) ? new DeferredCreditApplier(DeferredCreditApplier.DEFAULT_THREADS) : null;
+            transactionService = new TransactionServiceImpl(accountRepository, new InMemoryTransactionRepository(),
+                    LockAcquisitionPolicy.defaults(), new LockContentionMetrics(), creditApplier, null);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (transactionService instanceof ShardedTransactionService) {
+            ((ShardedTransactionService) transactionService).close();
+        }
+        if (creditApplier != null) {
+            creditApplier.close();
+        }
+    }
+
+    @Benchmark
+    public Transaction transfer() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException,
+            SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long from = 1 + random.nextInt(accounts);
+        final long to = 1 + (from + random.nextInt(accounts - 1)) % accounts;
+        return transactionService.transfer(Transaction.builder().accountFrom(from).accountTo(to).money(AMOUNT).build());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TransferEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,36 @@
+package com.revolut.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks {@code 0..n-1} where rank {@code k} has probability proportional to {@code 1 / (k + 1)^exponent}, so a
+ * few accounts take most of the traffic. An exponent of 0 draws uniformly.
+ */
+final class ZipfSampler {
+    private final double[] cumulative;
+
+    ZipfSampler(final int n, final double exponent) {
+        if (n <= 0 || exponent < 0) {
+            throw new IllegalArgumentException(String.format("invalid size %s or exponent %s", n, exponent));
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int size() {
+        return cumulative.length;
+    }
+
+    int next(final Random random) {
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
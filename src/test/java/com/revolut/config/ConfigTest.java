@@ -0,0 +1,80 @@
+package com.revolut.config;
+
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+public class ConfigTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void systemPropertiesShouldOverrideEnvironmentOverridingFile() throws IOException {
+        final Path file = folder.newFile("server.properties").toPath();
+        Files.write(file, "server.threads.max=100\nserver.threads.min=10\nserver.preset=throughput\n".getBytes(StandardCharsets.UTF_8));
+        final Properties systemProperties = new Properties();
+        systemProperties.setProperty("server.threads.max", "300");
+        final Map<String, String> environment = new HashMap<>();
+        environment.put("SERVER_THREADS_MAX", "200");
+        environment.put("SERVER_THREADS_MIN", "20");
+
+        final Config config = new Config(systemProperties, environment, Config.read(file));
+        Assert.assertEquals(300, config.getInt("server.threads.max", 0));
+        Assert.assertEquals(20, config.getInt("server.threads.min", 0));
+        Assert.assertEquals(ServerPreset.THROUGHPUT, ServerPreset.of(config.get("server.preset")));
+        Assert.assertEquals(7, config.getLong("server.idle.timeout.ms", 7));
+        Assert.assertNull(config.get("server.gzip"));
+    }
+
+    @Test
+    public void malformedValuesShouldBeRejectedNotDefaulted() {
+        final Config config = new Config(new Properties(), Collections.singletonMap("SERVER_GZIP", "yes"), new Properties());
+        try {
+            config.getBoolean("server.gzip", true);
+            Assert.fail("yes is not a boolean");
+        } catch (final IllegalArgumentException expected) {
+            Assert.assertTrue(expected.getMessage().contains("server.gzip"));
+        }
+    }
+
+    @Test
+    public void presetsShouldBuildServersWithTheirOptions() {
+        for (final ServerPreset preset : ServerPreset.values()) {
+            for (final int cores : new int[]{1, 4, 64}) {
+                final ServerOptions options = preset.options(cores);
+                Assert.assertTrue(preset + " on " + cores + " cores", options.getMaxThreads() >= options.getMinThreads());
+            }
+        }
+
+        final ServerOptions options = ServerPreset.THROUGHPUT.options(4).toBuilder().idleTimeoutMillis(1_234).build();
+        final Server server = options.newServer(0);
+        final ServerConnector connector = (ServerConnector) server.getConnectors()[0];
+        Assert.assertEquals(1, connector.getAcceptors());
+        Assert.assertEquals(4, connector.getSelectorManager().getSelectorCount());
+        Assert.assertEquals(1_234, connector.getIdleTimeout());
+        Assert.assertEquals(1024, connector.getAcceptQueueSize());
+        Assert.assertEquals(64, ((QueuedThreadPool) server.getThreadPool()).getMinThreads());
+        Assert.assertEquals(ServerOptions.DEFAULT_OUTPUT_BUFFER_BYTES,
+                connector.getConnectionFactory(HttpConnectionFactory.class).getHttpConfiguration().getOutputBufferSize());
+        Assert.assertFalse(options.isGzip());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void threadPoolShouldNotBeSmallerThanItsMinimum() {
+        ServerOptions.builder().maxThreads(4).minThreads(8).build();
+    }
+}
@@ -4,6 +4,7 @@ import com.revolut.exceptions.InsufficientFundsException;
 import com.revolut.exceptions.InvalidDepositException;
 import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
+import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -18,7 +19,7 @@ public class AccountTest {
         expectedException.expect(InsufficientFundsException.class);
         expectedException.expectMessage(String.format("Account %s does not have sufficient funds", accountNumber));
         final Account account = Account.builder().money(Money.of(CurrencyUnit.EUR, 2000)).owner("first").accountNumber(accountNumber).build();
-        account.withdraw(Money.of(CurrencyUnit.EUR, 5000));
+        account.withdraw(Amount.of(Money.of(CurrencyUnit.EUR, 5000)));
     }
 
     @Test
@@ -28,8 +29,130 @@ public class AccountTest {
         expectedException.expectMessage(String.format("money %s cannot be deposited", amount));
         expectedException.expect(InvalidDepositException.class);
         final Account account = Account.builder().money(Money.of(CurrencyUnit.EUR, 2000)).owner("first").accountNumber(1).build();
-        account.deposit(amount);
+        account.deposit(Amount.of(amount));
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void depositThatWouldOverflowTheBalanceShouldBeRejectedUpFront() {
+        final Account account = Account.builder().balance(Amount.ofMinor(CurrencyUnit.EUR, Long.MAX_VALUE - 10)).owner("first").accountNumber(1).build();
+        final Amount credit = Amount.ofMinor(CurrencyUnit.EUR, 11);
+        try {
+            account.checkDeposit(credit);
+            Assert.fail("check should have failed");
+        } catch (final InvalidDepositException expected) {
+            Assert.assertEquals(String.format("money %s would overflow the balance of account 1", credit), expected.getMessage());
+        }
+        try {
+            account.deposit(credit);
+            Assert.fail("deposit should have failed");
+        } catch (final InvalidDepositException expected) {
+            Assert.assertEquals(Long.MAX_VALUE - 10, account.getBalanceMinorUnits());
+        }
+    }
+
+    @Test
+    public void shouldUpdateBalanceInPlace() throws InsufficientFundsException, InvalidDepositException {
+        final Account account = Account.builder().money(Money.of(CurrencyUnit.EUR, 2000)).owner("first").accountNumber(1).build();
+        final Object lock = account.getLock();
+
+        account.withdraw(Amount.of(Money.of(CurrencyUnit.EUR, 500.25)));
+        account.deposit(Amount.of(Money.of(CurrencyUnit.EUR, 100)));
+
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 1599.75), account.getMoney());
+        Assert.assertSame(lock, account.getLock());
+    }
+
+    @Test
+    public void failedWithdrawShouldLeaveBalanceUntouched() {
+        final Money initial = Money.of(CurrencyUnit.EUR, 2000);
+        final Account account = Account.builder().money(initial).owner("first").accountNumber(1).build();
+        try {
+            account.withdraw(Amount.of(Money.of(CurrencyUnit.EUR, 2000.01)));
+            Assert.fail("withdraw should have failed");
+        } catch (final InsufficientFundsException expected) {
+            Assert.assertEquals(initial, account.getMoney());
+        }
+    }
+
+    @Test
+    public void snapshotShouldOnlySeePublishedBalances() throws Exception {
+        final Account account = Account.builder().money(Money.of(CurrencyUnit.EUR, 10)).owner("first").accountNumber(1).build();
+        account.withdraw(Amount.of(Money.of(CurrencyUnit.EUR, 4)));
+
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 10), account.snapshot().getMoney());
+        Assert.assertEquals(0, account.snapshot().getVersion());
+
+        account.publish();
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 6), account.snapshot().getMoney());
+        Assert.assertEquals(1, account.snapshot().getVersion());
+
+        account.deposit(Amount.of(Money.of(CurrencyUnit.EUR, 4)));
+        account.withdraw(Amount.of(Money.of(CurrencyUnit.EUR, 4)));
+        account.publish();
+        Assert.assertEquals(1, account.snapshot().getVersion());
+    }
+
+    @Test
+    public void snapshotShouldPairBalanceWithItsVersionWhilePublishing() throws Exception {
+        final Account account = Account.builder().balance(Amount.ofMinor(CurrencyUnit.EUR, 0)).owner("first").accountNumber(1).build();
+        final Amount cent = Amount.ofMinor(CurrencyUnit.EUR, 1);
+        final Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                try {
+                    account.deposit(cent);
+                } catch (final InvalidDepositException exception) {
+                    throw new IllegalStateException(exception);
+                }
+                account.publish();
+            }
+        });
+        writer.start();
+        long lastVersion = 0;
+        while (writer.isAlive()) {
+            final AccountSnapshot snapshot = account.snapshot();
+            Assert.assertEquals(snapshot.getVersion(), snapshot.getBalanceMinorUnits());
+            Assert.assertTrue(snapshot.getVersion() >= lastVersion);
+            lastVersion = snapshot.getVersion();
+        }
+        writer.join();
+        Assert.assertEquals(200_000, account.snapshot().getVersion());
+    }
+
+    @Test
+    public void hotAccountShouldBorrowAcrossSlotsOnlyWhenTheyCoverTheWithdrawal() throws Exception {
+        final Account account = Account.builder().balance(Amount.ofMinor(CurrencyUnit.EUR, 100)).owner("treasury")
+                .accountNumber(1).hotSlots(4).build();
+        final Thread[] creditors = new Thread[4];
+        for (int i = 0; i < creditors.length; i++) {
+            creditors[i] = new Thread(() -> {
+                for (int credit = 0; credit < 1000; credit++) {
+                    try {
+                        account.deposit(Amount.ofMinor(CurrencyUnit.EUR, 1));
+                    } catch (final InvalidDepositException exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                }
+            });
+            creditors[i].start();
+        }
+        for (final Thread creditor : creditors) {
+            creditor.join();
+        }
+        Assert.assertTrue(account.isHot());
+        Assert.assertEquals(4100, account.getBalanceMinorUnits());
+        Assert.assertEquals(100, account.getPublishedBalanceMinorUnits());
+
+        try {
+            account.withdraw(Amount.ofMinor(CurrencyUnit.EUR, 4101));
+            Assert.fail("withdrawal should have failed");
+        } catch (final InsufficientFundsException expected) {
+            Assert.assertEquals(4100, account.getBalanceMinorUnits());
+        }
+        account.withdraw(Amount.ofMinor(CurrencyUnit.EUR, 4100));
+        Assert.assertEquals(0, account.getBalanceMinorUnits());
+
+        account.publish();
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 0), account.snapshot().getMoney());
+    }
+}
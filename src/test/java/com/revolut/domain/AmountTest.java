@@ -0,0 +1,41 @@
+package com.revolut.domain;
+
+import org.joda.money.CurrencyMismatchException;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AmountTest {
+
+    @Test
+    public void shouldRoundTripThroughMoney() {
+        final Money money = Money.of(CurrencyUnit.EUR, -1234.56);
+        final Amount amount = Amount.of(money);
+
+        Assert.assertEquals(-123456, amount.getMinorUnits());
+        Assert.assertEquals(money, amount.toMoney());
+        Assert.assertEquals(money.toString(), amount.toString());
+        Assert.assertEquals(Money.ofMajor(CurrencyUnit.JPY, 500).toString(), Amount.of(Money.ofMajor(CurrencyUnit.JPY, 500)).toString());
+    }
+
+    @Test
+    public void shouldAddAndSubtractMinorUnits() {
+        final Amount ten = Amount.ofMinor(CurrencyUnit.EUR, 1000);
+        final Amount cent = Amount.ofMinor(CurrencyUnit.EUR, 1);
+
+        Assert.assertEquals(Amount.ofMinor(CurrencyUnit.EUR, 1001), ten.plus(cent));
+        Assert.assertEquals(Amount.ofMinor(CurrencyUnit.EUR, 999), ten.minus(cent));
+        Assert.assertTrue(cent.minus(ten).isNegative());
+    }
+
+    @Test(expected = CurrencyMismatchException.class)
+    public void shouldRejectDifferentCurrencies() {
+        Amount.ofMinor(CurrencyUnit.EUR, 1).plus(Amount.ofMinor(CurrencyUnit.CHF, 1));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void shouldFailOnOverflow() {
+        Amount.ofMinor(CurrencyUnit.EUR, Long.MAX_VALUE).plus(Amount.ofMinor(CurrencyUnit.EUR, 1));
+    }
+}
@@ -0,0 +1,68 @@
+package com.revolut.fx;
+
+import com.revolut.domain.Amount;
+import com.revolut.exceptions.ExchangeRateNotFoundException;
+import org.joda.money.CurrencyUnit;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class FxRateCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void refreshShouldSwapInTheNextVersionAndKeepItWhenLoadingFails() throws Exception {
+        final Path file = folder.newFile("rates.properties").toPath();
+        write(file, "EUR/USD=1.0842", "USD/EUR = 0.9223");
+        final FxRateCache cache = new FxRateCache(new FileFxRateProvider(file), 0);
+
+        final FxRates first = cache.getRates();
+        Assert.assertEquals(1, first.getVersion());
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals(Amount.ofMinor(CurrencyUnit.USD, 1084), first.convert(Amount.ofMinor(CurrencyUnit.EUR, 1000), CurrencyUnit.USD));
+
+        write(file, "EUR/USD=1.1");
+        cache.refresh();
+        Assert.assertEquals(2, cache.getRates().getVersion());
+        Assert.assertNull(cache.getRates().rate(CurrencyUnit.USD, CurrencyUnit.EUR));
+        Assert.assertEquals(new BigDecimal("1.0842"), first.rate(CurrencyUnit.EUR, CurrencyUnit.USD));
+
+        write(file, "EUR/USD=-1");
+        try {
+            cache.refresh();
+            Assert.fail("a negative rate should not load");
+        } catch (final IOException expected) {
+            Assert.assertEquals(2, cache.getRates().getVersion());
+        }
+        cache.close();
+    }
+
+    @Test
+    public void convertShouldRoundHalfEvenAndRejectPairsWithoutRate() throws ExchangeRateNotFoundException {
+        final FxRates rates = FxRates.builder().rate(CurrencyUnit.EUR, CurrencyUnit.JPY, new BigDecimal("162.5")).build();
+
+        Assert.assertEquals(Amount.ofMinor(CurrencyUnit.JPY, 162), rates.convert(Amount.ofMinor(CurrencyUnit.EUR, 100), CurrencyUnit.JPY));
+        Assert.assertEquals(Amount.ofMinor(CurrencyUnit.JPY, 488), rates.convert(Amount.ofMinor(CurrencyUnit.EUR, 300), CurrencyUnit.JPY));
+        final Amount euros = Amount.ofMinor(CurrencyUnit.EUR, 100);
+        Assert.assertSame(euros, rates.convert(euros, CurrencyUnit.EUR));
+        try {
+            rates.convert(Amount.ofMinor(CurrencyUnit.JPY, 100), CurrencyUnit.EUR);
+            Assert.fail("there is no rate from JPY to EUR");
+        } catch (final ExchangeRateNotFoundException expected) {
+            Assert.assertEquals("no exchange rate from JPY to EUR", expected.getMessage());
+        }
+    }
+
+    private static void write(final Path file, final String... lines) throws IOException {
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package com.revolut.handlers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdempotencyCacheTest {
+    private static final byte[] REQUEST = "{}".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void shouldHoldClaimUntilCompletedAndThenReplayIt() {
+        final IdempotencyCache cache = new IdempotencyCache(16, 1000, now::get);
+
+        Assert.assertNull(cache.claim("key", REQUEST));
+        final IdempotencyCache.Entry inFlight = cache.claim("key", REQUEST.clone());
+        Assert.assertTrue(inFlight.isInFlight());
+        Assert.assertTrue(inFlight.isSameRequest(REQUEST.clone()));
+
+        cache.complete("key", REQUEST, 201, "response");
+        final IdempotencyCache.Entry completed = cache.claim("key", REQUEST.clone());
+        Assert.assertFalse(completed.isInFlight());
+        Assert.assertEquals(201, completed.getStatus());
+        Assert.assertEquals("response", completed.getResponse());
+        Assert.assertFalse(completed.isSameRequest(new byte[0]));
+    }
+
+    @Test
+    public void shouldForgetReleasedAndExpiredKeys() {
+        final IdempotencyCache cache = new IdempotencyCache(16, 1000, now::get);
+        Assert.assertNull(cache.claim("released", REQUEST));
+        cache.release("released", REQUEST);
+        Assert.assertNull(cache.claim("released", REQUEST));
+
+        Assert.assertNull(cache.claim("expiring", REQUEST));
+        cache.complete("expiring", REQUEST, 201, "response");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assert.assertNull(cache.claim("expiring", REQUEST));
+    }
+
+    @Test
+    public void shouldEvictKeysNotLookedUpWhenFull() {
+        final IdempotencyCache cache = new IdempotencyCache(1600, 1000, now::get);
+        for (int i = 0; i < 20_000; i++) {
+            final String key = "key" + i;
+            Assert.assertNull(cache.claim(key, REQUEST));
+            cache.complete(key, REQUEST, 201, key);
+            Assert.assertNotNull(cache.claim("key0", REQUEST));
+        }
+
+        Assert.assertTrue(cache.size() <= 1600);
+        Assert.assertEquals("key0", cache.claim("key0", REQUEST).getResponse());
+        Assert.assertNull(cache.claim("key1", REQUEST));
+    }
+}
@@ -5,7 +5,10 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.revolut.App;
 import com.revolut.domain.Account;
+import com.revolut.domain.Amount;
 import com.revolut.domain.Transaction;
+import com.revolut.domain.TransferStatus;
+import com.revolut.serializers.BinaryTransferCodec;
 import io.restassured.RestAssured;
 import io.restassured.response.Response;
 import org.apache.commons.lang3.tuple.Pair;
@@ -16,12 +19,15 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
 
 public class ApiIntegrationTest {
     private static final Money INITIAL_AMOUNT = Money.of(CurrencyUnit.EUR, 1000);
@@ -110,6 +116,27 @@ public class ApiIntegrationTest {
     }
 
 
+    @Test
+    public void shouldAssignIdAndCreationTimeOfEveryTransfer() throws JsonProcessingException {
+        final Pair<Account, Account> accountPair = ensureAccountSetup("assignedOwner1", "assignedOwner2");
+        final UUID clientId = UUID.randomUUID();
+        final String transferRequest = String.format("{\"id\": \"%s\", \"created\": \"1970-01-01T00:00:00Z\", " +
+                        "\"fromAccountNumber\": %s, \"toAccountNumber\": %s, \"money\" : \"EUR 10.00\"}",
+                clientId, accountPair.getLeft().getAccountNumber(), accountPair.getRight().getAccountNumber());
+
+        final Transaction first = mapper.readValue(given().body(transferRequest).post("/transactions")
+                .then().statusCode(HttpStatus.CREATED_201).extract().asString(), Transaction.class);
+        final String batchId = given().body("[" + transferRequest + "]").queryParam("mode", "best_effort").post("/transactions/batch")
+                .then().statusCode(HttpStatus.OK_200).body("committed", is(true)).extract().path("results[0].id");
+        final Transaction second = mapper.readValue(given().get("/transactions/" + batchId).asString(), Transaction.class);
+
+        Assert.assertNotEquals(clientId, first.getId());
+        Assert.assertNotEquals("1970-01-01T00:00:00Z", first.getCreated());
+        Assert.assertNotEquals(clientId, second.getId());
+        Assert.assertNotEquals(first.getId(), second.getId());
+        Assert.assertNotEquals("1970-01-01T00:00:00Z", second.getCreated());
+    }
+
     @Test
     public void shouldReturn400_OnInValidDeposit() throws JsonProcessingException {
         final Pair<Account, Account> accountAccountPair = ensureAccountSetup("nobody3", "somebody3");
@@ -175,6 +202,176 @@ public class ApiIntegrationTest {
     }
 
 
+    @Test
+    public void shouldRollBackAtomicBatchAndReturn409() throws JsonProcessingException {
+        final Pair<Account, Account> accountPair = ensureAccountSetup("batchOwner1", "batchOwner2");
+        final Account first = accountPair.getLeft();
+        final Account second = accountPair.getRight();
+        final String batch = String.format("[{\"fromAccountNumber\": %1$s, \"toAccountNumber\": %2$s, \"money\" : \"EUR 600.00\"}," +
+                        "{\"fromAccountNumber\": %1$s, \"toAccountNumber\": %2$s, \"money\" : \"EUR 600.00\"}]",
+                first.getAccountNumber(), second.getAccountNumber());
+
+        given().body(batch).post("/transactions/batch").then().statusCode(HttpStatus.CONFLICT_409)
+                .body("results.status", hasItems("ABORTED", "INSUFFICIENT_FUNDS"));
+
+        ensureAccountsNotModifiedAfterInvalidOp(first, second);
+    }
+
+    @Test
+    public void shouldApplyBestEffortNdjsonBatch() throws JsonProcessingException {
+        final Pair<Account, Account> accountPair = ensureAccountSetup("batchOwner3", "batchOwner4");
+        final Account first = accountPair.getLeft();
+        final Account second = accountPair.getRight();
+        final String batch = String.format("{\"fromAccountNumber\": %1$s, \"toAccountNumber\": %2$s, \"money\" : \"EUR 600.00\"}\n" +
+                        "{\"fromAccountNumber\": %1$s, \"toAccountNumber\": %2$s, \"money\" : \"EUR 600.00\"}\n",
+                first.getAccountNumber(), second.getAccountNumber());
+
+        given().body(batch).queryParam("mode", "best_effort").post("/transactions/batch").then().statusCode(HttpStatus.OK_200)
+                .body("committed", is(true))
+                .body("results.status", hasItems("OK", "INSUFFICIENT_FUNDS"));
+
+        final List<Account> after = getAccountsByOwner(first.getOwner(), second.getOwner());
+        Assert.assertEquals(first.getMoney().minus(Money.of(CurrencyUnit.EUR, 600)), after.get(0).getMoney());
+        Assert.assertEquals(second.getMoney().plus(Money.of(CurrencyUnit.EUR, 600)), after.get(1).getMoney());
+    }
+
+    @Test
+    public void shouldReturn400_ForMalformedBatch() {
+        given().body("[{\"fromAccountNumber\": ").post("/transactions/batch").then().statusCode(HttpStatus.BAD_REQUEST_400);
+        given().body("[]").post("/transactions/batch").then().statusCode(HttpStatus.BAD_REQUEST_400);
+        given().body("[]").queryParam("mode", "eventually").post("/transactions/batch").then().statusCode(HttpStatus.BAD_REQUEST_400);
+    }
+
+    @Test
+    public void shouldPageAndStreamAccounts() throws JsonProcessingException {
+        ensureAccountSetup("pagedOwner1", "pagedOwner2");
+        final List<Account> all = mapper.readValue(given().get("/accounts").asString(), new TypeReference<List<Account>>() {
+        });
+
+        final Response firstPage = given().queryParam("limit", 1).get("/accounts");
+        firstPage.then().statusCode(HttpStatus.OK_200)
+                .header("Link", String.format("</accounts?after=%s&limit=1>; rel=\"next\"", all.get(0).getAccountNumber()));
+        final Response secondPage = given().queryParam("after", all.get(0).getAccountNumber()).queryParam("limit", 1).get("/accounts");
+        Assert.assertEquals(all.subList(1, 2), mapper.readValue(secondPage.asString(), new TypeReference<List<Account>>() {
+        }));
+
+        final Response streamed = given().header("Accept", "application/x-ndjson").get("/accounts");
+        streamed.then().statusCode(HttpStatus.OK_200).contentType("application/x-ndjson");
+        final String[] lines = streamed.asString().split("\n");
+        Assert.assertEquals(all.size(), lines.length);
+        Assert.assertEquals(all.get(all.size() - 1), mapper.readValue(lines[lines.length - 1], Account.class));
+
+        given().queryParam("limit", 0).get("/accounts").then().statusCode(HttpStatus.BAD_REQUEST_400);
+    }
+
+    @Test
+    public void shouldListTransactionsOfAnAccount() throws JsonProcessingException {
+        final Pair<Account, Account> accountPair = ensureAccountSetup("historyOwner1", "historyOwner2");
+        final Account first = accountPair.getLeft();
+        final Account second = accountPair.getRight();
+        final String transferRequest = String.format("{\"fromAccountNumber\": %s, \"toAccountNumber\": %s, \"money\" : \"EUR 10.00\"}",
+                first.getAccountNumber(), second.getAccountNumber());
+        final Transaction older = mapper.readValue(given().body(transferRequest).post("/transactions").asString(), Transaction.class);
+        final Transaction newer = mapper.readValue(given().body(transferRequest).post("/transactions").asString(), Transaction.class);
+
+        final Response history = given().pathParam("accountNumber", second.getAccountNumber()).get("/accounts/{accountNumber}/transactions");
+        history.then().statusCode(HttpStatus.OK_200);
+        final List<Transaction> transactions = mapper.readValue(history.asString(), new TypeReference<List<Transaction>>() {
+        });
+        Assert.assertEquals(Arrays.asList(older.getId(), newer.getId()), transactions.stream().map(Transaction::getId).collect(Collectors.toList()));
+
+        given().pathParam("accountNumber", second.getAccountNumber()).queryParam("from", newer.getCreated()).queryParam("limit", 1)
+                .get("/accounts/{accountNumber}/transactions").then().statusCode(HttpStatus.OK_200).body("id", hasItems(newer.getId().toString()));
+        given().pathParam("accountNumber", second.getAccountNumber()).queryParam("from", "yesterday")
+                .get("/accounts/{accountNumber}/transactions").then().statusCode(HttpStatus.BAD_REQUEST_400);
+        given().pathParam("accountNumber", 999999).get("/accounts/{accountNumber}/transactions").then().statusCode(HttpStatus.NOT_FOUND_404);
+    }
+
+    @Test
+    public void shouldReplayTransferWithSameIdempotencyKey() throws JsonProcessingException {
+        final Pair<Account, Account> accountPair = ensureAccountSetup("retryOwner1", "retryOwner2");
+        final Account first = accountPair.getLeft();
+        final Account second = accountPair.getRight();
+        final String transferRequest = String.format("{\"fromAccountNumber\": %s, \"toAccountNumber\": %s, \"money\" : \"EUR 10.00\"}",
+                first.getAccountNumber(), second.getAccountNumber());
+        final String key = UUID.randomUUID().toString();
+
+        final Response original = given().header("Idempotency-Key", key).body(transferRequest).post("/transactions");
+        original.then().statusCode(HttpStatus.CREATED_201);
+        final Response retry = given().header("Idempotency-Key", key).body(transferRequest).post("/transactions");
+        retry.then().statusCode(HttpStatus.CREATED_201).header("Idempotent-Replayed", "true");
+
+        Assert.assertEquals(mapper.readValue(original.asString(), Transaction.class), mapper.readValue(retry.asString(), Transaction.class));
+        Assert.assertEquals(INITIAL_AMOUNT.minus(Money.of(CurrencyUnit.EUR, 10)), getAccountByAccountNumber(first.getAccountNumber()).getMoney());
+        given().header("Idempotency-Key", key).body(transferRequest.replace("10.00", "20.00")).post("/transactions")
+                .then().statusCode(HttpStatus.UNPROCESSABLE_ENTITY_422);
+    }
+
+    @Test
+    public void shouldTransferBinaryRecords() throws JsonProcessingException {
+        final Pair<Account, Account> accountPair = ensureAccountSetup("binaryOwner1", "binaryOwner2");
+        final long first = accountPair.getLeft().getAccountNumber();
+        final long second = accountPair.getRight().getAccountNumber();
+        final byte[] record = new byte[BinaryTransferCodec.REQUEST_BYTES];
+        BinaryTransferCodec.encodeRequest(first, second, Amount.of(Money.of(CurrencyUnit.EUR, 10)), UUID.randomUUID(), record, 0);
+
+        final Response original = given().contentType(BinaryTransferCodec.CONTENT_TYPE).body(record).post("/transactions");
+        original.then().statusCode(HttpStatus.CREATED_201).contentType(BinaryTransferCodec.CONTENT_TYPE);
+        final byte[] response = original.asByteArray();
+        Assert.assertEquals(BinaryTransferCodec.RESPONSE_BYTES, response.length);
+        final ByteBuffer buffer = ByteBuffer.wrap(response);
+        ensureTransactionPersistedIsSameAsRequested(new UUID(buffer.getLong(), buffer.getLong()), first, second, Money.of(CurrencyUnit.EUR, 10));
+        final Response retry = given().contentType(BinaryTransferCodec.CONTENT_TYPE).body(record).post("/transactions");
+        retry.then().statusCode(HttpStatus.CREATED_201).header("Idempotent-Replayed", "true");
+        Assert.assertArrayEquals(response, retry.asByteArray());
+
+        final byte[] batch = new byte[2 * BinaryTransferCodec.REQUEST_BYTES];
+        BinaryTransferCodec.encodeRequest(second, first, Amount.of(Money.of(CurrencyUnit.EUR, 5)), null, batch, 0);
+        BinaryTransferCodec.encodeRequest(first, second, Amount.of(Money.of(CurrencyUnit.EUR, 5000)), null, batch, BinaryTransferCodec.REQUEST_BYTES);
+        final byte[] result = given().contentType(BinaryTransferCodec.CONTENT_TYPE).body(batch).post("/transactions/batch?mode=best_effort")
+                .then().statusCode(HttpStatus.OK_200).extract().asByteArray();
+        Assert.assertEquals(TransferStatus.OK, BinaryTransferCodec.statusOf(result, 0));
+        Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, BinaryTransferCodec.statusOf(result, 1));
+        Assert.assertEquals(INITIAL_AMOUNT.minus(Money.of(CurrencyUnit.EUR, 5)), getAccountByAccountNumber(first).getMoney());
+
+        given().contentType(BinaryTransferCodec.CONTENT_TYPE).body(new byte[BinaryTransferCodec.REQUEST_BYTES - 1]).post("/transactions")
+                .then().statusCode(HttpStatus.BAD_REQUEST_400);
+    }
+
+    @Test
+    public void shouldRevalidateAccountWithETag() throws JsonProcessingException {
+        final Pair<Account, Account> accountPair = ensureAccountSetup("etagOwner1", "etagOwner2");
+        final long accountNumber = accountPair.getLeft().getAccountNumber();
+        final String etag = given().get("/accounts/" + accountNumber).then().statusCode(HttpStatus.OK_200).extract().header("ETag");
+        Assert.assertNotNull(etag);
+        given().header("If-None-Match", etag).get("/accounts/" + accountNumber).then().statusCode(HttpStatus.NOT_MODIFIED_304);
+
+        given().body(String.format("{\"fromAccountNumber\": %s, \"toAccountNumber\": %s, \"money\" : \"EUR 1.00\"}",
+                accountNumber, accountPair.getRight().getAccountNumber()))
+                .post("/transactions").then().statusCode(HttpStatus.CREATED_201);
+        final Response changed = given().header("If-None-Match", etag).get("/accounts/" + accountNumber);
+        changed.then().statusCode(HttpStatus.OK_200);
+        Assert.assertNotEquals(etag, changed.header("ETag"));
+        Assert.assertEquals(INITIAL_AMOUNT.minus(Money.of(CurrencyUnit.EUR, 1)), mapper.readValue(changed.asString(), Account.class).getMoney());
+    }
+
+    @Test
+    public void shouldExposePrometheusMetrics() throws JsonProcessingException {
+        final Pair<Account, Account> accountPair = ensureAccountSetup("metricsOwner1", "metricsOwner2");
+        given().body(String.format("{\"fromAccountNumber\": %s, \"toAccountNumber\": %s, \"money\" : \"EUR 5000.00\"}",
+                accountPair.getLeft().getAccountNumber(), accountPair.getRight().getAccountNumber()))
+                .post("/transactions").then().statusCode(HttpStatus.BAD_REQUEST_400);
+
+        final Response response = given().get("/metrics");
+        response.then().statusCode(HttpStatus.OK_200).contentType("text/plain");
+        final String metrics = response.asString();
+        Assert.assertTrue(metrics.contains("http_request_duration_seconds_count{method=\"POST\",route=\"/transactions\"}"));
+        Assert.assertTrue(metrics.contains("http_request_duration_seconds_bucket{method=\"GET\",route=\"/accounts/:accountNumber\",le=\"+Inf\"}"));
+        Assert.assertFalse(metrics.contains("transfers_total{outcome=\"insufficient_funds\"} 0\n"));
+        Assert.assertTrue(metrics.contains("transfer_lock_retries_total "));
+        Assert.assertFalse(metrics.contains("accounts 0\n"));
+    }
+
     @Test
     public void shouldThrow404_WhenNotExistingAccountIsRequested() {
         long accountNumber = 9999L;
@@ -186,6 +383,10 @@ public class ApiIntegrationTest {
     public void shouldThrow400_ForInvalidOwner() {
         final String json = String.format("{\"owner\" : \"%s\", \"money\" : \"%s\"}", "", INITIAL_AMOUNT);
         given().body(json).post("/accounts").then().statusCode(HttpStatus.BAD_REQUEST_400);
+        final char[] longOwner = new char[256];
+        Arrays.fill(longOwner, 'x');
+        final String longOwnerJson = String.format("{\"owner\" : \"%s\", \"money\" : \"%s\"}", new String(longOwner), INITIAL_AMOUNT);
+        given().body(longOwnerJson).post("/accounts").then().statusCode(HttpStatus.BAD_REQUEST_400);
     }
 
     @Test
@@ -0,0 +1,67 @@
+package com.revolut.integration;
+
+import com.revolut.App;
+import com.revolut.ExecutionMode;
+import com.revolut.domain.Amount;
+import com.revolut.domain.TransferStatus;
+import com.revolut.serializers.BinaryTransferCodec;
+import io.javalin.Javalin;
+import io.restassured.specification.RequestSpecification;
+import org.eclipse.jetty.http.HttpStatus;
+import org.joda.money.CurrencyUnit;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+
+public class AsyncExecutionIntegrationTest {
+    private static final int PORT = 7001;
+    private static Javalin server;
+
+    @BeforeClass
+    public static void setUp() {
+        server = App.start(PORT, ExecutionMode.ASYNC);
+        request().body("{\"owner\" : \"asyncOwner1\", \"money\" : \"EUR 100.00\"}").post("/accounts").then().statusCode(HttpStatus.CREATED_201);
+        request().body("{\"owner\" : \"asyncOwner2\", \"money\" : \"EUR 100.00\"}").post("/accounts").then().statusCode(HttpStatus.CREATED_201);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void shouldCompleteTransfersAsynchronously() {
+        request().body("{\"fromAccountNumber\": 1, \"toAccountNumber\": 2, \"money\" : \"EUR 10.00\"}").post("/transactions")
+                .then().statusCode(HttpStatus.CREATED_201).contentType("application/json").body("money", is("EUR 10.00"));
+        request().body("[{\"fromAccountNumber\": 1, \"toAccountNumber\": 2, \"money\" : \"EUR 10.00\"}]").post("/transactions/batch")
+                .then().statusCode(HttpStatus.CREATED_201).body("results.status", hasItems("OK"));
+        request().get("/accounts/2").then().statusCode(HttpStatus.OK_200).body("money", is("EUR 120.00"));
+    }
+
+    @Test
+    public void shouldMapFailedTransfersAsOnTheRequestThread() {
+        request().body("{\"fromAccountNumber\": 1, \"toAccountNumber\": 99, \"money\" : \"EUR 10.00\"}").post("/transactions")
+                .then().statusCode(HttpStatus.NOT_FOUND_404);
+        request().body("{\"fromAccountNumber\": 1, \"toAccountNumber\": 2, \"money\" : \"EUR 1000.00\"}").post("/transactions")
+                .then().statusCode(HttpStatus.BAD_REQUEST_400);
+    }
+
+    @Test
+    public void shouldCompleteBinaryResponsesAsynchronously() {
+        final byte[] batch = new byte[BinaryTransferCodec.REQUEST_BYTES];
+        BinaryTransferCodec.encodeRequest(1, 2, Amount.ofMinor(CurrencyUnit.EUR, 100_000), null, batch, 0);
+        final byte[] result = request().contentType(BinaryTransferCodec.CONTENT_TYPE).body(batch).post("/transactions/batch")
+                .then().statusCode(HttpStatus.CONFLICT_409).contentType(BinaryTransferCodec.CONTENT_TYPE).extract().asByteArray();
+        Assert.assertEquals(BinaryTransferCodec.BATCH_HEADER_BYTES + BinaryTransferCodec.BATCH_ITEM_BYTES, result.length);
+        Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, BinaryTransferCodec.statusOf(result, 0));
+    }
+
+    private static RequestSpecification request() {
+        return given().port(PORT);
+    }
+}
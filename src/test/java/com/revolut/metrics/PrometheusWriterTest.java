@@ -0,0 +1,50 @@
+package com.revolut.metrics;
+
+import com.revolut.domain.TransferStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class PrometheusWriterTest {
+
+    @Test
+    public void histogramBucketsShouldBeCumulative() throws Exception {
+        final RequestMetrics requestMetrics = new RequestMetrics();
+        requestMetrics.timed("GET", "/accounts", context -> {
+        });
+        final LatencyHistogram histogram = requestMetrics.getRoutes().get(0).histogram;
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(50));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.SECONDS.toNanos(20));
+
+        final String text = new PrometheusWriter().requests(requestMetrics).toString();
+
+        Assert.assertTrue(text.contains("# TYPE http_request_duration_seconds histogram\n"));
+        Assert.assertTrue(text.contains("http_request_duration_seconds_bucket{method=\"GET\",route=\"/accounts\",le=\"1.0E-4\"} 1\n"));
+        Assert.assertTrue(text.contains("http_request_duration_seconds_bucket{method=\"GET\",route=\"/accounts\",le=\"0.0025\"} 1\n"));
+        Assert.assertTrue(text.contains("http_request_duration_seconds_bucket{method=\"GET\",route=\"/accounts\",le=\"0.005\"} 2\n"));
+        Assert.assertTrue(text.contains("http_request_duration_seconds_bucket{method=\"GET\",route=\"/accounts\",le=\"10.0\"} 2\n"));
+        Assert.assertTrue(text.contains("http_request_duration_seconds_bucket{method=\"GET\",route=\"/accounts\",le=\"+Inf\"} 3\n"));
+        Assert.assertTrue(text.contains("http_request_duration_seconds_count{method=\"GET\",route=\"/accounts\"} 3\n"));
+        Assert.assertTrue(text.contains("http_request_duration_seconds_sum{method=\"GET\",route=\"/accounts\"} 20.00305\n"));
+    }
+
+    @Test
+    public void shouldWriteTransferOutcomesAndLockCounters() {
+        final TransferMetrics transferMetrics = new TransferMetrics();
+        transferMetrics.record(TransferStatus.OK);
+        transferMetrics.record(TransferStatus.INSUFFICIENT_FUNDS);
+        transferMetrics.record(TransferStatus.INSUFFICIENT_FUNDS);
+        final LockContentionMetrics lockContentionMetrics = new LockContentionMetrics();
+        lockContentionMetrics.retried(1);
+
+        final String text = new PrometheusWriter().transfers(transferMetrics).locks(lockContentionMetrics).gauge("accounts", "Accounts.", 7).toString();
+
+        Assert.assertTrue(text.contains("transfers_total{outcome=\"ok\"} 1\n"));
+        Assert.assertTrue(text.contains("transfers_total{outcome=\"insufficient_funds\"} 2\n"));
+        Assert.assertTrue(text.contains("transfers_total{outcome=\"account_not_found\"} 0\n"));
+        Assert.assertTrue(text.contains("transfer_lock_retries_total 1\n"));
+        Assert.assertTrue(text.contains("# TYPE accounts gauge\naccounts 7\n"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.revolut.persistence;
+
+import com.revolut.domain.Amount;
+import com.revolut.domain.Transaction;
+import org.joda.money.CurrencyUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class ColumnarLedgerTest {
+
+    @Test
+    public void shouldReadBackAppendedTransactionsBySequenceAndId() {
+        final ColumnarLedger ledger = new ColumnarLedger();
+        final List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            final CurrencyUnit currency = i % 3 == 0 ? CurrencyUnit.EUR : i % 3 == 1 ? CurrencyUnit.USD : CurrencyUnit.JPY;
+            final Transaction transaction = Transaction.builder()
+                    .accountFrom(i).accountTo(i + 1L)
+                    .amount(Amount.ofMinor(currency, i - 100_000L))
+                    .created(Instant.ofEpochSecond(1_600_000_000L + i, i * 1_000L).toString())
+                    .build();
+            transactions.add(transaction);
+            Assert.assertEquals(i + 1, ledger.append(transaction));
+        }
+
+        Assert.assertEquals(transactions.size(), ledger.size());
+        for (int i = 0; i < transactions.size(); i += 997) {
+            final Transaction expected = transactions.get(i);
+            Assert.assertEquals(expected, ledger.get(i + 1));
+            Assert.assertEquals(i + 1, ledger.find(expected.getId()));
+            Assert.assertFalse(ledger.get(i + 1).getIsExecuting().get());
+        }
+        Assert.assertEquals(0, ledger.find(UUID.randomUUID()));
+    }
+
+    @Test
+    public void shouldIgnoreTransactionWithIdAlreadyHeld() {
+        final ColumnarLedger ledger = new ColumnarLedger();
+        final Transaction transaction = Transaction.builder().accountFrom(1).accountTo(2).amount(Amount.ofMinor(CurrencyUnit.EUR, 5)).build();
+
+        Assert.assertEquals(1, ledger.append(transaction));
+        Assert.assertEquals(0, ledger.append(transaction));
+        Assert.assertEquals(1, ledger.size());
+        Assert.assertEquals(transaction, ledger.get(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldRejectSequenceNotAppended() {
+        new ColumnarLedger().get(1);
+    }
+}
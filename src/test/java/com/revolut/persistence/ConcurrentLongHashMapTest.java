@@ -0,0 +1,81 @@
+package com.revolut.persistence;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+public class ConcurrentLongHashMapTest {
+
+    @Test
+    public void shouldPutAndGetAcrossResizes() {
+        final ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<>(0, 1);
+        for (long key = -500; key < 500; key++) {
+            Assert.assertNull(map.put(key, "v" + key));
+        }
+        Assert.assertEquals(1000, map.size());
+        for (long key = -500; key < 500; key++) {
+            Assert.assertEquals("v" + key, map.get(key));
+        }
+        Assert.assertNull(map.get(Long.MAX_VALUE));
+        Assert.assertEquals("v0", map.put(0, "zero"));
+        Assert.assertEquals("zero", map.get(0));
+        Assert.assertEquals(1000, map.values().size());
+    }
+
+    @Test
+    public void putIfAbsentShouldKeepExistingValue() {
+        final ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<>();
+        Assert.assertNull(map.putIfAbsent(7, "first"));
+        Assert.assertEquals("first", map.putIfAbsent(7, "second"));
+        Assert.assertEquals("first", map.get(7));
+    }
+
+    @Test
+    public void concurrentWritersAndReadersShouldSeeEveryEntry() throws Exception {
+        final int threads = 4;
+        final int keysPerThread = 20_000;
+        final ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<>(16, 4);
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads + 1);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final long offset = (long) t * keysPerThread;
+                writers.add(executorService.submit(() -> {
+                    start.await();
+                    for (long key = offset; key < offset + keysPerThread; key++) {
+                        Assert.assertNull(map.putIfAbsent(key, key));
+                        Assert.assertEquals(Long.valueOf(key), map.get(key));
+                    }
+                    return null;
+                }));
+            }
+            final Future<?> iterating = executorService.submit(() -> {
+                start.await();
+                while (map.size() < threads * keysPerThread) {
+                    for (Long value : map.values()) {
+                        Assert.assertNotNull(value);
+                    }
+                }
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            iterating.get(30, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        final Set<Long> values = new HashSet<>(map.values());
+        Assert.assertEquals(threads * keysPerThread, values.size());
+        Assert.assertEquals(threads * keysPerThread, map.size());
+    }
+}
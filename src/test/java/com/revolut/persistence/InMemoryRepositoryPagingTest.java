@@ -0,0 +1,59 @@
+package com.revolut.persistence;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Page;
+import com.revolut.domain.Transaction;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class InMemoryRepositoryPagingTest {
+
+    @Test
+    public void shouldPageTransactionsInPersistenceOrder() {
+        final TransactionRepository repository = new InMemoryTransactionRepository();
+        final List<Transaction> persisted = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            final Transaction transaction = Transaction.builder().accountFrom(1).accountTo(2).money(Money.of(CurrencyUnit.EUR, i + 1)).build();
+            repository.persistTransaction(transaction);
+            persisted.add(transaction);
+        }
+        repository.persistTransaction(persisted.get(0));
+
+        final List<Transaction> read = new ArrayList<>();
+        long after = 0;
+        Page<Transaction> page;
+        do {
+            page = repository.getTransactions(after, 10);
+            Assert.assertTrue(page.getItems().size() <= 10);
+            read.addAll(page.getItems());
+            after = page.getCursor();
+        } while (page.hasMore());
+
+        Assert.assertEquals(persisted, read);
+        Assert.assertEquals(25, after);
+        Assert.assertTrue(repository.getTransactions(after, 10).getItems().isEmpty());
+    }
+
+    @Test
+    public void shouldPageAccountsInAccountNumberOrder() throws Exception {
+        final AccountRepository repository = new InMemoryAccountRepository();
+        for (int i = 0; i < 5; i++) {
+            repository.createAccount(Account.builder().owner("owner" + i).money(Money.of(CurrencyUnit.EUR, 10)).build());
+        }
+
+        final Page<Account> first = repository.getAccounts(0, 3);
+        Assert.assertEquals(3, first.getItems().size());
+        Assert.assertEquals(1, first.getItems().get(0).getAccountNumber());
+        Assert.assertTrue(first.hasMore());
+
+        final Page<Account> second = repository.getAccounts(first.getCursor(), 3);
+        Assert.assertEquals(2, second.getItems().size());
+        Assert.assertEquals(4, second.getItems().get(0).getAccountNumber());
+        Assert.assertFalse(second.hasMore());
+    }
+}
@@ -0,0 +1,54 @@
+package com.revolut.persistence;
+
+import com.revolut.domain.Transaction;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class InMemoryTransactionRepositoryTest {
+    private static final Instant START = Instant.parse("2020-01-05T11:00:00Z");
+
+    @Test
+    public void shouldIndexTransactionsOfEachAccountByCreationTime() {
+        final TransactionRepository repository = new InMemoryTransactionRepository();
+        final Transaction first = transaction(1, 2, 0);
+        final Transaction third = transaction(2, 1, 20);
+        final Transaction second = transaction(1, 3, 10);
+        final Transaction other = transaction(2, 3, 5);
+        for (Transaction transaction : Arrays.asList(first, third, second, other)) {
+            repository.persistTransaction(transaction);
+        }
+
+        Assert.assertEquals(Arrays.asList(first, second, third), repository.getAccountTransactions(1, Instant.MIN, Instant.MAX, 10));
+        Assert.assertEquals(Arrays.asList(second, third), repository.getAccountTransactions(1, START.plusSeconds(10), Instant.MAX, 10));
+        Assert.assertEquals(Collections.singletonList(second), repository.getAccountTransactions(1, START.plusSeconds(1), START.plusSeconds(20), 10));
+        Assert.assertEquals(Arrays.asList(first, second), repository.getAccountTransactions(1, Instant.MIN, Instant.MAX, 2));
+        Assert.assertEquals(Arrays.asList(other, second), repository.getAccountTransactions(3, Instant.MIN, Instant.MAX, 10));
+        Assert.assertTrue(repository.getAccountTransactions(4, Instant.MIN, Instant.MAX, 10).isEmpty());
+    }
+
+    @Test
+    public void shouldKeepManyTransactionsSortedWhenPersistedOutOfOrder() {
+        final TransactionRepository repository = new InMemoryTransactionRepository();
+        for (int i = 0; i < 1000; i++) {
+            repository.persistTransaction(transaction(1, 2, i % 2 == 0 ? i : i - 3));
+        }
+
+        final List<Transaction> history = repository.getAccountTransactions(2, Instant.MIN, Instant.MAX, 1000);
+        Assert.assertEquals(1000, history.size());
+        for (int i = 1; i < history.size(); i++) {
+            Assert.assertTrue(Instant.parse(history.get(i - 1).getCreated()).compareTo(Instant.parse(history.get(i).getCreated())) <= 0);
+        }
+    }
+
+    private static Transaction transaction(final long from, final long to, final int secondsAfterStart) {
+        return Transaction.builder().accountFrom(from).accountTo(to).money(Money.of(CurrencyUnit.EUR, 10))
+                .created(START.plusSeconds(secondsAfterStart).toString()).build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.revolut.persistence.journal;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class JournalTest {
+    private static final long SEGMENT_BYTES = 1 << 20;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReplayRecordsInAppendOrder() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        try (Journal journal = Journal.open(directory, FsyncPolicy.GROUP, 10, SEGMENT_BYTES, 0, record -> Assert.fail("journal should be empty"))) {
+            for (long i = 0; i < 1000; i++) {
+                journal.append(record(i));
+            }
+            journal.awaitDurable();
+        }
+
+        Assert.assertEquals(range(1000), replay(directory, FsyncPolicy.NONE));
+    }
+
+    @Test
+    public void shouldTruncateTornTailAndKeepAppending() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        try (Journal journal = Journal.open(directory, FsyncPolicy.NONE, 10, SEGMENT_BYTES, 0, record -> { })) {
+            journal.append(record(0));
+            journal.append(record(1));
+        }
+        try (FileChannel channel = FileChannel.open(onlySegment(directory), StandardOpenOption.WRITE)) {
+            final long size = channel.size();
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 8, 1, 2}), size);
+            // corrupt the checksum of the second record
+            channel.write(ByteBuffer.wrap(new byte[]{42}), size - 1);
+        }
+
+        final List<Long> replayed = new ArrayList<>();
+        try (Journal journal = Journal.open(directory, FsyncPolicy.GROUP, 10, SEGMENT_BYTES, 0, record -> replayed.add(record.getLong()))) {
+            journal.append(record(2));
+            journal.awaitDurable();
+        }
+        Assert.assertEquals(range(1), replayed);
+
+        final List<Long> expected = new ArrayList<>(range(1));
+        expected.add(2L);
+        Assert.assertEquals(expected, replay(directory, FsyncPolicy.GROUP));
+    }
+
+    @Test
+    public void concurrentWritersShouldAllBecomeDurable() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final int writers = 8;
+        final int perWriter = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try (Journal journal = Journal.open(directory, FsyncPolicy.GROUP, 10, SEGMENT_BYTES, 0, record -> { })) {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                final long base = w * perWriter;
+                futures.add(executor.submit(() -> {
+                    for (long i = base; i < base + perWriter; i++) {
+                        journal.append(record(i));
+                        journal.awaitDurable();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final List<Long> replayed = replay(directory, FsyncPolicy.NONE);
+        replayed.sort(Long::compare);
+        Assert.assertEquals(range(writers * perWriter), replayed);
+    }
+
+    @Test
+    public void shouldReplayRecordsLargerThanOneRead() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final ByteBuffer large = ByteBuffer.allocate(Journal.MAX_RECORD_BYTES);
+        large.putLong(0, 7);
+        try (Journal journal = Journal.open(directory, FsyncPolicy.INTERVAL, 1, SEGMENT_BYTES, 0, record -> { })) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(large.duplicate());
+            }
+        }
+
+        final List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            expected.add(7L);
+        }
+        Assert.assertEquals(expected, replay(directory, FsyncPolicy.NONE));
+    }
+
+    @Test
+    public void shouldRollSegmentsAndReplayFromAPosition() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final long[] positions = new long[100];
+        try (Journal journal = Journal.open(directory, FsyncPolicy.GROUP, 10, 64, 0, record -> { })) {
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = journal.position();
+                journal.append(record(i));
+                journal.awaitDurable();
+            }
+            Assert.assertTrue(journal.getSegmentCount() > 10);
+
+            final int segments = journal.getSegmentCount();
+            final int deleted = journal.deleteSegmentsBefore(positions[50]);
+            Assert.assertTrue(deleted > 0);
+            Assert.assertEquals(segments - deleted, journal.getSegmentCount());
+        }
+
+        final List<Long> replayed = new ArrayList<>();
+        Journal.open(directory, FsyncPolicy.GROUP, 10, 64, positions[60], record -> replayed.add(record.getLong())).close();
+        Assert.assertEquals(range(100).subList(60, 100), replayed);
+
+        try {
+            Journal.open(directory, FsyncPolicy.GROUP, 10, 64, 0, record -> { }).close();
+            Assert.fail("records before the first segment are gone");
+        } catch (final IOException expected) {
+            Assert.assertTrue(expected.getMessage().contains("missing"));
+        }
+    }
+
+    private static Path onlySegment(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            final List<Path> segments = files.collect(Collectors.toList());
+            Assert.assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static List<Long> replay(final Path directory, final FsyncPolicy policy) throws Exception {
+        final List<Long> replayed = new ArrayList<>();
+        Journal.open(directory, policy, 10, SEGMENT_BYTES, 0, record -> replayed.add(record.getLong())).close();
+        return replayed;
+    }
+
+    private static ByteBuffer record(final long value) {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        buffer.putLong(0, value);
+        return buffer;
+    }
+
+    private static List<Long> range(final int count) {
+        final List<Long> values = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,255 @@
+package com.revolut.persistence.journal;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.BatchMode;
+import com.revolut.domain.Transaction;
+import com.revolut.service.TransactionService;
+import com.revolut.service.TransactionServiceImpl;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class JournaledStoreTest {
+    private static final Money INITIAL_BALANCE = Money.of(CurrencyUnit.EUR, 1000);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldRecoverAccountsAndTransactions() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final List<Account> before;
+        final List<Transaction> transactions = new ArrayList<>();
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            final Account first = store.getAccountRepository().createAccount(Account.builder().owner("first").money(INITIAL_BALANCE).build());
+            final Account second = store.getAccountRepository().createAccount(Account.builder().owner("zweiter Eigentümer").money(INITIAL_BALANCE).build());
+            final TransactionService service = new TransactionServiceImpl(store.getAccountRepository(), store.getTransactionRepository());
+
+            transactions.add(service.transfer(transfer(first, second, 100)));
+            final List<Transaction> batch = Arrays.asList(transfer(second, first, 30), transfer(first, second, 5));
+            Assert.assertTrue(service.transferBatch(batch, BatchMode.ATOMIC).isCommitted());
+            transactions.addAll(batch);
+            Assert.assertFalse(service.transferBatch(Arrays.asList(transfer(first, second, 1), transfer(first, second, 5000)), BatchMode.ATOMIC).isCommitted());
+
+            before = copies(store);
+        }
+
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            Assert.assertEquals(before, copies(store));
+            Assert.assertEquals(Money.of(CurrencyUnit.EUR, 925), store.getAccountRepository().getAccountByNumber(1).getMoney());
+            Assert.assertEquals(transactions, store.getTransactionRepository().getTransactions(0, 10).getItems());
+
+            final Account third = store.getAccountRepository().createAccount(Account.builder().owner("third").money(INITIAL_BALANCE).build());
+            Assert.assertEquals(3, third.getAccountNumber());
+        }
+    }
+
+    @Test
+    public void textThatDoesNotFitARecordShouldBeRejectedBeforeAnythingChanges() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final char[] longOwner = new char[70_000];
+        Arrays.fill(longOwner, 'x');
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            try {
+                store.getAccountRepository().createAccount(Account.builder().owner(new String(longOwner)).money(INITIAL_BALANCE).build());
+                Assert.fail("owner should not fit");
+            } catch (final IllegalArgumentException expected) {
+                Assert.assertTrue(store.getAccountRepository().getAllAccounts().isEmpty());
+            }
+            final Account first = store.getAccountRepository().createAccount(Account.builder().owner("first").money(INITIAL_BALANCE).build());
+            try {
+                store.getTransactionRepository().persistTransaction(Transaction.builder().created("2020-01-05T11:48:18.669Z\u00e9")
+                        .accountFrom(first.getAccountNumber()).accountTo(first.getAccountNumber()).money(Money.of(CurrencyUnit.EUR, 1)).build());
+                Assert.fail("created should not fit");
+            } catch (final IllegalArgumentException expected) {
+                Assert.assertTrue(store.getTransactionRepository().getAllTransactions().isEmpty());
+            }
+        }
+
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            Assert.assertEquals(1, store.getAccountRepository().getAllAccounts().size());
+            Assert.assertTrue(store.getTransactionRepository().getAllTransactions().isEmpty());
+        }
+    }
+
+    @Test
+    public void transfersShouldBeRefusedWithoutChangesOnceAJournalWriteFailed() throws Exception {
+        final Path directory = folder.newFolder("journal").toPath();
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            final Account first = store.getAccountRepository().createAccount(Account.builder().owner("first").money(INITIAL_BALANCE).build());
+            final Account second = store.getAccountRepository().createAccount(Account.builder().owner("second").money(INITIAL_BALANCE).build());
+            final TransactionService service = new TransactionServiceImpl(store.getAccountRepository(), store.getTransactionRepository());
+
+            // the journal fails as soon as its segment is full, because the next one cannot be created
+            Files.move(directory, folder.getRoot().toPath().resolve("moved"));
+            for (int i = 0; ; i++) {
+                Assert.assertTrue("journal should have needed a new segment", i < 1000);
+                try {
+                    service.transfer(transfer(first, second, 1));
+                } catch (final UncheckedIOException expected) {
+                    break;
+                }
+            }
+
+            final List<Account> before = copies(store);
+            final int persisted = store.getTransactionRepository().getAllTransactions().size();
+            try {
+                service.transfer(transfer(first, second, 1));
+                Assert.fail("transfer should be refused");
+            } catch (final UncheckedIOException expected) {
+                Assert.assertEquals(before, copies(store));
+            }
+            try {
+                service.transferBatch(Arrays.asList(transfer(first, second, 1), transfer(second, first, 2)), BatchMode.BEST_EFFORT);
+                Assert.fail("batch should be refused");
+            } catch (final UncheckedIOException expected) {
+                Assert.assertEquals(before, copies(store));
+            }
+            Assert.assertEquals(persisted, store.getTransactionRepository().getAllTransactions().size());
+        }
+    }
+
+    @Test
+    public void concurrentTransfersShouldRecoverToTheSameBalances() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final int accountCount = 10;
+        final int threads = 4;
+        final int transfersPerThread = 250;
+        final List<Account> before;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            final List<Account> accounts = new ArrayList<>();
+            for (int i = 0; i < accountCount; i++) {
+                accounts.add(store.getAccountRepository().createAccount(Account.builder().owner("owner" + i).money(INITIAL_BALANCE).build()));
+            }
+            final TransactionService service = new TransactionServiceImpl(store.getAccountRepository(), store.getTransactionRepository());
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < transfersPerThread; i++) {
+                        final Account src = accounts.get(random.nextInt(accountCount));
+                        final Account dst = accounts.get(random.nextInt(accountCount));
+                        try {
+                            service.transfer(transfer(src, dst, random.nextInt(1, 50)));
+                        } catch (final Exception ignored) {
+                            // same account or insufficient funds
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            before = copies(store);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            Assert.assertEquals(before, copies(store));
+            final long total = store.getAccountRepository().getAllAccounts().stream().mapToLong(Account::getBalanceMinorUnits).sum();
+            Assert.assertEquals(accountCount * INITIAL_BALANCE.getAmountMinorLong(), total);
+        }
+    }
+
+    @Test
+    public void shouldRecoverFromSnapshotTakenDuringTransfersAndTruncateJournal() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final int accountCount = 20;
+        final List<Account> before;
+        final List<Transaction> afterLastSnapshot = new ArrayList<>();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            final List<Account> accounts = new ArrayList<>();
+            for (int i = 0; i < accountCount; i++) {
+                accounts.add(store.getAccountRepository().createAccount(Account.builder().owner("owner" + i).money(INITIAL_BALANCE).build()));
+            }
+            final TransactionService service = new TransactionServiceImpl(store.getAccountRepository(), store.getTransactionRepository());
+            for (int round = 0; round < 3; round++) {
+                final Future<?> transfers = executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        service.transfer(transfer(accounts.get(i % accountCount), accounts.get((i + 1) % accountCount), 1));
+                    }
+                    return null;
+                });
+                Assert.assertTrue(store.snapshot());
+                transfers.get(30, TimeUnit.SECONDS);
+            }
+            Assert.assertTrue(store.getRecoveryMetrics().getSegmentsDeleted() > 0);
+            Assert.assertEquals(3, store.getRecoveryMetrics().getSnapshotsTaken());
+
+            for (int i = 0; i < 5; i++) {
+                afterLastSnapshot.add(service.transfer(transfer(accounts.get(0), accounts.get(1), 2)));
+            }
+            before = copies(store);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            Assert.assertEquals(before, copies(store));
+            Assert.assertTrue(store.getRecoveryMetrics().getSnapshotPosition() > 0);
+            Assert.assertEquals(accountCount, store.getRecoveryMetrics().getRecoveredAccounts());
+            final List<Transaction> recovered = new ArrayList<>(store.getTransactionRepository().getAllTransactions());
+            Assert.assertTrue(recovered.containsAll(afterLastSnapshot));
+        }
+    }
+
+    @Test
+    public void shouldFallBackToThePreviousSnapshotWhenTheNewestIsCorrupt() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final List<Account> before;
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            final Account first = store.getAccountRepository().createAccount(Account.builder().owner("first").money(INITIAL_BALANCE).build());
+            final Account second = store.getAccountRepository().createAccount(Account.builder().owner("second").money(INITIAL_BALANCE).build());
+            final TransactionService service = new TransactionServiceImpl(store.getAccountRepository(), store.getTransactionRepository());
+            service.transfer(transfer(first, second, 10));
+            Assert.assertTrue(store.snapshot());
+            service.transfer(transfer(first, second, 20));
+            Assert.assertTrue(store.snapshot());
+            Assert.assertFalse(store.snapshot());
+            before = copies(store);
+        }
+
+        final Path newest = Snapshots.list(directory).get(0);
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (JournaledStore store = JournaledStore.open(options(directory))) {
+            Assert.assertEquals(before, copies(store));
+            Assert.assertEquals(Snapshots.positionOf(Snapshots.list(directory).get(1)), store.getRecoveryMetrics().getSnapshotPosition());
+        }
+    }
+
+    private static JournalOptions options(final Path directory) {
+        return JournalOptions.builder().directory(directory).segmentBytes(4096).snapshotIntervalMillis(0).build();
+    }
+
+    private static Transaction transfer(final Account src, final Account dst, final int euros) {
+        return Transaction.builder().accountFrom(src.getAccountNumber()).accountTo(dst.getAccountNumber()).money(Money.of(CurrencyUnit.EUR, euros)).build();
+    }
+
+    private static List<Account> copies(final JournaledStore store) {
+        final List<Account> accounts = new ArrayList<>();
+        for (Account account : store.getAccountRepository().getAllAccounts()) {
+            accounts.add(Account.copy(account));
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,204 @@
+package com.revolut.serializers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DeserializationProblemHandler;
+import com.revolut.domain.Account;
+import com.revolut.domain.Amount;
+import com.revolut.domain.BatchMode;
+import com.revolut.domain.BatchResult;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.TransferStatus;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+public class SerializersTest {
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new SerializersModule());
+
+    @Test
+    public void moneyShouldMatchJodaFormatting() throws IOException {
+        final Money[] samples = {
+                Money.of(CurrencyUnit.EUR, 0),
+                Money.of(CurrencyUnit.EUR, new BigDecimal("0.05")),
+                Money.of(CurrencyUnit.EUR, new BigDecimal("-1234.5")),
+                Money.ofMinor(CurrencyUnit.EUR, Long.MIN_VALUE),
+                Money.ofMinor(CurrencyUnit.EUR, Long.MAX_VALUE),
+                Money.ofMajor(CurrencyUnit.JPY, 7000),
+                Money.of(CurrencyUnit.of("BHD"), new BigDecimal("1.001"))
+        };
+        for (Money sample : samples) {
+            final String json = mapper.writeValueAsString(new Money[]{sample});
+            Assert.assertEquals("[\"" + sample + "\"]", json);
+            Assert.assertEquals(sample, mapper.readValue(json, Money[].class)[0]);
+        }
+    }
+
+    @Test
+    public void moneyShouldParseWhatJodaParses() throws IOException {
+        final String[] inputs = {"EUR 7000", "EUR   12.5", "EUR +1.50", "EUR -.5", "EUR 3.", "EUR 1.500"};
+        for (String input : inputs) {
+            Assert.assertEquals(Money.parse(input), mapper.readValue("\"" + input + "\"", Money.class));
+        }
+    }
+
+    @Test
+    public void moneyShouldRejectInvalidText() {
+        final String[] inputs = {"EUR ", "EUR", "EUR 1.234", "EUR 1x", "ZZZ 1", "eur 1", "EUR 99999999999999999999"};
+        for (String input : inputs) {
+            try {
+                mapper.readValue("\"" + input + "\"", Money.class);
+                Assert.fail(input + " should not parse");
+            } catch (final IOException expected) {
+                Assert.assertTrue(expected instanceof JsonMappingException);
+            }
+        }
+    }
+
+    @Test
+    public void accountShouldRoundTrip() throws IOException {
+        final Account account = Account.builder().owner("first").accountNumber(12).money(Money.of(CurrencyUnit.EUR, 7000)).build();
+        final String json = mapper.writeValueAsString(account);
+
+        Assert.assertEquals("{\"owner\":\"first\",\"accountNumber\":12,\"money\":\"EUR 7000.00\"}", json);
+        Assert.assertEquals(account, mapper.readValue(json, Account.class));
+    }
+
+    @Test
+    public void transactionShouldRoundTrip() throws IOException {
+        final UUID id = UUID.randomUUID();
+        final Transaction transaction = Transaction.builder().id(id).created("2020-01-05T11:48:18.669Z")
+                .accountFrom(1).accountTo(2).money(Money.of(CurrencyUnit.EUR, 2000)).build();
+        final String json = mapper.writeValueAsString(transaction);
+
+        Assert.assertEquals("{\"id\":\"" + id + "\",\"created\":\"2020-01-05T11:48:18.669Z\",\"fromAccountNumber\":1," +
+                "\"toAccountNumber\":2,\"money\":\"EUR 2000.00\"}", json);
+        Assert.assertEquals(transaction, mapper.readValue(json, Transaction.class));
+    }
+
+    @Test
+    public void transactionRequestShouldGetGeneratedIdentity() throws IOException {
+        final Transaction request = mapper.readValue("{\"fromAccountNumber\": 1, \"toAccountNumber\": 2, \"money\" : \"EUR 20\"}", Transaction.class);
+
+        Assert.assertNotNull(request.getId());
+        Assert.assertNotNull(request.getCreated());
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 20), request.getMoney());
+    }
+
+    @Test
+    public void moneyMadeUpByAProblemHandlerShouldBeUsed() throws IOException {
+        final ObjectMapper lenient = new ObjectMapper().registerModule(new SerializersModule())
+                .addHandler(new DeserializationProblemHandler() {
+                    @Override
+                    public Object handleUnexpectedToken(final DeserializationContext ctxt, final Class<?> targetType,
+                                                        final JsonToken token, final JsonParser p, final String failureMsg) throws IOException {
+                        return Money.ofMinor(CurrencyUnit.EUR, p.getLongValue());
+                    }
+                });
+        final Transaction request = lenient.readValue("{\"fromAccountNumber\": 1, \"toAccountNumber\": 2, \"money\" : 2000}", Transaction.class);
+
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 20), request.getMoney());
+    }
+
+    @Test
+    public void binaryTransferShouldRoundTrip() {
+        final UUID key = UUID.randomUUID();
+        final byte[] record = new byte[BinaryTransferCodec.REQUEST_BYTES];
+        BinaryTransferCodec.encodeRequest(1, Long.MAX_VALUE, Amount.ofMinor(CurrencyUnit.of("BHD"), 1_001), key, record, 0);
+
+        final Transaction request = BinaryTransferCodec.decodeTransfer(record);
+        Assert.assertEquals(1, request.getFromAccountNumber());
+        Assert.assertEquals(Long.MAX_VALUE, request.getToAccountNumber());
+        Assert.assertEquals(Amount.ofMinor(CurrencyUnit.of("BHD"), 1_001), request.getAmount());
+        Assert.assertEquals(key, BinaryTransferCodec.idempotencyKeyOf(record));
+
+        BinaryTransferCodec.encodeRequest(1, 2, Amount.ofMinor(CurrencyUnit.EUR, 5), null, record, 0);
+        Assert.assertNull(BinaryTransferCodec.idempotencyKeyOf(record));
+
+        final UUID id = UUID.randomUUID();
+        final byte[] response = BinaryTransferCodec.encodeTransfer(Transaction.builder().id(id).created("2020-01-05T11:48:18.669123Z")
+                .accountFrom(1).accountTo(2).money(Money.of(CurrencyUnit.EUR, 20)).build());
+        final ByteBuffer buffer = ByteBuffer.wrap(response);
+        Assert.assertEquals(id, new UUID(buffer.getLong(), buffer.getLong()));
+        Assert.assertEquals(1_578_224_898_669_123L, buffer.getLong());
+    }
+
+    @Test
+    public void binaryCreatedTimeShouldMatchInstantParsing() {
+        final String[] samples = {"2020-01-05T11:48:18Z", "2020-01-05T11:48:18.669Z", "2020-02-29T23:59:59.999999Z",
+                "1970-01-01T00:00:00Z", "1969-12-31T23:59:59.5Z", "+12020-01-05T11:48:18Z"};
+        for (final String sample : samples) {
+            final Instant instant = Instant.parse(sample);
+            Assert.assertEquals(sample, instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000,
+                    BinaryTransferCodec.epochMicrosOf(sample));
+        }
+    }
+
+    @Test
+    public void binaryTransferShouldRejectInvalidRecords() {
+        final byte[] valid = new byte[BinaryTransferCodec.REQUEST_BYTES];
+        BinaryTransferCodec.encodeRequest(1, 2, Amount.ofMinor(CurrencyUnit.EUR, 5), null, valid, 0);
+        final byte[][] records = {
+                new byte[BinaryTransferCodec.REQUEST_BYTES - 1],
+                new byte[BinaryTransferCodec.REQUEST_BYTES],
+                withByte(valid, 23, 0),
+                withByte(valid, 24, 0x7F),
+                withByte(valid, 25, 1),
+                withByte(valid, 30, 1)
+        };
+        for (final byte[] record : records) {
+            try {
+                BinaryTransferCodec.decodeTransfer(record);
+                Assert.fail(Arrays.toString(record) + " should not decode");
+            } catch (final IllegalArgumentException expected) {
+                // rejected
+            }
+        }
+    }
+
+    @Test
+    public void binaryBatchShouldEncodeStatusPerTransfer() {
+        final byte[] body = new byte[2 * BinaryTransferCodec.REQUEST_BYTES];
+        BinaryTransferCodec.encodeRequest(1, 2, Amount.ofMinor(CurrencyUnit.EUR, 5), null, body, 0);
+        BinaryTransferCodec.encodeRequest(3, 4, Amount.ofMinor(CurrencyUnit.USD, 7), null, body, BinaryTransferCodec.REQUEST_BYTES);
+        final List<Transaction> batch = BinaryTransferCodec.decodeBatch(body, 2);
+        Assert.assertEquals(2, batch.size());
+        Assert.assertEquals(Amount.ofMinor(CurrencyUnit.USD, 7), batch.get(1).getAmount());
+        try {
+            BinaryTransferCodec.decodeBatch(body, 1);
+            Assert.fail("batch over the limit should not decode");
+        } catch (final IllegalArgumentException expected) {
+            // rejected
+        }
+
+        final UUID id = UUID.randomUUID();
+        final byte[] response = BinaryTransferCodec.encodeBatchResult(new BatchResult(BatchMode.BEST_EFFORT, false, Arrays.asList(
+                new BatchResult.Item(TransferStatus.OK, id, null),
+                new BatchResult.Item(TransferStatus.INSUFFICIENT_FUNDS, null, "insufficient funds"))));
+        final ByteBuffer buffer = ByteBuffer.wrap(response);
+        Assert.assertEquals(0, buffer.get(0));
+        Assert.assertEquals(2, buffer.getInt(4));
+        Assert.assertEquals(TransferStatus.OK, BinaryTransferCodec.statusOf(response, 0));
+        Assert.assertEquals(id, new UUID(buffer.getLong(16), buffer.getLong(24)));
+        Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, BinaryTransferCodec.statusOf(response, 1));
+        Assert.assertEquals(0, buffer.getLong(40));
+    }
+
+    private static byte[] withByte(final byte[] record, final int index, final int value) {
+        final byte[] copy = record.clone();
+        copy[index] = (byte) value;
+        return copy;
+    }
+}
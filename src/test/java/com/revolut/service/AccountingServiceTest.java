@@ -1,9 +1,14 @@
 package com.revolut.service;
 
+import com.revolut.domain.Account;
+import com.revolut.exceptions.AccountAlreadyExistsException;
 import com.revolut.exceptions.AccountNotFoundException;
 import com.revolut.exceptions.InsufficientFundsException;
 import com.revolut.persistence.AccountRepository;
 import com.revolut.persistence.InMemoryAccountRepository;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -30,4 +35,12 @@ public class AccountingServiceTest {
         accountingService.getAccount(accountId);
     }
 
+    @Test
+    public void shouldCountAccounts() throws AccountAlreadyExistsException {
+        Assert.assertEquals(0, accountingService.getAccountCount());
+        accountingService.createAccount(Account.builder().owner("first").money(Money.of(CurrencyUnit.EUR, 10)).build());
+        accountingService.createAccount(Account.builder().owner("second").money(Money.of(CurrencyUnit.EUR, 10)).build());
+        Assert.assertEquals(2, accountingService.getAccountCount());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+package com.revolut.service;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Amount;
+import com.revolut.domain.BatchMode;
+import com.revolut.domain.BatchResult;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.TransferStatus;
+import com.revolut.exceptions.*;
+import com.revolut.fx.FxRateCache;
+import com.revolut.fx.FxRates;
+import com.revolut.fx.InMemoryFxRateProvider;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Two shards: odd accounts belong to one, even accounts to the other.
+ */
+public class ShardedTransactionServiceTest {
+    private static final Money INITIAL_BALANCE = Money.of(CurrencyUnit.EUR, 1000);
+    private static final int ACCOUNT_COUNT = 4;
+
+    private ShardedTransactionService transactionService;
+    private AccountingService accountingService;
+
+    @Before
+    public void setup() throws AccountAlreadyExistsException {
+        final AccountRepository accountRepository = new InMemoryAccountRepository();
+        accountingService = new AccountingServiceImpl(accountRepository);
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accountingService.createAccount(Account.builder().owner("owner" + i).money(INITIAL_BALANCE).build());
+        }
+        transactionService = new ShardedTransactionService(accountRepository, new InMemoryTransactionRepository(), 2, 64, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        transactionService.close();
+    }
+
+    @Test
+    public void shouldTransferWithinAndBetweenShards() throws Exception {
+        transactionService.transfer(transfer(1, 3, 100));
+        transactionService.transfer(transfer(1, 2, 200));
+
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 700), balanceOf(1));
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 1200), balanceOf(2));
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 1100), balanceOf(3));
+        Assert.assertEquals(2, transactionService.getAllTransactions().size());
+    }
+
+    @Test
+    public void shouldRefundReservationWhenTransferBetweenShardsFails() throws Exception {
+        try {
+            transactionService.transfer(transfer(1, 2, 2000));
+            Assert.fail("transfer should have failed");
+        } catch (final InsufficientFundsException exception) {
+            Assert.assertEquals("Account 1 does not have sufficient funds", exception.getMessage());
+        }
+
+        Assert.assertEquals(INITIAL_BALANCE, balanceOf(1));
+        Assert.assertEquals(INITIAL_BALANCE, balanceOf(2));
+        Assert.assertTrue(transactionService.getAllTransactions().isEmpty());
+    }
+
+    @Test
+    public void creditsThatWouldOverflowTheDestinationShouldFailBeforeTheDebit() throws Exception {
+        final Account full = accountingService.createAccount(Account.builder().owner("full")
+                .balance(Amount.ofMinor(CurrencyUnit.EUR, Long.MAX_VALUE - 10)).build());
+        for (final long from : new long[]{1, 2}) {
+            try {
+                transactionService.transfer(transfer(from, full.getAccountNumber(), 1));
+                Assert.fail("transfer should have failed");
+            } catch (final InvalidDepositException expected) {
+                Assert.assertEquals(INITIAL_BALANCE, balanceOf(from));
+            }
+        }
+        final BatchResult result = transactionService.transferBatch(Arrays.asList(
+                transfer(1, 2, 1), transfer(2, full.getAccountNumber(), 1)), BatchMode.ATOMIC);
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferStatus.INVALID_AMOUNT, result.getResults().get(1).getStatus());
+        Assert.assertEquals(INITIAL_BALANCE, balanceOf(1));
+        Assert.assertEquals(INITIAL_BALANCE, balanceOf(2));
+        Assert.assertEquals(Long.MAX_VALUE - 10, full.getBalanceMinorUnits());
+        Assert.assertTrue(transactionService.getAllTransactions().isEmpty());
+    }
+
+    @Test
+    public void atomicBatchBetweenShardsRollsBackAndReportsFirstFailingTransfer() throws Exception {
+        final List<Transaction> batch = Arrays.asList(
+                transfer(1, 2, 600),
+                transfer(2, 3, 1500),
+                transfer(1, 4, 600),
+                transfer(3, 4, 100));
+
+        final BatchResult result = transactionService.transferBatch(batch, BatchMode.ATOMIC);
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferStatus.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferStatus.ABORTED, result.getResults().get(1).getStatus());
+        Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, result.getResults().get(2).getStatus());
+        Assert.assertEquals(TransferStatus.ABORTED, result.getResults().get(3).getStatus());
+        for (int account = 1; account <= ACCOUNT_COUNT; account++) {
+            Assert.assertEquals(INITIAL_BALANCE, balanceOf(account));
+        }
+        Assert.assertTrue(transactionService.getAllTransactions().isEmpty());
+    }
+
+    @Test
+    public void atomicBatchBetweenShardsCountsOnCreditsFromEarlierTransfers() throws Exception {
+        final List<Transaction> batch = Arrays.asList(
+                transfer(1, 2, 1000),
+                transfer(2, 3, 2000),
+                transfer(3, 4, 3000));
+
+        final BatchResult result = transactionService.transferBatch(batch, BatchMode.ATOMIC);
+
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 0), balanceOf(1));
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 0), balanceOf(2));
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 0), balanceOf(3));
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 4000), balanceOf(4));
+        Assert.assertEquals(3, transactionService.getAllTransactions().size());
+    }
+
+    @Test
+    public void bestEffortBatchAppliesEveryTransferThatSucceeds() throws Exception {
+        final List<Transaction> batch = Arrays.asList(
+                transfer(1, 3, 600),
+                transfer(1, 3, 600),
+                transfer(2, 1, 100),
+                transfer(4, 4, 1),
+                transfer(2, 3, 2000));
+
+        final BatchResult result = transactionService.transferBatch(batch, BatchMode.BEST_EFFORT);
+
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertEquals(TransferStatus.OK, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, result.getResults().get(1).getStatus());
+        Assert.assertEquals(TransferStatus.OK, result.getResults().get(2).getStatus());
+        Assert.assertEquals(TransferStatus.SAME_ACCOUNT, result.getResults().get(3).getStatus());
+        Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, result.getResults().get(4).getStatus());
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 500), balanceOf(1));
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 900), balanceOf(2));
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 1600), balanceOf(3));
+        Assert.assertEquals(2, transactionService.getAllTransactions().size());
+    }
+
+    @Test
+    public void shouldConvertTransfersBetweenCurrenciesWithinAndBetweenShards() throws Exception {
+        final FxRateCache fxRates = new FxRateCache(new InMemoryFxRateProvider(FxRates.builder()
+                .rate(CurrencyUnit.EUR, CurrencyUnit.USD, new BigDecimal("1.0842")).build()), 0);
+        final AccountRepository accountRepository = new InMemoryAccountRepository();
+        final AccountingService accounts = new AccountingServiceImpl(accountRepository);
+        accounts.createAccount(Account.builder().owner("euro").money(INITIAL_BALANCE).build());
+        accounts.createAccount(Account.builder().owner("dollar even").money(Money.of(CurrencyUnit.USD, 1000)).build());
+        accounts.createAccount(Account.builder().owner("dollar odd").money(Money.of(CurrencyUnit.USD, 1000)).build());
+        final ShardedTransactionService fxService = new ShardedTransactionService(accountRepository,
+                new InMemoryTransactionRepository(), 2, 64, 1000, fxRates);
+        try {
+            fxService.transfer(transfer(1, 2, 100));
+            fxService.transfer(transfer(1, 3, 100));
+            final BatchResult result = fxService.transferBatch(Arrays.asList(transfer(1, 2, 100), transfer(1, 3, 1000)), BatchMode.ATOMIC);
+
+            Assert.assertFalse(result.isCommitted());
+            Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, result.getResults().get(1).getStatus());
+            Assert.assertEquals(Money.of(CurrencyUnit.EUR, 800), accounts.getAccount(1).getMoney());
+            Assert.assertEquals(Money.of(CurrencyUnit.USD, 1108.42), accounts.getAccount(2).getMoney());
+            Assert.assertEquals(Money.of(CurrencyUnit.USD, 1108.42), accounts.getAccount(3).getMoney());
+        } finally {
+            fxService.close();
+        }
+    }
+
+    @Test
+    public void concurrentTransfersShouldConserveMoney() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int worker = 0; worker < 8; worker++) {
+                futures.add(executorService.submit(() -> {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 2000; i++) {
+                        final long from = 1 + random.nextInt(ACCOUNT_COUNT);
+                        final long to = 1 + (from + random.nextInt(ACCOUNT_COUNT - 1)) % ACCOUNT_COUNT;
+                        try {
+                            if (random.nextBoolean()) {
+                                transactionService.transfer(transfer(from, to, 1 + random.nextInt(300)));
+                            } else {
+                                transactionService.transferBatch(Arrays.asList(transfer(from, to, 1 + random.nextInt(300)),
+                                        transfer(to, from, 1 + random.nextInt(300))), BatchMode.ATOMIC);
+                            }
+                        } catch (final InsufficientFundsException ignored) {
+                            // expected once an account runs dry
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        Money total = Money.zero(CurrencyUnit.EUR);
+        for (int account = 1; account <= ACCOUNT_COUNT; account++) {
+            Assert.assertFalse(balanceOf(account).isNegative());
+            total = total.plus(balanceOf(account));
+        }
+        Assert.assertEquals(INITIAL_BALANCE.multipliedBy(ACCOUNT_COUNT), total);
+    }
+
+    private Money balanceOf(final long accountNumber) throws AccountNotFoundException {
+        return accountingService.getAccount(accountNumber).getMoney();
+    }
+
+    private static Transaction transfer(final long from, final long to, final long euros) {
+        return Transaction.builder().accountFrom(from).accountTo(to).money(Money.of(CurrencyUnit.EUR, euros)).build();
+    }
+}
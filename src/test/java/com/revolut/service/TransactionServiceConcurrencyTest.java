@@ -4,6 +4,7 @@ package com.revolut.service;
 import com.revolut.domain.Account;
 import com.revolut.domain.Transaction;
 import com.revolut.exceptions.*;
+import com.revolut.metrics.LockContentionMetrics;
 import com.revolut.persistence.AccountRepository;
 import com.revolut.persistence.InMemoryAccountRepository;
 import com.revolut.persistence.InMemoryTransactionRepository;
@@ -65,7 +66,7 @@ public class TransactionServiceConcurrencyTest {
                 Assert.assertEquals(expected, srcAccountAfterTransfer.getMoney().plus(dstAccountAfterTransfer.getMoney()));
                 waiter.resume();
 
-            } catch (final InsufficientFundsException | SameAccountTransferException | AccountNotFoundException | InvalidDepositException exception) {
+            } catch (final InsufficientFundsException | SameAccountTransferException | AccountNotFoundException | InvalidDepositException | TransferTimeoutException | ExchangeRateNotFoundException exception) {
                 exception.printStackTrace();
             }
         };
@@ -83,6 +84,88 @@ public class TransactionServiceConcurrencyTest {
     }
 
 
+    @Test
+    public void creditsToHotAccountShouldNotWaitForItsLock() throws Exception {
+        final InMemoryAccountRepository repository = new InMemoryAccountRepository(new long[]{1}, 4);
+        final Money initial = Money.of(CurrencyUnit.EUR, INITIAL_BANK_BALANCE);
+        for (int i = 0; i <= THREAD_COUNT; i++) {
+            repository.createAccount(Account.builder().owner("owner" + i).money(initial).build());
+        }
+        final TransactionService service = new TransactionServiceImpl(repository, new InMemoryTransactionRepository());
+        final Account hot = repository.getAccountByNumber(1);
+        final HotAccountConsolidator consolidator = new HotAccountConsolidator(repository, new long[]{1}, TimeUnit.HOURS.toMillis(1));
+
+        final List<Future<?>> futures = new ArrayList<>();
+        hot.getLock().lock();
+        try {
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                final long source = 2 + i;
+                futures.add(executorService.submit(() -> {
+                    for (int transfer = 0; transfer < 100; transfer++) {
+                        service.transfer(Transaction.builder().accountFrom(source).accountTo(1).money(Money.of(CurrencyUnit.EUR, 1)).build());
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            // the lock is held by a withdrawal as far as the consolidator can tell, so the credits stay unpublished
+            executorService.submit(consolidator::consolidate).get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(initial, hot.snapshot().getMoney());
+        } finally {
+            hot.getLock().unlock();
+        }
+
+        final Money credited = Money.of(CurrencyUnit.EUR, THREAD_COUNT * 100);
+        Assert.assertEquals(initial.plus(credited), hot.getMoney());
+        consolidator.consolidate();
+        Assert.assertEquals(initial.plus(credited), hot.snapshot().getMoney());
+        consolidator.close();
+
+        service.transfer(Transaction.builder().accountFrom(1).accountTo(2).money(initial.plus(credited)).build());
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 0), hot.snapshot().getMoney());
+        Assert.assertEquals(initial.minus(Money.of(CurrencyUnit.EUR, 100)).plus(initial.plus(credited)),
+                repository.getAccountByNumber(2).getMoney());
+    }
+
+    @Test
+    public void deferredCreditsShouldNotWaitForTheDestinationLock() throws Exception {
+        final DeferredCreditApplier creditApplier = new DeferredCreditApplier(1);
+        final TransactionService service = new TransactionServiceImpl(accountRepository, new InMemoryTransactionRepository(),
+                LockAcquisitionPolicy.defaults(), new LockContentionMetrics(), creditApplier, null);
+        final Account dst = accountRepository.getAccountByNumber(dstAccountNumber);
+        final Money initial = Money.of(CurrencyUnit.EUR, INITIAL_BANK_BALANCE);
+
+        final List<Future<?>> futures = new ArrayList<>();
+        dst.getLock().lock();
+        try {
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int transfer = 0; transfer < 100; transfer++) {
+                        service.transfer(Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber)
+                                .money(Money.of(CurrencyUnit.EUR, 1)).build());
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(initial.minus(Money.of(CurrencyUnit.EUR, THREAD_COUNT * 100)),
+                    accountRepository.getAccountByNumber(srcAccountNumber).getMoney());
+            Assert.assertEquals(initial, dst.getMoney());
+        } finally {
+            dst.getLock().unlock();
+        }
+        creditApplier.close();
+
+        Assert.assertEquals(initial.plus(Money.of(CurrencyUnit.EUR, THREAD_COUNT * 100)), dst.snapshot().getMoney());
+        Assert.assertEquals(THREAD_COUNT * 100, creditApplier.getCredits());
+        Assert.assertTrue(creditApplier.getApplications() < creditApplier.getCredits());
+        verifyAccountStateWithLockStatus();
+    }
+
     private void verifyAccountStateWithLockStatus() {
         final List<Account> accounts = new ArrayList<>(accountRepository.getAllAccounts());
         final Account currentSrcAccount = accounts.stream().filter(acc -> acc.getAccountNumber() == srcAccountNumber).findFirst().get();
@@ -1,8 +1,16 @@
 package com.revolut.service;
 
 import com.revolut.domain.Account;
+import com.revolut.domain.Amount;
+import com.revolut.domain.BatchMode;
+import com.revolut.domain.BatchResult;
 import com.revolut.domain.Transaction;
+import com.revolut.domain.TransferStatus;
 import com.revolut.exceptions.*;
+import com.revolut.fx.FxRateCache;
+import com.revolut.fx.FxRates;
+import com.revolut.fx.InMemoryFxRateProvider;
+import com.revolut.metrics.LockContentionMetrics;
 import com.revolut.persistence.AccountRepository;
 import com.revolut.persistence.InMemoryAccountRepository;
 import com.revolut.persistence.InMemoryTransactionRepository;
@@ -17,7 +25,11 @@ import org.junit.rules.ExpectedException;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class TransactionServiceTest {
 
@@ -27,6 +39,7 @@ public class TransactionServiceTest {
 
     private TransactionService transactionService;
     private TransactionRepository transactionRepository;
+    private AccountRepository accountRepository;
     private AccountingService accountingService;
     private long srcAccountNumber;
     private long dstAccountNumber;
@@ -34,14 +47,14 @@ public class TransactionServiceTest {
     @Before
     public void setup() throws AccountAlreadyExistsException {
         transactionRepository = new InMemoryTransactionRepository();
-        AccountRepository accountRepository = new InMemoryAccountRepository();
+        accountRepository = new InMemoryAccountRepository();
         transactionService = new TransactionServiceImpl(accountRepository, transactionRepository);
         accountingService = new AccountingServiceImpl(accountRepository);
         createTwoAccounts();
     }
 
     @Test
-    public void shouldThrowInsufficientFundsException() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException {
+    public void shouldThrowInsufficientFundsException() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
         expectedException.expect(InsufficientFundsException.class);
         expectedException.expectMessage(String.format("Account %s does not have sufficient funds", srcAccountNumber));
         Money hugeAmount = Money.of(CurrencyUnit.EUR, 2000000.00);
@@ -51,7 +64,7 @@ public class TransactionServiceTest {
 
 
     @Test
-    public void shouldThrowSameAccountTransferException() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException {
+    public void shouldThrowSameAccountTransferException() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
         expectedException.expect(SameAccountTransferException.class);
         expectedException.expectMessage(String.format("transfer between the same account %s", srcAccountNumber));
 
@@ -62,7 +75,7 @@ public class TransactionServiceTest {
 
 
     @Test
-    public void shouldThrowInvalidDepositExceptionForNegativeMoney() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException {
+    public void shouldThrowInvalidDepositExceptionForNegativeMoney() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
         final Money negativeAmount = Money.of(CurrencyUnit.EUR, -2000);
         expectedException.expect(InvalidDepositException.class);
         expectedException.expectMessage(String.format("money %s cannot be deposited", negativeAmount));
@@ -73,7 +86,7 @@ public class TransactionServiceTest {
     }
 
     @Test
-    public void shouldThrowAccountDoesNotExistWhenTransferredToNotExistingAccount() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException {
+    public void shouldThrowAccountDoesNotExistWhenTransferredToNotExistingAccount() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
         final long unknownAccountNumber = 99999;
         expectedException.expect(AccountNotFoundException.class);
         expectedException.expectMessage(String.format("Account %s does not exist", unknownAccountNumber));
@@ -83,7 +96,7 @@ public class TransactionServiceTest {
 
 
     @Test
-    public void transactionIsNotExecutingAfterTransfer() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException {
+    public void transactionIsNotExecutingAfterTransfer() throws InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
         final Money amount = Money.of(CurrencyUnit.EUR, BigDecimal.valueOf(200.0));
         final Transaction transactionRequest = Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(amount).build();
         Assert.assertTrue(transactionRequest.getIsExecuting().get());
@@ -105,7 +118,7 @@ public class TransactionServiceTest {
     }
 
     @Test
-    public void shouldThrowUnSupportedOperation() throws AccountAlreadyExistsException, InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException {
+    public void shouldThrowUnSupportedOperation() throws AccountAlreadyExistsException, InsufficientFundsException, InvalidDepositException, AccountNotFoundException, SameAccountTransferException, TransferTimeoutException, ExchangeRateNotFoundException {
         final Money swissMoney = Money.of(CurrencyUnit.CHF, 1000);
         Account third = accountingService.createAccount(Account.builder().owner("third").money(swissMoney).build());
 
@@ -120,6 +133,229 @@ public class TransactionServiceTest {
 
     }
 
+    @Test
+    public void shouldConvertTransfersBetweenCurrenciesAtTheCachedRate() throws Exception {
+        final Account swiss = accountingService.createAccount(Account.builder().owner("third").money(Money.of(CurrencyUnit.CHF, 1000)).build());
+        final InMemoryFxRateProvider provider = new InMemoryFxRateProvider(FxRates.builder()
+                .rate(CurrencyUnit.EUR, CurrencyUnit.CHF, new BigDecimal("0.9435")).build());
+        final TransactionService fxService = new TransactionServiceImpl(accountRepository, transactionRepository,
+                LockAcquisitionPolicy.defaults(), new LockContentionMetrics(), null, new FxRateCache(provider, 0));
+
+        fxService.transfer(Transaction.builder().accountFrom(srcAccountNumber).accountTo(swiss.getAccountNumber())
+                .money(Money.of(CurrencyUnit.EUR, 10.01)).build());
+
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 989.99), accountingService.getAccount(srcAccountNumber).getMoney());
+        // 10.01 * 0.9435 = 9.444435, rounded half even to the centime
+        Assert.assertEquals(Money.of(CurrencyUnit.CHF, 1009.44), accountingService.getAccount(swiss.getAccountNumber()).getMoney());
+
+        final BatchResult result = fxService.transferBatch(Arrays.asList(
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(swiss.getAccountNumber()).money(Money.of(CurrencyUnit.EUR, 500)).build(),
+                Transaction.builder().accountFrom(swiss.getAccountNumber()).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.CHF, 20)).build()),
+                BatchMode.ATOMIC);
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferStatus.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferStatus.NO_EXCHANGE_RATE, result.getResults().get(1).getStatus());
+        Assert.assertEquals("no exchange rate from CHF to EUR", result.getResults().get(1).getMessage());
+        Assert.assertEquals(Money.of(CurrencyUnit.CHF, 1009.44), accountingService.getAccount(swiss.getAccountNumber()).getMoney());
+    }
+
+    @Test
+    public void shouldRejectTransfersWithoutRateOrConvertingToNothing() throws Exception {
+        final Account swiss = accountingService.createAccount(Account.builder().owner("third").money(Money.of(CurrencyUnit.CHF, 1000)).build());
+        final InMemoryFxRateProvider provider = new InMemoryFxRateProvider(FxRates.builder()
+                .rate(CurrencyUnit.EUR, CurrencyUnit.CHF, new BigDecimal("0.4")).build());
+        final TransactionService fxService = new TransactionServiceImpl(accountRepository, transactionRepository,
+                LockAcquisitionPolicy.defaults(), new LockContentionMetrics(), null, new FxRateCache(provider, 0));
+
+        try {
+            fxService.transfer(Transaction.builder().accountFrom(swiss.getAccountNumber()).accountTo(srcAccountNumber)
+                    .money(Money.of(CurrencyUnit.CHF, 10)).build());
+            Assert.fail("there is no rate from CHF to EUR");
+        } catch (final ExchangeRateNotFoundException expected) {
+            Assert.assertEquals("no exchange rate from CHF to EUR", expected.getMessage());
+        }
+        try {
+            fxService.transfer(Transaction.builder().accountFrom(srcAccountNumber).accountTo(swiss.getAccountNumber())
+                    .money(Money.of(CurrencyUnit.EUR, 0.01)).build());
+            Assert.fail("a cent is worth less than a centime");
+        } catch (final InvalidDepositException expected) {
+            Assert.assertEquals("money EUR 0.01 converts to CHF 0.00", expected.getMessage());
+        }
+
+        Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(srcAccountNumber).getMoney());
+        Assert.assertEquals(Money.of(CurrencyUnit.CHF, 1000), accountingService.getAccount(swiss.getAccountNumber()).getMoney());
+    }
+
+    @Test
+    public void deferredCreditsShouldCountPendingCreditsAndBeRefusedOnceClosedBeforeTheDebit() throws Exception {
+        final Account full = accountingService.createAccount(Account.builder().owner("full")
+                .balance(Amount.ofMinor(CurrencyUnit.EUR, Long.MAX_VALUE - 1000)).build());
+        final DeferredCreditApplier creditApplier = new DeferredCreditApplier(1);
+        final TransactionService deferredService = new TransactionServiceImpl(accountRepository, transactionRepository,
+                LockAcquisitionPolicy.defaults(), new LockContentionMetrics(), creditApplier, null);
+
+        full.getLock().lock();
+        try {
+            deferredService.transfer(Transaction.builder().accountFrom(srcAccountNumber).accountTo(full.getAccountNumber())
+                    .money(Money.of(CurrencyUnit.EUR, 6)).build());
+            try {
+                deferredService.transfer(Transaction.builder().accountFrom(srcAccountNumber).accountTo(full.getAccountNumber())
+                        .money(Money.of(CurrencyUnit.EUR, 5)).build());
+                Assert.fail("the pending credit leaves no room for another");
+            } catch (final InvalidDepositException expected) {
+                Assert.assertEquals(Money.of(CurrencyUnit.EUR, 994), accountingService.getAccount(srcAccountNumber).getMoney());
+            }
+        } finally {
+            full.getLock().unlock();
+        }
+        creditApplier.close();
+        Assert.assertEquals(Long.MAX_VALUE - 400, full.getBalanceMinorUnits());
+
+        try {
+            deferredService.transfer(Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber)
+                    .money(Money.of(CurrencyUnit.EUR, 1)).build());
+            Assert.fail("a closed applier cannot take credits");
+        } catch (final RejectedExecutionException expected) {
+            Assert.assertEquals(Money.of(CurrencyUnit.EUR, 994), accountingService.getAccount(srcAccountNumber).getMoney());
+            Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(dstAccountNumber).getMoney());
+        }
+    }
+
+    @Test
+    public void shouldTimeOutWhileAccountIsLockedByAnotherTransfer() throws Exception {
+        final LockContentionMetrics metrics = new LockContentionMetrics();
+        final TransactionService timingOutService = new TransactionServiceImpl(accountRepository, transactionRepository,
+                new LockAcquisitionPolicy(10, 100, 20, TimeUnit.MILLISECONDS), metrics);
+        final Account src = accountRepository.getAccountByNumber(srcAccountNumber);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = new Thread(() -> {
+            src.getLock().lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                src.getLock().unlock();
+            }
+        });
+        holder.start();
+        locked.await();
+
+        try {
+            final Transaction transaction = Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 20)).build();
+            timingOutService.transfer(transaction);
+            Assert.fail("transfer should have timed out");
+        } catch (final TransferTimeoutException expected) {
+            Assert.assertEquals(1, metrics.getTotalTimeouts());
+            Assert.assertEquals(srcAccountNumber, metrics.hottest(1).get(0).getAccountNumber());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(srcAccountNumber).getMoney());
+        Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(dstAccountNumber).getMoney());
+    }
+
+    @Test
+    public void atomicBatchRollsBackWhenALaterTransferFails() throws Exception {
+        final List<Transaction> batch = Arrays.asList(
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 600)).build(),
+                Transaction.builder().accountFrom(dstAccountNumber).accountTo(srcAccountNumber).money(Money.of(CurrencyUnit.EUR, 100)).build(),
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 600)).build());
+
+        final BatchResult result = transactionService.transferBatch(batch, BatchMode.ATOMIC);
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferStatus.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferStatus.ABORTED, result.getResults().get(1).getStatus());
+        Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, result.getResults().get(2).getStatus());
+        Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(srcAccountNumber).getMoney());
+        Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(dstAccountNumber).getMoney());
+        Assert.assertTrue(transactionService.getAllTransactions().isEmpty());
+    }
+
+    @Test
+    public void atomicBatchIsRejectedWithoutChangesWhenATransferIsInvalid() throws Exception {
+        final List<Transaction> batch = Arrays.asList(
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 10)).build(),
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(99999).money(Money.of(CurrencyUnit.EUR, 10)).build());
+
+        final BatchResult result = transactionService.transferBatch(batch, BatchMode.ATOMIC);
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferStatus.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferStatus.ACCOUNT_NOT_FOUND, result.getResults().get(1).getStatus());
+        Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(srcAccountNumber).getMoney());
+    }
+
+    @Test
+    public void atomicBatchIsRejectedWithoutChangesWhenAnAmountIsNotInTheSourceCurrency() throws Exception {
+        final List<Transaction> batch = Arrays.asList(
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 10)).build(),
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.GBP, 10)).build());
+
+        final BatchResult result = transactionService.transferBatch(batch, BatchMode.ATOMIC);
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferStatus.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferStatus.INVALID_AMOUNT, result.getResults().get(1).getStatus());
+        Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(srcAccountNumber).getMoney());
+        Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(dstAccountNumber).getMoney());
+        Assert.assertTrue(transactionService.getAllTransactions().isEmpty());
+    }
+
+    @Test
+    public void bestEffortBatchAppliesEveryTransferThatSucceeds() throws Exception {
+        final List<Transaction> batch = Arrays.asList(
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 600)).build(),
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 600)).build(),
+                Transaction.builder().accountFrom(srcAccountNumber).accountTo(srcAccountNumber).money(Money.of(CurrencyUnit.EUR, 1)).build(),
+                Transaction.builder().accountFrom(dstAccountNumber).accountTo(srcAccountNumber).money(Money.of(CurrencyUnit.EUR, 100)).build());
+
+        final BatchResult result = transactionService.transferBatch(batch, BatchMode.BEST_EFFORT);
+
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertEquals(TransferStatus.OK, result.getResults().get(0).getStatus());
+        Assert.assertEquals(batch.get(0).getId(), result.getResults().get(0).getId());
+        Assert.assertEquals(TransferStatus.INSUFFICIENT_FUNDS, result.getResults().get(1).getStatus());
+        Assert.assertNull(result.getResults().get(1).getId());
+        Assert.assertEquals(TransferStatus.SAME_ACCOUNT, result.getResults().get(2).getStatus());
+        Assert.assertEquals(TransferStatus.OK, result.getResults().get(3).getStatus());
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 500), accountingService.getAccount(srcAccountNumber).getMoney());
+        Assert.assertEquals(Money.of(CurrencyUnit.EUR, 1500), accountingService.getAccount(dstAccountNumber).getMoney());
+        Assert.assertEquals(2, transactionService.getAllTransactions().size());
+    }
+
+    @Test
+    public void transfersThatCannotBePersistedShouldLeaveNoBalanceChanged() throws Exception {
+        final TransactionService failing = new TransactionServiceImpl(accountRepository, new InMemoryTransactionRepository() {
+            @Override
+            public void persistTransaction(final Transaction transaction) {
+                throw new IllegalStateException("cannot persist");
+            }
+        });
+
+        try {
+            failing.transfer(Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 10)).build());
+            Assert.fail("transfer should fail");
+        } catch (final IllegalStateException expected) {
+            Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(srcAccountNumber).getMoney());
+            Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(dstAccountNumber).getMoney());
+        }
+        try {
+            failing.transferBatch(Arrays.asList(
+                    Transaction.builder().accountFrom(srcAccountNumber).accountTo(dstAccountNumber).money(Money.of(CurrencyUnit.EUR, 600)).build(),
+                    Transaction.builder().accountFrom(dstAccountNumber).accountTo(srcAccountNumber).money(Money.of(CurrencyUnit.EUR, 1500)).build()),
+                    BatchMode.BEST_EFFORT);
+            Assert.fail("batch should fail");
+        } catch (final IllegalStateException expected) {
+            Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(srcAccountNumber).getMoney());
+            Assert.assertEquals(INITIAL_1000_BANK_BALANCE, accountingService.getAccount(dstAccountNumber).getMoney());
+        }
+    }
 
     private void createTwoAccounts() throws AccountAlreadyExistsException {
         accountingService.createAccount(Account.builder().owner("first").money(INITIAL_1000_BANK_BALANCE).build());
@@ -0,0 +1,109 @@
+package com.revolut.service;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Transaction;
+import com.revolut.exceptions.*;
+import com.revolut.persistence.AccountRepository;
+import com.revolut.persistence.InMemoryAccountRepository;
+import com.revolut.persistence.InMemoryTransactionRepository;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class TransactionServiceThroughputTest {
+    private static final int TRANSFERS_PER_THREAD = 500;
+    private static final Money INITIAL_BANK_BALANCE = Money.of(CurrencyUnit.EUR, 1_000_000);
+    private static final Money AMOUNT = Money.of(CurrencyUnit.EUR, 1);
+
+    private AccountRepository accountRepository;
+    private AccountingService accountingService;
+    private TransactionService transactionService;
+
+    @Before
+    public void setup() {
+        accountRepository = new InMemoryAccountRepository();
+        accountingService = new AccountingServiceImpl(accountRepository);
+        transactionService = new TransactionServiceImpl(accountRepository, new InMemoryTransactionRepository());
+    }
+
+    /**
+     * How throughput scales with the number of threads is measured by
+     * {@link com.revolut.benchmarks.DisjointTransferBenchmark}; a unit test can only rely on every transfer completing.
+     */
+    @Test
+    public void transfersBetweenDisjointAccountsShouldAllCompleteConcurrently() throws Exception {
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final List<long[]> pairs = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            pairs.add(new long[]{createAccount(), createAccount()});
+        }
+
+        runConcurrently(threads, pairs::get);
+
+        for (long[] pair : pairs) {
+            verifyBalanceConserved(pair[0], pair[1]);
+        }
+        Assert.assertEquals(threads * TRANSFERS_PER_THREAD, transactionService.getAllTransactions().size());
+    }
+
+    @Test
+    public void opposingTransfersOnSameAccountsShouldNotDeadlock() throws Exception {
+        final long first = createAccount();
+        final long second = createAccount();
+
+        runConcurrently(4, index -> index % 2 == 0 ? new long[]{first, second} : new long[]{second, first});
+
+        verifyBalanceConserved(first, second);
+    }
+
+    private void runConcurrently(final int threads, final PairSelector selector) throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                final long[] pair = selector.select(i);
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < TRANSFERS_PER_THREAD; n++) {
+                        final boolean forward = n % 2 == 0;
+                        transfer(forward ? pair[0] : pair[1], forward ? pair[1] : pair[0]);
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void transfer(final long from, final long to) throws InsufficientFundsException, SameAccountTransferException, AccountNotFoundException, InvalidDepositException, TransferTimeoutException,
+            ExchangeRateNotFoundException {
+        transactionService.transfer(Transaction.builder().accountFrom(from).accountTo(to).money(AMOUNT).build());
+    }
+
+    private long createAccount() throws AccountAlreadyExistsException {
+        return accountingService.createAccount(Account.builder().owner("owner").money(INITIAL_BANK_BALANCE).build()).getAccountNumber();
+    }
+
+    private void verifyBalanceConserved(final long first, final long second) throws AccountNotFoundException {
+        final Money total = accountRepository.getAccountByNumber(first).getMoney()
+                .plus(accountRepository.getAccountByNumber(second).getMoney());
+        Assert.assertEquals(INITIAL_BANK_BALANCE.multipliedBy(2), total);
+    }
+
+    private interface PairSelector {
+        long[] select(int threadIndex);
+    }
+}